@@ -0,0 +1,254 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
+import org.freeyourmetadata.ner.services.Disambiguation;
+import org.freeyourmetadata.ner.services.ExtractionResult;
+import org.freeyourmetadata.ner.services.NamedEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.refine.history.Change;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Measures applying, reverting, saving and loading an {@link NERChange}
+ * on synthetic projects with a varying number of rows and named entities per row.
+ * Applying is measured both without preparation, as on redo, and split into
+ * the preparation outside of the project lock and the application of the prepared rows under it.
+ * Row <i>i</i> has <tt>i % (fanOut + 1)</tt> entities for each of two services,
+ * drawn from a limited set of distinct entities like in real columns.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+public class NERChangeBenchmark {
+    private static final String[] SERVICE_NAMES = {"Service A", "Service B"};
+    private static final int DISTINCT_ENTITIES = 10_000;
+
+    @Benchmark
+    public Project apply(final UnappliedChange state) {
+        state.change.apply(state.project);
+        state.applied = true;
+        return state.project;
+    }
+
+    @Benchmark
+    public NERChange prepare(final UnappliedChange state) {
+        state.change.prepare(state.project);
+        return state.change;
+    }
+
+    @Benchmark
+    public Project applyPrepared(final PreparedChange state) {
+        state.change.apply(state.project);
+        state.applied = true;
+        return state.project;
+    }
+
+    @Benchmark
+    public Project revert(final AppliedChange state) {
+        state.change.revert(state.project);
+        state.applied = false;
+        return state.project;
+    }
+
+    @Benchmark
+    public void save(final AppliedChange state) throws Exception {
+        state.change.save(new DiscardingWriter(), new Properties());
+    }
+
+    @Benchmark
+    public Change load(final SavedChange state) throws Exception {
+        return NERChange.load(new LineNumberReader(new InputStreamReader(
+                new ByteArrayInputStream(state.savedChange), StandardCharsets.UTF_8)), null);
+    }
+
+    /**
+     * Synthetic extraction results for a number of rows and entities per row
+     */
+    @State(Scope.Benchmark)
+    public static class Results {
+        @Param({"10000", "100000", "1000000"})
+        public int rowCount;
+
+        @Param({"1", "4"})
+        public int fanOut;
+
+        CompactExtractionResults extractionResults;
+
+        @Setup
+        public void setUp() throws Exception {
+            final NamedEntity[] entities = new NamedEntity[DISTINCT_ENTITIES];
+            for (int i = 0; i < entities.length; i++) {
+                entities[i] = new NamedEntity("Entity " + i, new Disambiguation[]{
+                        new Disambiguation("Entity " + i, new URI("http://example.org/entity/" + i), 0.9),
+                        new Disambiguation("Other entity " + i, new URI("http://example.org/other/" + i), 0.4),
+                });
+            }
+            extractionResults = new CompactExtractionResults(SERVICE_NAMES.length);
+            for (int row = 0; row < rowCount; row++) {
+                final ExtractionResult[] rowResults = new ExtractionResult[SERVICE_NAMES.length];
+                for (int service = 0; service < rowResults.length; service++) {
+                    final NamedEntity[] rowEntities = new NamedEntity[row % (fanOut + 1)];
+                    for (int i = 0; i < rowEntities.length; i++)
+                        rowEntities[i] = entities[(row * 31 + service * 7 + i) % entities.length];
+                    rowResults[service] = new ExtractionResult(rowEntities);
+                }
+                extractionResults.addRow(rowResults);
+            }
+            extractionResults.trim();
+        }
+
+        /**
+         * Creates a change of the results on a new project with a single text column
+         */
+        ChangeState createChange() {
+            final ChangeState state = new ChangeState();
+            state.project = new Project();
+            state.project.columnModel.columns.add(new Column(state.project.columnModel.allocateNewCellIndex(), "Text"));
+            for (int i = 0; i < rowCount; i++) {
+                final Row row = new Row(1);
+                row.cells.add(new Cell("Text of row " + i, null));
+                state.project.rows.add(row);
+            }
+            state.project.update();
+            state.change = new NERChange(0, SERVICE_NAMES, extractionResults);
+            return state;
+        }
+    }
+
+    /**
+     * A change on its own project
+     */
+    static class ChangeState {
+        Project project;
+        NERChange change;
+        boolean applied;
+    }
+
+    /**
+     * A change that has not been applied to its project when a benchmark starts
+     */
+    @State(Scope.Benchmark)
+    public static class UnappliedChange extends ChangeState {
+        @Setup
+        public void setUp(final Results results) {
+            final ChangeState state = results.createChange();
+            project = state.project;
+            change = state.change;
+        }
+
+        @Setup(Level.Invocation)
+        public void revertIfApplied() {
+            if (applied) {
+                change.revert(project);
+                applied = false;
+            }
+        }
+    }
+
+    /**
+     * A change that has been prepared but not applied to its project when a benchmark starts
+     */
+    @State(Scope.Benchmark)
+    public static class PreparedChange extends ChangeState {
+        @Setup
+        public void setUp(final Results results) {
+            final ChangeState state = results.createChange();
+            project = state.project;
+            change = state.change;
+        }
+
+        @Setup(Level.Invocation)
+        public void revertAndPrepare() {
+            if (applied) {
+                change.revert(project);
+                applied = false;
+            }
+            change.prepare(project);
+        }
+    }
+
+    /**
+     * A change that has been applied to its project when a benchmark starts
+     */
+    @State(Scope.Benchmark)
+    public static class AppliedChange extends ChangeState {
+        @Setup
+        public void setUp(final Results results) {
+            final ChangeState state = results.createChange();
+            project = state.project;
+            change = state.change;
+        }
+
+        @Setup(Level.Invocation)
+        public void applyIfReverted() {
+            if (!applied) {
+                change.apply(project);
+                applied = true;
+            }
+        }
+    }
+
+    /**
+     * The serialization of an applied change, including its added rows
+     */
+    @State(Scope.Benchmark)
+    public static class SavedChange {
+        byte[] savedChange;
+
+        @Setup
+        public void setUp(final Results results) throws Exception {
+            final ChangeState state = results.createChange();
+            state.change.apply(state.project);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream();
+            try (Writer writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
+                state.change.save(writer, new Properties());
+            }
+            savedChange = output.toByteArray();
+        }
+    }
+
+    /**
+     * Writer that discards its output, so saving is measured without buffering the serialization
+     */
+    private static class DiscardingWriter extends Writer {
+        @Override
+        public void write(final char[] buffer, final int offset, final int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.freeyourmetadata.ner.services.NERService;
+import org.freeyourmetadata.ner.services.NERServiceBase;
+import org.freeyourmetadata.ner.services.NamedEntity;
+import org.freeyourmetadata.ner.services.ServiceMetrics;
+import org.freeyourmetadata.ner.services.StubNERServer;
+
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+/**
+ * Runs named-entity recognition on a synthetic project against local stub services,
+ * from the {@link NEROperation} through the {@link NERProcess} to the {@link NERChange} in the project history,
+ * and reports the throughput, the latency of each service, the peak heap usage,
+ * and the time spent adding the history entry and applying its change under the project lock.
+ * <p>
+ * Arguments are <tt>name=value</tt> pairs (defaults in parentheses):
+ * <tt>rows</tt> (1000), <tt>services</tt> (SPOTLIGHT,NIF), <tt>latency</tt> median in milliseconds (20),
+ * <tt>sigma</tt> of the log-normal latency (0.5), <tt>errors</tt> rate (0), <tt>ratelimit</tt> rate (0),
+ * <tt>entities</tt> per response (-1 for one per capitalized word), <tt>mode</tt> (rows), <tt>seed</tt> (1).
+ * <p>
+ * The project is registered with a {@link StubProjectManager}, which keeps the history in memory.
+ */
+public class NERThroughputHarness {
+    private static final String TEXT = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA";
+    private static final double[] PERCENTILES = {50, 90, 99, 100};
+
+    /**
+     * Runs the harness
+     *
+     * @param args The <tt>name=value</tt> arguments
+     * @throws Exception if the harness cannot run
+     */
+    public static void main(final String[] args) throws Exception {
+        final Map<String, String> options = parseArguments(args);
+        final int rowCount = Integer.parseInt(options.getOrDefault("rows", "1000"));
+        final String[] formats = options.getOrDefault("services", "SPOTLIGHT,NIF").split(",");
+
+        try (StubNERServer server = new StubNERServer(Long.parseLong(options.getOrDefault("seed", "1")))) {
+            server.setLatency(StubNERServer.Latency.logNormal(Double.parseDouble(options.getOrDefault("latency", "20")),
+                    Double.parseDouble(options.getOrDefault("sigma", "0.5"))))
+                    .setErrorRate(Double.parseDouble(options.getOrDefault("errors", "0")))
+                    .setRateLimitRate(Double.parseDouble(options.getOrDefault("ratelimit", "0")), 1)
+                    .setEntitiesPerResponse(Integer.parseInt(options.getOrDefault("entities", "-1")))
+                    .start();
+
+            // Connect one timed service per format to the stub
+            final TreeMap<String, NERService> services = new TreeMap<>();
+            final Map<String, Map<String, String>> settings = new HashMap<>();
+            for (final String format : formats) {
+                final StubNERServer.Format stubFormat = StubNERServer.Format.valueOf(format.trim().toUpperCase());
+                final TimedService service = new TimedService(server.createService(stubFormat), rowCount);
+                services.put(stubFormat.name(), service);
+                settings.put(stubFormat.name(), NERServiceBase.getExtractionSettingDefaults(service));
+            }
+
+            final Project project = createProject(rowCount);
+            StubProjectManager.install().register(project);
+            final Column column = project.columnModel.columns.get(0);
+            final NEROperation operation = new NEROperation(column, services, settings,
+                    NERChange.OutputMode.parse(options.get("mode")),
+                    EngineConfig.reconstruct("{\"facets\":[],\"mode\":\"row-based\"}"));
+            final NERProcess process = (NERProcess) operation.createProcess(project, new Properties());
+            resetPeakHeapUsage();
+
+            // Extract the entities and add the change to the history, as the process manager would
+            final long runStart = System.nanoTime();
+            process.run();
+            final long runNanos = System.nanoTime() - runStart;
+            final RunReport report = process.getReport();
+            if (project.history.getLastPastEntries(1).isEmpty())
+                throw new IllegalStateException("The process did not add a history entry.");
+            // The report covers the extraction; the rest of the run prepares the change and adds its history entry
+            final long extractionNanos = report.getWallMillis() * 1000000;
+            final long historyNanos = runNanos - extractionNanos;
+
+            // Report the measurements
+            final double extractionSeconds = extractionNanos / 1e9;
+            long requestCount = 0, errorCount = 0;
+            for (final StubNERServer.Format format : StubNERServer.Format.values()) {
+                requestCount += server.getRequestCount(format);
+                errorCount += server.getErrorCount(format);
+            }
+            System.out.printf("Rows:             %d in %.2f s (%.1f rows/s)%n",
+                    rowCount, extractionSeconds, rowCount / extractionSeconds);
+            System.out.printf("Requests:         %d, of which %d failed (%.1f requests/s)%n",
+                    requestCount, errorCount, requestCount / extractionSeconds);
+            for (final Map.Entry<String, NERService> service : services.entrySet())
+                System.out.printf("Latency %-9s %s%n", service.getKey() + ":",
+                        ((TimedService) service.getValue()).formatPercentiles());
+            System.out.printf("History entry:    %.1f ms, of which %d ms applying under the project lock, " +
+                    "%d rows afterwards%n", historyNanos / 1e6, report.getApplyMillis(), project.rows.size());
+            System.out.printf("Peak heap:        %.1f MB%n", getPeakHeapUsage() / 1048576.0);
+        }
+    }
+
+    /**
+     * Parses <tt>name=value</tt> arguments, which may be passed as a single whitespace-separated argument
+     */
+    private static Map<String, String> parseArguments(final String[] args) {
+        final HashMap<String, String> options = new HashMap<>();
+        for (final String arg : args) {
+            for (final String option : arg.trim().split("\\s+")) {
+                final int separator = option.indexOf('=');
+                if (separator > 0)
+                    options.put(option.substring(0, separator), option.substring(separator + 1));
+                else if (!option.isEmpty())
+                    throw new IllegalArgumentException("Expected name=value instead of " + option);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Creates a project with a single text column
+     */
+    private static Project createProject(final int rowCount) {
+        final Project project = new Project();
+        project.columnModel.columns.add(new Column(project.columnModel.allocateNewCellIndex(), "Text"));
+        for (int i = 0; i < rowCount; i++) {
+            final Row row = new Row(1);
+            row.cells.add(new Cell(TEXT + " " + i, null));
+            project.rows.add(row);
+        }
+        project.update();
+        return project;
+    }
+
+    private static void resetPeakHeapUsage() {
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                pool.resetPeakUsage();
+    }
+
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+            if (pool.getType() == MemoryType.HEAP)
+                peak += pool.getPeakUsage().getUsed();
+        return peak;
+    }
+
+    /**
+     * Service that records the latency of every extraction of another service
+     */
+    private static class TimedService implements NERService {
+        private final NERService service;
+        private long[] latencies;
+        private int latencyCount;
+
+        TimedService(final NERService service, final int expectedCount) {
+            this.service = service;
+            this.latencies = new long[expectedCount];
+        }
+
+        @Override
+        public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
+            final long start = System.nanoTime();
+            try {
+                return service.extractNamedEntities(text, settings);
+            } finally {
+                record(System.nanoTime() - start);
+            }
+        }
+
+        private synchronized void record(final long nanos) {
+            if (latencyCount == latencies.length)
+                latencies = Arrays.copyOf(latencies, Math.max(16, latencyCount * 2));
+            latencies[latencyCount++] = nanos;
+        }
+
+        synchronized String formatPercentiles() {
+            if (latencyCount == 0)
+                return "no requests";
+            final long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            final StringBuilder result = new StringBuilder();
+            for (final double percentile : PERCENTILES) {
+                final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+                result.append(result.length() == 0 ? "" : ", ")
+                        .append(percentile == 100 ? "max" : "p" + (int) percentile).append(' ')
+                        .append(String.format("%.1f ms", sorted[Math.max(0, index)] / 1e6));
+            }
+            return result.toString();
+        }
+
+        @Override
+        public Set<String> getServiceSettings() {
+            return service.getServiceSettings();
+        }
+
+        @Override
+        public String getServiceSetting(final String name) {
+            return service.getServiceSetting(name);
+        }
+
+        @Override
+        public void setServiceSetting(final String name, final String value) {
+            service.setServiceSetting(name, value);
+        }
+
+        @Override
+        public Set<String> getExtractionSettings() {
+            return service.getExtractionSettings();
+        }
+
+        @Override
+        public String getExtractionSettingDefault(final String name) {
+            return service.getExtractionSettingDefault(name);
+        }
+
+        @Override
+        public void setExtractionSettingDefault(final String name, final String value) {
+            service.setExtractionSettingDefault(name, value);
+        }
+
+        @Override
+        public boolean isConfigured() {
+            return service.isConfigured();
+        }
+
+        @Override
+        public URI getDocumentationUri() {
+            return service.getDocumentationUri();
+        }
+
+        @Override
+        public ServiceMetrics getMetrics() {
+            return service.getMetrics();
+        }
+    }
+}
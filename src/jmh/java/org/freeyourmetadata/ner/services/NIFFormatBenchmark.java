@@ -0,0 +1,94 @@
+package org.freeyourmetadata.ner.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the parsing throughput of NIF responses in the formats
+ * that {@link NIFService} negotiates with endpoints.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NIFFormatBenchmark {
+    private static final String TEXT_FRAGMENT = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA. ";
+
+    @Param({"turtle", "n-triples", "jsonld"})
+    public String format;
+
+    @Param({"10", "1000"})
+    public int annotationCount;
+
+    private Lang lang;
+    private String text;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        lang = RDFLanguages.nameToLang(format);
+        StringBuilder textBuilder = new StringBuilder();
+        for (int i = 0; i < annotationCount; i++) {
+            textBuilder.append(TEXT_FRAGMENT);
+        }
+        text = textBuilder.toString();
+
+        // Serialize a response of the same shape as those of NIF endpoints in the benchmarked format
+        Model model = RDFParser.fromString(createTurtleResponse(annotationCount)).lang(RDFLanguages.TURTLE).toModel();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        RDFDataMgr.write(output, model, lang);
+        response = output.toByteArray();
+    }
+
+    @Benchmark
+    public NamedEntity[] parseResponse() {
+        return NIFService.parseResponse(text, new ByteArrayInputStream(response), lang, 0);
+    }
+
+    /**
+     * Creates a Turtle response with one annotation of "USA" per repetition of the text fragment,
+     * each with two candidate entities.
+     */
+    private static String createTurtleResponse(int annotationCount) {
+        StringBuilder turtle = new StringBuilder()
+                .append("@prefix itsrdf: <http://www.w3.org/2005/11/its/rdf#> .\n")
+                .append("@prefix nif: <http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#> .\n")
+                .append("@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .\n")
+                .append("@prefix xsd: <http://www.w3.org/2001/XMLSchema#> .\n\n");
+        for (int i = 0; i < annotationCount; i++) {
+            int begin = i * TEXT_FRAGMENT.length() + TEXT_FRAGMENT.indexOf("USA");
+            for (int candidate = 0; candidate < 2; candidate++) {
+                turtle.append("<http://localhost/document/query#offset_").append(begin).append('_').append(candidate)
+                        .append("> a nif:OffsetBasedString, nif:Phrase ;\n")
+                        .append("   nif:anchorOf \"USA\" ;\n")
+                        .append("   nif:beginIndex \"").append(begin).append("\"^^xsd:nonNegativeInteger ;\n")
+                        .append("   nif:endIndex \"").append(begin + 3).append("\"^^xsd:nonNegativeInteger ;\n")
+                        .append("   nif:referenceContext <http://localhost/document/query> ;\n")
+                        .append("   itsrdf:taConfidence ").append(candidate == 0 ? "23.2" : "-1.5").append(" ;\n")
+                        .append("   itsrdf:taIdentRef <http://www.wikidata.org/entity/Q").append(30 + candidate).append("> .\n\n");
+            }
+        }
+        turtle.append("<http://www.wikidata.org/entity/Q30> rdfs:label \"United States of America\"@en .\n");
+        return turtle.toString();
+    }
+}
@@ -0,0 +1,181 @@
+package org.freeyourmetadata.ner.services;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.jena.riot.RDFLanguages;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how fast each service connector parses responses of its service,
+ * from the response bytes to the named entities.
+ * The payloads have the shape of recorded responses, with a varying number of entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseParsingBenchmark {
+    private static final String TEXT_FRAGMENT = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA. ";
+    private static final int WORDS_PER_FRAGMENT = 11;
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    @Param({"DBpediaSpotlight", "DataTXT", "StanfordNLP", "WikiMeta", "Zemanta", "AlchemyAPI", "NIFService"})
+    public String service;
+
+    @Param({"small", "medium", "large"})
+    public String payload;
+
+    private NERServiceBase connector;
+    private String text;
+    private byte[] response;
+
+    @Setup
+    public void setUp() {
+        final int entityCount = getEntityCount(payload);
+        final StringBuilder textBuilder = new StringBuilder();
+        for (int i = 0; i <= entityCount / WORDS_PER_FRAGMENT; i++)
+            textBuilder.append(TEXT_FRAGMENT);
+        text = textBuilder.toString();
+
+        final String body;
+        switch (service) {
+            case "DBpediaSpotlight":
+                connector = new DBpediaSpotlight();
+                body = StubNERServer.createBody(StubNERServer.Format.SPOTLIGHT, text, entityCount);
+                break;
+            case "DataTXT":
+                connector = new DataTXT();
+                body = StubNERServer.createBody(StubNERServer.Format.DANDELION, text, entityCount);
+                break;
+            case "StanfordNLP":
+                connector = new StanfordNLP();
+                body = StubNERServer.createBody(StubNERServer.Format.CORENLP, text, entityCount);
+                break;
+            case "WikiMeta":
+                connector = new WikiMeta();
+                body = createWikiMetaBody(text, entityCount);
+                break;
+            case "Zemanta":
+                connector = new Zemanta();
+                body = createZemantaBody(text, entityCount);
+                break;
+            case "AlchemyAPI":
+                connector = new AlchemyAPI();
+                body = createAlchemyBody(text, entityCount);
+                break;
+            case "NIFService":
+                connector = null;
+                body = StubNERServer.createBody(StubNERServer.Format.NIF, text, entityCount);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown service " + service);
+        }
+        response = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public NamedEntity[] parseResponse() throws Exception {
+        if (connector == null)
+            return NIFService.parseResponse(text, new ByteArrayInputStream(response), RDFLanguages.NTRIPLES, 0);
+        final HttpResponse httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        httpResponse.setEntity(new ByteArrayEntity(response, ContentType.APPLICATION_JSON));
+        return connector.parseExtractionResponse(httpResponse);
+    }
+
+    /**
+     * Gets the number of entities in a payload of the given size
+     */
+    private static int getEntityCount(String payload) {
+        switch (payload) {
+            case "small":
+                return 5;
+            case "medium":
+                return 100;
+            case "large":
+                return 5000;
+            default:
+                throw new IllegalArgumentException("Unknown payload size " + payload);
+        }
+    }
+
+    /**
+     * Creates a WikiMeta response, whose entities are in the third element of the document
+     */
+    private static String createWikiMetaBody(String text, int entityCount) {
+        final ObjectNode response = JSON.objectNode();
+        final ArrayNode document = response.putArray("document");
+        document.addObject().put("text", text);
+        document.addObject();
+        final ArrayNode entities = document.addObject().putArray("Named Entities");
+        for (final int[] spot : StubNERServer.findSpots(text, entityCount)) {
+            final String surfaceForm = text.substring(spot[0], spot[1]);
+            entities.addObject()
+                    .put("EN", surfaceForm)
+                    .put("confidenceScore", "0.75")
+                    .put("LINKEDDATA", "http://dbpedia.org/resource/" + surfaceForm)
+                    .put("URI", "http://www.wikimeta.com/wapi/display.pl?query=" + surfaceForm);
+        }
+        return response.toString();
+    }
+
+    /**
+     * Creates a Zemanta response with two link targets per entity
+     */
+    private static String createZemantaBody(String text, int entityCount) {
+        final ObjectNode response = JSON.objectNode().put("status", "ok");
+        final ArrayNode links = response.putObject("markup").putArray("links");
+        for (final int[] spot : StubNERServer.findSpots(text, entityCount)) {
+            final String surfaceForm = text.substring(spot[0], spot[1]);
+            final ArrayNode targets = links.addObject().put("anchor", surfaceForm).putArray("target");
+            targets.addObject().put("title", surfaceForm).put("url", "http://en.wikipedia.org/wiki/" + surfaceForm);
+            targets.addObject().put("title", surfaceForm).put("url", "http://dbpedia.org/resource/" + surfaceForm);
+        }
+        return response.toString();
+    }
+
+    /**
+     * Creates an AlchemyAPI response with disambiguated entities
+     */
+    private static String createAlchemyBody(String text, int entityCount) {
+        final ObjectNode response = JSON.objectNode().put("status", "OK");
+        final ArrayNode entities = response.putArray("entities");
+        final List<int[]> spots = StubNERServer.findSpots(text, entityCount);
+        for (final int[] spot : spots) {
+            final String surfaceForm = text.substring(spot[0], spot[1]);
+            final ObjectNode entity = entities.addObject()
+                    .put("type", "Organization")
+                    .put("relevance", "0.5")
+                    .put("count", "1")
+                    .put("text", surfaceForm);
+            entity.putObject("disambiguated")
+                    .put("name", surfaceForm)
+                    .put("website", "http://example.org/")
+                    .put("dbpedia", "http://dbpedia.org/resource/" + surfaceForm)
+                    .put("freebase", "http://rdf.freebase.com/ns/" + surfaceForm);
+        }
+        return response.toString();
+    }
+}
@@ -5,6 +5,7 @@ import com.google.refine.commands.EngineDependentCommand;
 import com.google.refine.model.AbstractOperation;
 import com.google.refine.model.Column;
 import com.google.refine.model.Project;
+import org.freeyourmetadata.ner.operations.NERChange;
 import org.freeyourmetadata.ner.operations.NEROperation;
 import org.freeyourmetadata.ner.services.NERService;
 import org.freeyourmetadata.ner.services.NERServiceManager;
@@ -57,6 +58,11 @@ public class ExtractionCommand extends EngineDependentCommand {
             }
         }
 
-        return new NEROperation(column, services, settings, getEngineConfig(request));
+        final NERChange.OutputMode outputMode = NERChange.OutputMode.parse(request.getParameter("mode"));
+
+        final boolean resume = Boolean.parseBoolean(request.getParameter("resume"));
+        final boolean incremental = Boolean.parseBoolean(request.getParameter("incremental"));
+
+        return new NEROperation(column, services, settings, outputMode, getEngineConfig(request), resume, incremental);
     }
 }
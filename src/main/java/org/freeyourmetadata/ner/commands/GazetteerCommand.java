@@ -0,0 +1,129 @@
+package org.freeyourmetadata.ner.commands;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.refine.commands.Command;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Recon.Judgment;
+import com.google.refine.model.ReconCandidate;
+import com.google.refine.model.Row;
+import org.freeyourmetadata.ner.services.GazetteerAutomaton;
+import org.freeyourmetadata.ner.services.NERServiceManager;
+
+/**
+ * Command that compiles the matched reconciliation values of a column
+ * into a gazetteer, which the <tt>Gazetteer</tt> service can use to find these entities in other columns
+ *
+ * @author Ruben Verborgh
+ */
+public class GazetteerCommand extends Command {
+    private final static String EXTENSION = ".gazetteer";
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void doPost(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!hasValidCSRFToken(request)) {
+            respondCSRFError(response);
+            return;
+        }
+        try {
+            final Project project = getProject(request);
+            final String columnName = request.getParameter("column");
+            final Column column = project.columnModel.getColumnByName(columnName);
+            if (column == null)
+                throw new IllegalArgumentException("No column named " + columnName + " exists.");
+            final boolean caseSensitive = Boolean.parseBoolean(request.getParameter("caseSensitive"));
+            // Compile and store the gazetteer, under another name if the file is in use
+            final GazetteerAutomaton automaton = compileGazetteer(project, column.getCellIndex(), caseSensitive);
+            final File file = automaton.save(getGazetteerFile(request.getParameter("name"), columnName));
+
+            final Map<String, Object> result = new LinkedHashMap<>();
+            result.put("code", "ok");
+            result.put("file", file.getName());
+            result.put("forms", automaton.getFormCount());
+            result.put("entities", automaton.getEntityCount());
+            respondJSON(response, result);
+        } catch (Exception error) {
+            respondException(response, error);
+        }
+    }
+
+    /**
+     * Compiles the matched reconciliation values of a column into a gazetteer automaton.
+     * The cell values are the surface forms, and the score of each entity is the fraction
+     * of cells with that value that are matched to it.
+     *
+     * @param project       The project
+     * @param cellIndex     The cell index of the column
+     * @param caseSensitive Whether surface forms should be matched case-sensitively
+     * @return The automaton
+     */
+    protected static GazetteerAutomaton compileGazetteer(final Project project, final int cellIndex,
+                                                         final boolean caseSensitive) {
+        final List<Row> rows;
+        synchronized (project) {
+            rows = new ArrayList<>(project.rows);
+        }
+
+        // Stream the rows into the builder, which only retains the distinct entities
+        final GazetteerAutomaton.Builder builder = new GazetteerAutomaton.Builder(caseSensitive).setRelativeScores(true);
+        for (final Row row : rows) {
+            final Cell cell = row.getCell(cellIndex);
+            if (cell == null || cell.value == null || cell.recon == null)
+                continue;
+            final Recon recon = cell.recon;
+            final ReconCandidate match = recon.match;
+            if (recon.judgment != Judgment.Matched || match == null)
+                continue;
+            final String surfaceForm = cell.value.toString().trim();
+            if (!surfaceForm.isEmpty())
+                builder.add(surfaceForm, match.name, getEntityUri(recon, match), 1.0);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Gets the URI of a reconciled entity
+     *
+     * @param recon The reconciliation value
+     * @param match The matched candidate
+     * @return The URI
+     */
+    private static String getEntityUri(final Recon recon, final ReconCandidate match) {
+        // Identifiers of named entities are URIs already
+        if (recon.identifierSpace == null || recon.identifierSpace.isEmpty() || match.id.contains("://"))
+            return match.id;
+        return recon.identifierSpace + match.id;
+    }
+
+    /**
+     * Gets the file for the gazetteer, which always resides in the cache folder
+     *
+     * @param name       The requested name of the gazetteer (optional)
+     * @param columnName The name of the compiled column
+     * @return The gazetteer file
+     */
+    private static File getGazetteerFile(final String name, final String columnName) {
+        String fileName = name != null && !name.trim().isEmpty()
+                ? new File(name.trim()).getName()
+                : columnName.replaceAll("[^\\p{L}\\p{N}_-]+", "_");
+        if (!fileName.endsWith(EXTENSION))
+            fileName += EXTENSION;
+        return new File(NERServiceManager.getCacheFolder(), fileName);
+    }
+}
@@ -0,0 +1,32 @@
+package org.freeyourmetadata.ner.commands;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.refine.model.Project;
+import org.freeyourmetadata.ner.operations.ExtractionJournal;
+
+/**
+ * Servlet that describes the journal of an interrupted named-entity recognition run on a column,
+ * so that the run can be resumed
+ *
+ * @author Ruben Verborgh
+ */
+public class JournalCommand extends NERCommand {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void get(final HttpServletRequest request, final JsonGenerator writer) throws Exception {
+        final Project project = getProject(request);
+        final ObjectNode summary = ExtractionJournal.readSummary(
+                ExtractionJournal.getFile(project.id, request.getParameter("column")));
+        if (summary == null) {
+            writer.writeStartObject();
+            writer.writeEndObject();
+        } else {
+            writer.writeTree(summary);
+        }
+    }
+}
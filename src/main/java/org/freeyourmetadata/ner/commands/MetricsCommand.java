@@ -0,0 +1,53 @@
+package org.freeyourmetadata.ner.commands;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.refine.commands.Command;
+import org.freeyourmetadata.ner.services.NERServiceManager;
+import org.freeyourmetadata.ner.services.ServiceMetrics;
+
+/**
+ * Servlet that exposes the request metrics of all services
+ * in the Prometheus text exposition format, so they can be scraped
+ *
+ * @author Ruben Verborgh
+ */
+public class MetricsCommand extends Command {
+    private final NERServiceManager serviceManager;
+
+    /**
+     * Creates a new <tt>MetricsCommand</tt>
+     *
+     * @param serviceManager The data source
+     */
+    public MetricsCommand(final NERServiceManager serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException {
+        final Map<String, ServiceMetrics> metrics = new TreeMap<>();
+        for (final String serviceName : serviceManager.getServiceNames()) {
+            final ServiceMetrics serviceMetrics = serviceManager.getService(serviceName).getMetrics();
+            if (serviceMetrics != ServiceMetrics.NONE)
+                metrics.put(serviceName, serviceMetrics);
+        }
+
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Type", "text/plain; version=0.0.4");
+        final Writer writer = response.getWriter();
+        ServiceMetrics.writePrometheus(metrics, writer);
+        writer.flush();
+    }
+}
@@ -0,0 +1,45 @@
+package org.freeyourmetadata.ner.commands;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.refine.ProjectManager;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.Project;
+import org.freeyourmetadata.ner.operations.NERChange;
+
+/**
+ * Servlet that lists the performance reports of the named-entity recognition runs of a project,
+ * most recent first
+ *
+ * @author Ruben Verborgh
+ */
+public class ReportsCommand extends NERCommand {
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void get(final HttpServletRequest request, final JsonGenerator writer) throws Exception {
+        final Project project = getProject(request);
+        final HistoryEntryManager manager = ProjectManager.singleton.getHistoryEntryManager();
+        writer.writeStartArray();
+        final List<HistoryEntry> entries = project.history.getLastPastEntries(-1);
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final HistoryEntry entry = entries.get(i);
+            // Past changes are loaded from disk if the project was reopened
+            final NERChange change = NERChange.fromHistoryEntry(entry, manager);
+            if (change != null && change.getReport() != null) {
+                writer.writeStartObject();
+                writer.writeNumberField("id", entry.id);
+                writer.writeStringField("description", entry.description);
+                writer.writeFieldName("report");
+                change.getReport().writeTo(writer);
+                writer.writeEndObject();
+            }
+        }
+        writer.writeEndArray();
+    }
+}
@@ -0,0 +1,68 @@
+package org.freeyourmetadata.ner.operations;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event around a batch of rows of a named-entity recognition process
+ *
+ * @author Ruben Verborgh
+ */
+@Name("org.freeyourmetadata.ner.ExtractionBatch")
+@Label("Extraction Batch")
+@Category({"OpenRefine", "Named-Entity Recognition"})
+@Description("A batch of rows on which a named-entity recognition process ran its services")
+@StackTrace(false)
+public class ExtractionBatchEvent extends jdk.jfr.Event {
+    @Label("Column")
+    String column;
+
+    @Label("Services")
+    String services;
+
+    @Label("First Row")
+    int firstRow;
+
+    @Label("Last Row")
+    @Description("Index of the last row in the batch; rows outside of the facets are skipped")
+    int lastRow;
+
+    @Label("Row Count")
+    int rowCount;
+
+    @Label("Text Length")
+    @Description("Total length of the texts sent to each service")
+    long textLength;
+
+    @Label("Entity Count")
+    int entityCount;
+
+    @Label("Error Count")
+    int errorCount;
+
+    /**
+     * Creates and begins an extraction batch event
+     *
+     * @param column   The name of the column
+     * @param services The names of the services
+     * @param firstRow The index of the first row in the batch
+     */
+    ExtractionBatchEvent(final String column, final String services, final int firstRow) {
+        this.column = column;
+        this.services = services;
+        this.firstRow = firstRow;
+        begin();
+    }
+
+    /**
+     * Ends and commits the event
+     */
+    void finish() {
+        end();
+        if (shouldCommit())
+            commit();
+    }
+}
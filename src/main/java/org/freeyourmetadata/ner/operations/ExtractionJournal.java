@@ -0,0 +1,328 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.refine.util.JSONUtilities;
+import com.google.refine.util.ParsingUtilities;
+import org.apache.log4j.Logger;
+import org.freeyourmetadata.ner.services.ExtractionResult;
+import org.freeyourmetadata.ner.services.NERServiceManager;
+
+/**
+ * Append-only journal of the results of a named-entity recognition run,
+ * so that an interrupted or cancelled run can be resumed without repeating completed requests.
+ * The journal consists of JSON lines: a header with the project, column, services, and hashes of their settings,
+ * followed by the results of every row with the hash of its text.
+ * Lines are buffered and written to disk at every checkpoint.
+ *
+ * @author Ruben Verborgh
+ */
+public class ExtractionJournal implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(ExtractionJournal.class);
+    private final static String FOLDER = "journals";
+
+    private final File file;
+    private final HashMap<Integer, JournalRow> resumedRows;
+    private final Writer writer;
+    private final JsonGenerator json;
+
+    /**
+     * Opens the journal of a run, resuming the results in the file if requested
+     *
+     * @param file         The journal file
+     * @param projectId    The ID of the project
+     * @param columnName   The name of the column on which named-entity recognition is performed
+     * @param serviceNames   The names of the used services
+     * @param settingsHashes The hashes of the settings of the used services
+     * @param resume         Whether the results of an earlier run with the same services and settings should be reused
+     * @throws IOException if the journal cannot be created
+     */
+    public ExtractionJournal(final File file, final long projectId, final String columnName,
+                             final String[] serviceNames, final long[] settingsHashes, final boolean resume)
+            throws IOException {
+        this.file = file;
+        resumedRows = new HashMap<>();
+        final boolean append = resume && file.isFile() && readRows(file, serviceNames, settingsHashes, resumedRows);
+        if (resume && !append)
+            LOGGER.info(String.format("No journal to resume for column %s with services %s.",
+                    columnName, String.join(", ", serviceNames)));
+
+        file.getParentFile().mkdirs();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), StandardCharsets.UTF_8));
+        json = ParsingUtilities.mapper.getFactory().createGenerator(writer);
+        json.setRootValueSeparator(new SerializedString("\n"));
+        if (append) {
+            // Start on a new line, in case the last line was only partially written
+            writer.write('\n');
+        } else {
+            json.writeStartObject();
+            json.writeNumberField("project", projectId);
+            json.writeStringField("column", columnName);
+            json.writeArrayFieldStart("services");
+            for (final String serviceName : serviceNames)
+                json.writeString(serviceName);
+            json.writeEndArray();
+            json.writeFieldName("settings");
+            json.writeArray(settingsHashes, 0, settingsHashes.length);
+            json.writeEndObject();
+        }
+        checkpoint();
+    }
+
+    /**
+     * Gets the journal file of a column
+     *
+     * @param projectId  The ID of the project
+     * @param columnName The name of the column
+     * @return The journal file
+     */
+    public static File getFile(final long projectId, final String columnName) {
+        return new File(new File(NERServiceManager.getCacheFolder(), FOLDER),
+                String.format("%d-%016x.jsonl", projectId, hashText(columnName)));
+    }
+
+    /**
+     * Gets the number of rows with resumed results
+     *
+     * @return The number of rows
+     */
+    public int getResumedRowCount() {
+        return resumedRows.size();
+    }
+
+    /**
+     * Gets the journaled results of a row, if its text has not changed since
+     *
+     * @param rowIndex The index of the row
+     * @param textHash The hash of the current text of the row
+     * @return The results per service, or <tt>null</tt> if the row has no valid journaled results
+     */
+    public ExtractionResult[] getResumedResults(final int rowIndex, final long textHash) {
+        final JournalRow row = resumedRows.get(rowIndex);
+        return row == null || row.textHash != textHash ? null : row.results;
+    }
+
+    /**
+     * Appends the results of a row to the journal
+     *
+     * @param rowIndex   The index of the row
+     * @param textHash   The hash of the text of the row
+     * @param rowResults The results per service
+     * @throws IOException if the results cannot be written
+     */
+    public void append(final int rowIndex, final long textHash, final ExtractionResult[] rowResults)
+            throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("row", rowIndex);
+        json.writeNumberField("hash", textHash);
+        json.writeFieldName("results");
+        NERChange.writeRowResults(json, rowResults);
+        json.writeEndObject();
+    }
+
+    /**
+     * Writes all appended results to disk
+     *
+     * @throws IOException if the results cannot be written
+     */
+    public void checkpoint() throws IOException {
+        json.flush();
+    }
+
+    /**
+     * Writes all appended results to disk and closes the journal
+     *
+     * @throws IOException if the results cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        json.close();
+    }
+
+    /**
+     * Closes and removes the journal, because its results are no longer needed
+     */
+    public void delete() {
+        try {
+            close();
+        } catch (IOException error) {
+            LOGGER.warn("Could not close the journal " + file, error);
+        }
+        if (!file.delete())
+            LOGGER.warn("Could not delete the journal " + file);
+    }
+
+    /**
+     * Reads the services and number of journaled rows of a journal file,
+     * without reading the results of the rows
+     *
+     * @param file The journal file
+     * @return The header of the journal with an additional <tt>rows</tt> field,
+     * or <tt>null</tt> if the file does not exist or cannot be read
+     */
+    public static ObjectNode readSummary(final File file) {
+        if (!file.isFile())
+            return null;
+        try (BufferedReader reader = openReader(file)) {
+            final String headerLine = reader.readLine();
+            if (headerLine == null)
+                return null;
+            final ObjectNode header = (ObjectNode) ParsingUtilities.mapper.readTree(headerLine);
+            // Rows that were retried appear more than once, so count their distinct indices
+            final BitSet rows = new BitSet();
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                final int rowIndex = readRowIndex(line);
+                if (rowIndex >= 0)
+                    rows.set(rowIndex);
+            }
+            header.put("rows", rows.cardinality());
+            return header;
+        } catch (IOException | RuntimeException error) {
+            LOGGER.warn("Could not read the journal " + file, error);
+            return null;
+        }
+    }
+
+    /**
+     * Calculates a 64-bit FNV-1a hash of a text
+     *
+     * @param text The text
+     * @return The hash
+     */
+    public static long hashText(final String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Reads the journaled rows of a file, if it was created for the given services and settings
+     *
+     * @param file           The journal file
+     * @param serviceNames   The names of the services
+     * @param settingsHashes The hashes of the settings of the services
+     * @param rows           The map to which the rows are added by index
+     * @return <tt>true</tt> if the journal belongs to the services and settings
+     */
+    private static boolean readRows(final File file, final String[] serviceNames, final long[] settingsHashes,
+                                    final HashMap<Integer, JournalRow> rows) {
+        try (BufferedReader reader = openReader(file)) {
+            final String headerLine = reader.readLine();
+            if (headerLine == null)
+                return false;
+            final JsonNode header = ParsingUtilities.mapper.readTree(headerLine);
+            if (!Arrays.equals(JSONUtilities.getStringArray((ObjectNode) header, "services"), serviceNames)
+                    || !Arrays.equals(readSettingsHashes(header), settingsHashes))
+                return false;
+
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.isEmpty())
+                    continue;
+                final JsonNode row;
+                try {
+                    row = ParsingUtilities.mapper.readTree(line);
+                } catch (IOException error) {
+                    // A line that was only partially written before an interruption
+                    continue;
+                }
+                if (!row.has("row") || !row.has("hash") || !(row.get("results") instanceof ArrayNode))
+                    continue;
+                rows.put(row.get("row").asInt(), new JournalRow(row.get("hash").asLong(),
+                        NERChange.readRowResults((ArrayNode) row.get("results"))));
+            }
+            return true;
+        } catch (IOException | RuntimeException error) {
+            LOGGER.warn("Could not read the journal " + file, error);
+            rows.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Reads the index of a journaled row, skipping over its results without parsing them
+     *
+     * @param line The line of the row
+     * @return The index of the row, or -1 if the line is empty or was only partially written
+     */
+    private static int readRowIndex(final String line) {
+        if (line.isEmpty())
+            return -1;
+        try (JsonParser parser = ParsingUtilities.mapper.getFactory().createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                return -1;
+            int rowIndex = -1;
+            boolean hasHash = false, hasResults = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String field = parser.getCurrentName();
+                final JsonToken value = parser.nextToken();
+                if ("row".equals(field) && value == JsonToken.VALUE_NUMBER_INT)
+                    rowIndex = parser.getIntValue();
+                else if ("hash".equals(field) && value == JsonToken.VALUE_NUMBER_INT)
+                    hasHash = true;
+                else if ("results".equals(field) && value == JsonToken.START_ARRAY)
+                    hasResults = true;
+                parser.skipChildren();
+            }
+            // A partially written line ends before the object is closed
+            return parser.currentToken() == JsonToken.END_OBJECT && hasHash && hasResults ? rowIndex : -1;
+        } catch (IOException error) {
+            return -1;
+        }
+    }
+
+    /**
+     * Reads the hashes of the service settings from the header of a journal
+     *
+     * @param header The header
+     * @return The hashes, or <tt>null</tt> if the header has none
+     */
+    private static long[] readSettingsHashes(final JsonNode header) {
+        if (!(header.get("settings") instanceof ArrayNode))
+            return null;
+        final ArrayNode settingsJson = (ArrayNode) header.get("settings");
+        final long[] settingsHashes = new long[settingsJson.size()];
+        for (int i = 0; i < settingsHashes.length; i++)
+            settingsHashes[i] = settingsJson.get(i).asLong();
+        return settingsHashes;
+    }
+
+    private static BufferedReader openReader(final File file) throws IOException {
+        return new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The journaled results of a row
+     */
+    private static class JournalRow {
+        private final long textHash;
+        private final ExtractionResult[] results;
+
+        JournalRow(final long textHash, final ExtractionResult[] results) {
+            this.textHash = textHash;
+            this.results = results;
+        }
+    }
+}
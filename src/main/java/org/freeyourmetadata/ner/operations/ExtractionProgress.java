@@ -0,0 +1,212 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Live progress of a named-entity recognition run, published through the process JSON:
+ * completed rows, in-flight requests, errors, and the current throughput per service,
+ * with an estimated completion time based on the throughput over a moving window.
+ * Rows are counted by the extraction thread; the figures can be read from any thread.
+ *
+ * @author Ruben Verborgh
+ */
+public class ExtractionProgress {
+    private final static long SAMPLE_INTERVAL = 1000;
+    private final static int WINDOW_SAMPLES = 60;
+
+    private final int rowsTotal;
+    private final String[] serviceNames;
+    private final RunReport.ServiceRecorder[] recorders;
+    private final AtomicInteger rowsCompleted = new AtomicInteger();
+
+    /* Ring of samples: the time, the completed rows, and the completed requests per service */
+    private final long[] sampleTimes = new long[WINDOW_SAMPLES];
+    private final long[][] sampleCounts;
+    private int sampleCount;
+    private int nextSample;
+
+    /**
+     * Creates a new progress tracker
+     *
+     * @param rowsTotal The number of rows on which extraction will be performed
+     * @param recorders The recorders of the services of the run by name
+     */
+    public ExtractionProgress(final int rowsTotal, final Map<String, RunReport.ServiceRecorder> recorders) {
+        this.rowsTotal = rowsTotal;
+        this.serviceNames = recorders.keySet().toArray(new String[recorders.size()]);
+        this.recorders = recorders.values().toArray(new RunReport.ServiceRecorder[recorders.size()]);
+        this.sampleCounts = new long[WINDOW_SAMPLES][serviceNames.length + 1];
+        sample(System.currentTimeMillis());
+    }
+
+    /**
+     * Records a completed row
+     */
+    public void rowCompleted() {
+        rowsCompleted.incrementAndGet();
+        final long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (now - sampleTimes[(nextSample + WINDOW_SAMPLES - 1) % WINDOW_SAMPLES] >= SAMPLE_INTERVAL)
+                sample(now);
+        }
+    }
+
+    /**
+     * Gets the number of rows on which extraction will be performed
+     *
+     * @return The number of rows
+     */
+    @JsonProperty("rowsTotal")
+    public int getRowsTotal() {
+        return rowsTotal;
+    }
+
+    /**
+     * Gets the number of rows on which extraction has completed
+     *
+     * @return The number of rows
+     */
+    @JsonProperty("rowsCompleted")
+    public int getRowsCompleted() {
+        return rowsCompleted.get();
+    }
+
+    /**
+     * Gets the number of requests that are currently being executed by all services
+     *
+     * @return The number of requests
+     */
+    @JsonProperty("inFlight")
+    public long getInFlightCount() {
+        long inFlight = 0;
+        for (final RunReport.ServiceRecorder recorder : recorders)
+            inFlight += recorder.getInFlightCount();
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of failed requests of all services so far
+     *
+     * @return The number of errors
+     */
+    @JsonProperty("errors")
+    public long getErrorCount() {
+        long errors = 0;
+        for (final RunReport.ServiceRecorder recorder : recorders)
+            errors += recorder.getErrorCount();
+        return errors;
+    }
+
+    /**
+     * Gets the number of rows completed per second over the moving window
+     *
+     * @return The throughput in rows per second
+     */
+    @JsonProperty("rowsPerSecond")
+    public synchronized double getRowsPerSecond() {
+        return getRate(0, rowsCompleted.get());
+    }
+
+    /**
+     * Gets the estimated number of seconds until all rows have completed
+     *
+     * @return The estimated time in seconds, or -1 if no estimate is possible yet
+     */
+    @JsonProperty("etaSeconds")
+    public long getEtaSeconds() {
+        final double rowsPerSecond = getRowsPerSecond();
+        return rowsPerSecond <= 0 ? -1 : Math.round((rowsTotal - rowsCompleted.get()) / rowsPerSecond);
+    }
+
+    /**
+     * Gets the progress of each service
+     *
+     * @return The progress by service name
+     */
+    @JsonProperty("services")
+    public synchronized Map<String, ServiceProgress> getServices() {
+        final LinkedHashMap<String, ServiceProgress> services = new LinkedHashMap<>();
+        for (int i = 0; i < recorders.length; i++) {
+            services.put(serviceNames[i], new ServiceProgress(getRate(i + 1, recorders[i].getCompletedCount()),
+                    recorders[i].getInFlightCount(), recorders[i].getErrorCount()));
+        }
+        return services;
+    }
+
+    /**
+     * Takes a sample of the counters, overwriting the oldest sample if the window is full
+     */
+    private void sample(final long now) {
+        sampleTimes[nextSample] = now;
+        sampleCounts[nextSample][0] = rowsCompleted.get();
+        for (int i = 0; i < recorders.length; i++)
+            sampleCounts[nextSample][i + 1] = recorders[i].getCompletedCount();
+        nextSample = (nextSample + 1) % WINDOW_SAMPLES;
+        sampleCount = Math.min(sampleCount + 1, WINDOW_SAMPLES);
+    }
+
+    /**
+     * Gets the rate of a counter since the oldest sample in the window
+     */
+    private double getRate(final int counter, final long current) {
+        final int oldest = (nextSample + WINDOW_SAMPLES - sampleCount) % WINDOW_SAMPLES;
+        final long elapsed = System.currentTimeMillis() - sampleTimes[oldest];
+        return elapsed <= 0 ? 0 : (current - sampleCounts[oldest][counter]) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Progress of one service during a run
+     */
+    public static class ServiceProgress {
+        private final double requestsPerSecond;
+        private final long inFlight;
+        private final long errors;
+
+        /**
+         * Creates a new service progress
+         *
+         * @param requestsPerSecond The number of requests completed per second over the moving window
+         * @param inFlight          The number of requests currently being executed
+         * @param errors            The number of failed requests so far
+         */
+        public ServiceProgress(final double requestsPerSecond, final long inFlight, final long errors) {
+            this.requestsPerSecond = requestsPerSecond;
+            this.inFlight = inFlight;
+            this.errors = errors;
+        }
+
+        /**
+         * Gets the number of requests completed per second over the moving window
+         *
+         * @return The throughput in requests per second
+         */
+        @JsonProperty("requestsPerSecond")
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        /**
+         * Gets the number of requests currently being executed
+         *
+         * @return The number of requests
+         */
+        @JsonProperty("inFlight")
+        public long getInFlightCount() {
+            return inFlight;
+        }
+
+        /**
+         * Gets the number of failed requests so far
+         *
+         * @return The number of errors
+         */
+        @JsonProperty("errors")
+        public long getErrorCount() {
+            return errors;
+        }
+    }
+}
@@ -19,12 +19,17 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.refine.util.ParsingUtilities;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
 import org.freeyourmetadata.ner.services.ExtractionResult;
 import org.freeyourmetadata.ner.services.NamedEntity;
 
 import com.google.refine.history.Change;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.ReconCandidate;
 import com.google.refine.model.Row;
 import com.google.refine.model.changes.CellAtRow;
 import com.google.refine.model.changes.ColumnAdditionChange;
@@ -38,13 +43,38 @@ import com.google.refine.util.Pool;
  * @author Ruben Verborgh
  */
 public class NERChange implements Change {
+    /**
+     * The ways in which extracted named entities can be written to the project
+     */
+    public enum OutputMode {
+        /** One row per named entity, adding blank rows as necessary */
+        ROWS,
+        /** One cell per row and service, holding all named entities of the row */
+        CELLS;
+
+        /**
+         * Parses an output mode, defaulting to <tt>ROWS</tt>
+         *
+         * @param name The name of the output mode (case-insensitive, can be null)
+         * @return The output mode
+         */
+        @JsonCreator
+        public static OutputMode parse(final String name) {
+            return name == null || name.isEmpty() ? ROWS : valueOf(name.toUpperCase());
+        }
+    }
+
     @JsonProperty("columnIndex")
     private final int columnIndex;
     @JsonProperty("serviceNames")
     private final String[] serviceNames;
-    @JsonProperty("extractionResults")
-    private final ExtractionResult[][] extractionResults;
+    private final CompactExtractionResults extractionResults;
+    private final OutputMode outputMode;
+    private final RunReport report;
+    private final long[] textHashes;
+    private final long[] settingsHashes;
     private final List<Integer> addedRowIds;
+    private PreparedRows preparedRows;
 
     /**
      * Creates a new <tt>NERChange</tt>
@@ -56,22 +86,260 @@ public class NERChange implements Change {
     @JsonCreator
     public NERChange(final int columnIndex, final String[] serviceNames,
                      final ExtractionResult[][] extractionResults) {
+        this(columnIndex, serviceNames, CompactExtractionResults.fromArray(serviceNames.length, extractionResults));
+    }
+
+    /**
+     * Creates a new <tt>NERChange</tt> from compactly stored results
+     *
+     * @param columnIndex       The index of the column used for named-entity recognition
+     * @param serviceNames      The names of the used services
+     * @param extractionResults The results of named-entity extraction per row and service
+     */
+    public NERChange(final int columnIndex, final String[] serviceNames,
+                     final CompactExtractionResults extractionResults) {
+        this(columnIndex, serviceNames, extractionResults, OutputMode.ROWS);
+    }
+
+    /**
+     * Creates a new <tt>NERChange</tt> from compactly stored results
+     *
+     * @param columnIndex       The index of the column used for named-entity recognition
+     * @param serviceNames      The names of the used services
+     * @param extractionResults The results of named-entity extraction per row and service
+     * @param outputMode        The way in which the named entities are written to the project
+     */
+    public NERChange(final int columnIndex, final String[] serviceNames,
+                     final CompactExtractionResults extractionResults, final OutputMode outputMode) {
+        this(columnIndex, serviceNames, extractionResults, outputMode, null);
+    }
+
+    /**
+     * Creates a new <tt>NERChange</tt> from compactly stored results and the report of their extraction
+     *
+     * @param columnIndex       The index of the column used for named-entity recognition
+     * @param serviceNames      The names of the used services
+     * @param extractionResults The results of named-entity extraction per row and service
+     * @param outputMode        The way in which the named entities are written to the project
+     * @param report            The performance report of the extraction (can be null)
+     */
+    public NERChange(final int columnIndex, final String[] serviceNames,
+                     final CompactExtractionResults extractionResults, final OutputMode outputMode,
+                     final RunReport report) {
+        this(columnIndex, serviceNames, extractionResults, outputMode, report, null);
+    }
+
+    /**
+     * Creates a new <tt>NERChange</tt> from compactly stored results, the report of their extraction,
+     * and the hashes of the extracted texts, so that a later extraction can reuse the results of unchanged texts
+     *
+     * @param columnIndex       The index of the column used for named-entity recognition
+     * @param serviceNames      The names of the used services
+     * @param extractionResults The results of named-entity extraction per row and service
+     * @param outputMode        The way in which the named entities are written to the project
+     * @param report            The performance report of the extraction (can be null)
+     * @param textHashes        The hash of the extracted text per row, 0 if the row was not extracted (can be null)
+     */
+    public NERChange(final int columnIndex, final String[] serviceNames,
+                     final CompactExtractionResults extractionResults, final OutputMode outputMode,
+                     final RunReport report, final long[] textHashes) {
+        this(columnIndex, serviceNames, extractionResults, outputMode, report, textHashes, null);
+    }
+
+    /**
+     * Creates a new <tt>NERChange</tt> from compactly stored results, the report of their extraction,
+     * the hashes of the extracted texts, and the hashes of the settings of the services,
+     * so that a later extraction can reuse the results of unchanged texts by services with unchanged settings
+     *
+     * @param columnIndex       The index of the column used for named-entity recognition
+     * @param serviceNames      The names of the used services
+     * @param extractionResults The results of named-entity extraction per row and service
+     * @param outputMode        The way in which the named entities are written to the project
+     * @param report            The performance report of the extraction (can be null)
+     * @param textHashes        The hash of the extracted text per row, 0 if the row was not extracted (can be null)
+     * @param settingsHashes    The hash of the settings per service (can be null)
+     */
+    public NERChange(final int columnIndex, final String[] serviceNames,
+                     final CompactExtractionResults extractionResults, final OutputMode outputMode,
+                     final RunReport report, final long[] textHashes, final long[] settingsHashes) {
         this.columnIndex = columnIndex;
         this.serviceNames = serviceNames;
         this.extractionResults = extractionResults;
+        this.outputMode = outputMode;
+        this.report = report;
+        this.textHashes = textHashes;
+        this.settingsHashes = settingsHashes;
         this.addedRowIds = new ArrayList<>();
     }
 
+    /**
+     * Gets the performance report of the extraction
+     *
+     * @return The report, or <tt>null</tt> if none was recorded
+     */
+    public RunReport getReport() {
+        return report;
+    }
+
+    /**
+     * Gets the names of the used services
+     *
+     * @return The service names
+     */
+    public String[] getServiceNames() {
+        return serviceNames;
+    }
+
+    /**
+     * Gets the results of named-entity extraction
+     *
+     * @return The results per row and service
+     */
+    public CompactExtractionResults getExtractionResults() {
+        return extractionResults;
+    }
+
+    /**
+     * Gets the hashes of the extracted texts
+     *
+     * @return The hash of the extracted text per row, 0 if the row was not extracted,
+     * or <tt>null</tt> if no hashes were recorded
+     */
+    public long[] getTextHashes() {
+        return textHashes;
+    }
+
+    /**
+     * Gets the hashes of the settings with which the services extracted the texts
+     *
+     * @return The hash of the settings per service, or <tt>null</tt> if no hashes were recorded
+     */
+    public long[] getSettingsHashes() {
+        return settingsHashes;
+    }
+
+    /**
+     * Gets the indices of the rows that the last application of this change added for named entities
+     *
+     * @return The row indices, in ascending order
+     */
+    public List<Integer> getAddedRowIds() {
+        return Collections.unmodifiableList(addedRowIds);
+    }
+
+    /**
+     * Gets the named-entity recognition change of a history entry.
+     * The changes of past entries are only loaded from disk when needed,
+     * so this loads the change if the entry belongs to a named-entity recognition operation.
+     *
+     * @param entry   The history entry
+     * @param manager The manager that loads changes of history entries
+     * @return The change, or <tt>null</tt> if the entry is not a named-entity recognition
+     */
+    public static NERChange fromHistoryEntry(final HistoryEntry entry, final HistoryEntryManager manager) {
+        if (!(entry.operation instanceof NEROperation))
+            return null;
+        if (entry.getChange() == null)
+            manager.loadChange(entry);
+        final Change change = entry.getChange();
+        return change instanceof NERChange ? (NERChange) change : null;
+    }
+
+    /**
+     * Builds the rows of the project with the named entities in advance, without holding the project lock,
+     * so that the next application of this change only needs to swap them in.
+     * Since OpenRefine applies a change while holding the project lock,
+     * this should be called before the change is added to the history.
+     *
+     * @param project The project
+     */
+    public void prepare(final Project project) {
+        // Reserve cell indexes for the new columns and take a snapshot of the rows
+        final int[] cellIndexes = new int[serviceNames.length];
+        final List<Row> originalRows;
+        synchronized (project) {
+            for (int c = 0; c < cellIndexes.length; c++)
+                cellIndexes[c] = project.columnModel.allocateNewCellIndex();
+            originalRows = new ArrayList<>(project.rows);
+        }
+
+        // Build the new rows without blocking other requests to the project
+        preparedRows = new PreparedRows(originalRows, cellIndexes, insertValues(originalRows, cellIndexes));
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public void apply(final Project project) {
+        final NERChangeEvent event = new NERChangeEvent("apply");
+        final long start = System.currentTimeMillis();
+        final List<Row> newRows;
         synchronized (project) {
-            final int[] cellIndexes = createColumns(project);
-            insertValues(project, cellIndexes);
+            // Use the prepared rows if the project did not change since they were built;
+            // otherwise, build the rows now
+            final PreparedRows prepared = preparedRows;
+            preparedRows = null;
+            final int[] cellIndexes;
+            if (prepared != null && isPreparedFor(project.rows, prepared)) {
+                cellIndexes = prepared.cellIndexes;
+                newRows = prepared.newRows;
+            } else {
+                cellIndexes = prepared != null ? prepared.cellIndexes : new int[serviceNames.length];
+                if (prepared == null) {
+                    for (int c = 0; c < cellIndexes.length; c++)
+                        cellIndexes[c] = project.columnModel.allocateNewCellIndex();
+                }
+                newRows = insertValues(project.rows, cellIndexes);
+            }
+
+            // Swap in the new rows and columns
+            project.rows.clear();
+            project.rows.addAll(newRows);
+            createColumns(project, cellIndexes);
             project.update();
         }
+        if (report != null)
+            report.setApplyMillis(System.currentTimeMillis() - start);
+        commitEvent(event, addedRowIds.size(), newRows.size());
+    }
+
+    /**
+     * Determines whether the prepared rows can replace the current rows of the project,
+     * which is the case if no rows were added, removed, or edited since they were built
+     *
+     * @param rows     The current rows of the project
+     * @param prepared The prepared rows
+     * @return <tt>true</tt> if the prepared rows are up to date
+     */
+    protected boolean isPreparedFor(final List<Row> rows, final PreparedRows prepared) {
+        final List<Row> originalRows = prepared.originalRows;
+        if (rows.size() != originalRows.size())
+            return false;
+        // The new rows are the original rows or copies of them, with the added rows in between
+        int added = 0;
+        int original = 0;
+        for (int r = 0; r < prepared.newRows.size(); r++) {
+            if (added < addedRowIds.size() && addedRowIds.get(added) == r) {
+                added++;
+                continue;
+            }
+            final Row originalRow = originalRows.get(original);
+            if (rows.get(original++) != originalRow)
+                return false;
+            // Rows are edited in place, so copies need to have the same cells as their original
+            final Row row = prepared.newRows.get(r);
+            if (row != originalRow) {
+                if (row.flagged != originalRow.flagged || row.starred != originalRow.starred
+                        || row.cells.size() < originalRow.cells.size())
+                    return false;
+                for (int c = 0; c < originalRow.cells.size(); c++) {
+                    if (row.cells.get(c) != originalRow.cells.get(c))
+                        return false;
+                }
+            }
+        }
+        return original == originalRows.size();
     }
 
     /**
@@ -79,10 +347,35 @@ public class NERChange implements Change {
      */
     @Override
     public void revert(final Project project) {
+        final NERChangeEvent event = new NERChangeEvent("revert");
+        final int addedRowCount = addedRowIds.size();
+        final int projectRowCount;
         synchronized (project) {
             deleteRows(project);
             deleteColumns(project);
             project.update();
+            projectRowCount = project.rows.size();
+        }
+        commitEvent(event, addedRowCount, projectRowCount);
+    }
+
+    /**
+     * Ends the flight recorder event of applying or reverting this change, and commits it if enabled
+     *
+     * @param event           The event
+     * @param addedRowCount   The number of rows added for named entities
+     * @param projectRowCount The number of rows of the project afterwards
+     */
+    protected void commitEvent(final NERChangeEvent event, final int addedRowCount, final int projectRowCount) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.services = String.join(", ", serviceNames);
+            event.outputMode = outputMode.name().toLowerCase();
+            event.resultRowCount = extractionResults.getRowCount();
+            event.entityCount = extractionResults.getDistinctEntityCount();
+            event.addedRowCount = addedRowCount;
+            event.projectRowCount = projectRowCount;
+            event.commit();
         }
     }
 
@@ -96,6 +389,7 @@ public class NERChange implements Change {
             /* Change object */
             json.writeStartObject();
             json.writeNumberField("column", columnIndex);
+            json.writeStringField("mode", outputMode.name().toLowerCase());
             json.writeArrayFieldStart("services");
             for (String serviceName : serviceNames) {
                 json.writeString(serviceName);
@@ -106,22 +400,24 @@ public class NERChange implements Change {
             {
                 /* Array of results per row */
                 json.writeArrayFieldStart("entities");
-                for (final ExtractionResult[] rowResults : extractionResults) {
+                final int rowCount = extractionResults.getRowCount();
+                for (int row = 0; row < rowCount; row++) {
                     /* Array of results per service on this row */
                     json.writeStartArray();
                     /* Array of results for this service */
-                    for (final ExtractionResult extractionResult : rowResults) {
+                    for (int service = 0; service < serviceNames.length; service++) {
                         /* Array of entities */
-                        if (!extractionResult.hasError()) {
+                        if (!extractionResults.hasError(row, service)) {
                             json.writeStartArray();
-                            for (final NamedEntity entity : extractionResult.getNamedEntities())
-                                entity.writeTo(json);
+                            final int entityCount = extractionResults.getEntityCount(row, service);
+                            for (int i = 0; i < entityCount; i++)
+                                extractionResults.getNamedEntity(row, service, i).writeTo(json);
                             json.writeEndArray();
                         }
                         /* Error object */
                         else {
                             json.writeStartObject();
-                            json.writeStringField("error", extractionResult.getExtractionError().message);
+                            json.writeStringField("error", extractionResults.getExtractionError(row, service).message);
                             json.writeEndObject();
                         }
                     }
@@ -136,6 +432,21 @@ public class NERChange implements Change {
                     json.writeNumber(addedRowId);
                 json.writeEndArray();
             }
+            /* Performance report */
+            if (report != null) {
+                json.writeFieldName("report");
+                report.writeTo(json);
+            }
+            /* Text hashes per row */
+            if (textHashes != null) {
+                json.writeFieldName("hashes");
+                json.writeArray(textHashes, 0, textHashes.length);
+            }
+            /* Settings hashes per service */
+            if (settingsHashes != null) {
+                json.writeFieldName("settingsHashes");
+                json.writeArray(settingsHashes, 0, settingsHashes.length);
+            }
             json.writeEndObject();
             json.close();
         } catch (IOException error) {
@@ -159,69 +470,119 @@ public class NERChange implements Change {
         /* Simple properties */
         final int columnIndex = changeJson.get("column").asInt();
         final String[] serviceNames = JSONUtilities.getStringArray(changeJson, "services");
+        final OutputMode outputMode = OutputMode.parse(changeJson.has("mode") ? changeJson.get("mode").asText() : null);
 
         /* Nested array of extraction results */
         final ArrayNode namedEntitiesJson = (ArrayNode) changeJson.get("entities");
-        final ExtractionResult[][] extractionResults = new ExtractionResult[namedEntitiesJson.size()][];
+        final CompactExtractionResults extractionResults = new CompactExtractionResults(serviceNames.length);
         /* Array of results per row */
-        for (int i = 0; i < extractionResults.length; i++) {
+        for (int i = 0; i < namedEntitiesJson.size(); i++) {
             /* Array of results per service on this row */
-            final ArrayNode rowResultsJson = (ArrayNode) namedEntitiesJson.get(i);
-            final ExtractionResult[] rowResults = new ExtractionResult[rowResultsJson.size()];
-            for (int j = 0; j < rowResults.length; j++) {
-                final JsonNode error = rowResultsJson.get(j);
-                if (error instanceof ArrayNode) {
-                    /* Array of entities */
-                    final ArrayNode entitiesJson = (ArrayNode) rowResultsJson.get(j);
-                    final NamedEntity[] entities = new NamedEntity[rowResultsJson.size()];
-                    for (int k = 0; k < entities.length; k++) {
-                        try {
-                            entities[k] = new NamedEntity((ObjectNode) entitiesJson.get(k));
-                        }
-                        // entitiesJson.get(k) == null will trigger a entitiesJson.get(k)
-                        catch (NullPointerException | IOException e) {
-                            entities[k] = new NamedEntity("");
-                        }
-                    }
-                    rowResults[j] = new ExtractionResult(entities);
-                } else {
-                    /* Error object */
-                    rowResults[j] = new ExtractionResult(new Exception(error.get("error").asText()));
-                }
-            }
-            extractionResults[i] = rowResults;
+            final ExtractionResult[] rowResults = readRowResults((ArrayNode) namedEntitiesJson.get(i));
+            extractionResults.addRow(rowResults);
+        }
+        extractionResults.trim();
+
+        /* Performance report */
+        final RunReport report = changeJson.has("report") ? RunReport.fromJson((ObjectNode) changeJson.get("report")) : null;
+
+        /* Text hashes per row */
+        long[] textHashes = null;
+        if (changeJson.has("hashes")) {
+            final ArrayNode hashesJson = (ArrayNode) changeJson.get("hashes");
+            textHashes = new long[hashesJson.size()];
+            for (int i = 0; i < textHashes.length; i++)
+                textHashes[i] = hashesJson.get(i).asLong();
+        }
+
+        /* Settings hashes per service */
+        long[] settingsHashes = null;
+        if (changeJson.has("settingsHashes")) {
+            final ArrayNode hashesJson = (ArrayNode) changeJson.get("settingsHashes");
+            settingsHashes = new long[hashesJson.size()];
+            for (int i = 0; i < settingsHashes.length; i++)
+                settingsHashes[i] = hashesJson.get(i).asLong();
         }
 
         /* Reconstruct change object */
-        final NERChange change = new NERChange(columnIndex, serviceNames, extractionResults);
+        final NERChange change = new NERChange(columnIndex, serviceNames, extractionResults, outputMode, report,
+                textHashes, settingsHashes);
         for (final int addedRowId : JSONUtilities.getIntArray(changeJson, "addedRows"))
             change.addedRowIds.add(addedRowId);
         return change;
     }
 
     /**
-     * Create the columns where the named entities will be stored
+     * Writes the results of a row as JSON, in the format of the <tt>entities</tt> of a saved change
      *
-     * @param project The project
-     * @return The cell indexes of the created columns
+     * @param json       The JSON generator
+     * @param rowResults The results per service
+     * @throws IOException if writing fails
      */
-    protected int[] createColumns(final Project project) {
-        // Create empty cells that will populate each row
-        final int rowCount = project.rows.size();
-        final ArrayList<CellAtRow> emptyCells = new ArrayList<CellAtRow>(rowCount);
-        for (int r = 0; r < rowCount; r++)
-            emptyCells.add(new CellAtRow(r, null));
+    protected static void writeRowResults(final JsonGenerator json, final ExtractionResult[] rowResults) throws IOException {
+        json.writeStartArray();
+        for (final ExtractionResult result : rowResults) {
+            /* Array of entities */
+            if (!result.hasError()) {
+                json.writeStartArray();
+                for (final NamedEntity entity : result.getNamedEntities())
+                    entity.writeTo(json);
+                json.writeEndArray();
+            }
+            /* Error object */
+            else {
+                json.writeStartObject();
+                json.writeStringField("error", result.getExtractionError().message);
+                json.writeEndObject();
+            }
+        }
+        json.writeEndArray();
+    }
 
-        // Create rows
-        final int[] cellIndexes = new int[serviceNames.length];
-        for (int c = 0; c < serviceNames.length; c++) {
-            final CustomColumnAdditionChange change
-                    = new CustomColumnAdditionChange(serviceNames[c], columnIndex + c, emptyCells);
-            change.apply(project);
-            cellIndexes[c] = change.getCellIndex();
+    /**
+     * Reads the results of a row from JSON, in the format of the <tt>entities</tt> of a saved change
+     *
+     * @param rowResultsJson The results per service
+     * @return The results per service
+     */
+    protected static ExtractionResult[] readRowResults(final ArrayNode rowResultsJson) {
+        final ExtractionResult[] rowResults = new ExtractionResult[rowResultsJson.size()];
+        for (int j = 0; j < rowResults.length; j++) {
+            final JsonNode error = rowResultsJson.get(j);
+            if (error instanceof ArrayNode) {
+                /* Array of entities */
+                final ArrayNode entitiesJson = (ArrayNode) rowResultsJson.get(j);
+                final NamedEntity[] entities = new NamedEntity[entitiesJson.size()];
+                for (int k = 0; k < entities.length; k++) {
+                    try {
+                        entities[k] = new NamedEntity((ObjectNode) entitiesJson.get(k));
+                    }
+                    // entitiesJson.get(k) == null will trigger a entitiesJson.get(k)
+                    catch (NullPointerException | IOException e) {
+                        entities[k] = new NamedEntity("");
+                    }
+                }
+                rowResults[j] = new ExtractionResult(entities);
+            } else {
+                /* Error object */
+                rowResults[j] = new ExtractionResult(new Exception(error.get("error").asText()));
+            }
         }
-        // Return cell indexes of created rows
-        return cellIndexes;
+        return rowResults;
+    }
+
+    /**
+     * Create the columns where the named entities will be stored
+     *
+     * @param project     The project
+     * @param cellIndexes The reserved cell indexes of the columns
+     */
+    protected void createColumns(final Project project, final int[] cellIndexes) {
+        // Rows without a cell at the new index already read as empty,
+        // so the columns are created without placeholder cells
+        final List<CellAtRow> noCells = Collections.emptyList();
+        for (int c = 0; c < serviceNames.length; c++)
+            new CustomColumnAdditionChange(serviceNames[c], columnIndex + c, noCells, cellIndexes[c]).apply(project);
     }
 
     /**
@@ -235,62 +596,168 @@ public class NERChange implements Change {
     }
 
     /**
-     * Insert the extracted named entities into rows with the specified cell indexes
+     * Create a new list of rows that contains the extracted named entities
+     * in the specified cell indexes, leaving the original rows untouched
      *
-     * @param project     The project
-     * @param cellIndexes The cell indexes of the rows that will contain the named entities
+     * @param originalRows The rows of the project
+     * @param cellIndexes  The cell indexes of the columns that will contain the named entities
+     * @return The new rows
      */
-    protected void insertValues(final Project project, final int[] cellIndexes) {
-        final List<Row> rows = project.rows;
-        // Make sure there are rows
-        if (rows.isEmpty())
-            return;
-
-        // Make sure all rows have enough cells, creating new ones as necessary
+    protected List<Row> insertValues(final List<Row> originalRows, final int[] cellIndexes) {
+        final ArrayList<Row> rows = new ArrayList<>(originalRows.size());
+        final Recon[][] recons = new Recon[serviceNames.length][extractionResults.getDistinctEntityCount()];
         final int maxCellIndex = Collections.max(Arrays.asList(ArrayUtils.toObject(cellIndexes)));
         final int minRowSize = maxCellIndex + 1;
-        for (final Row row : rows)
-            while (row.cells.size() < minRowSize)
-                row.cells.add(null);
 
-        // Add the extracted named entities to all rows, creating new ones as necessary
-        int rowNumber = 0;
+        // Add the extracted named entities to copies of the original rows, creating new ones as necessary
         addedRowIds.clear();
-        for (final ExtractionResult[] rowResults : extractionResults) {
+        final int resultRowCount = Math.min(extractionResults.getRowCount(), originalRows.size());
+        for (int resultRow = 0; resultRow < resultRowCount; resultRow++) {
+            final Row originalRow = originalRows.get(resultRow);
+            // Write all named entities of a service into a single cell if requested
+            if (outputMode == OutputMode.CELLS) {
+                rows.add(createAggregatedRow(originalRow, resultRow, cellIndexes, minRowSize, recons));
+                continue;
+            }
+
             // Determine the maximum number of named entities per service
             int maxEntities = 0;
-            for (int col = 0; col < rowResults.length; col++) {
-                int neededCells = rowResults[col].hasError() ? 1 : rowResults[col].getNamedEntities().length;
+            for (int col = 0; col < serviceNames.length; col++) {
+                int neededCells = extractionResults.hasError(resultRow, col) ? 1
+                        : extractionResults.getEntityCount(resultRow, col);
                 maxEntities = Math.max(maxEntities, neededCells);
             }
-            if (maxEntities > 0) {
-                // Create new blank rows if the results don't fit on a single line
-                for (int i = 1; i < maxEntities; i++) {
-                    final Row entityRow = new Row(minRowSize);
-                    final int entityRowId = rowNumber + i;
-                    for (int j = 0; j < minRowSize; j++)
-                        entityRow.cells.add(null);
-                    rows.add(entityRowId, entityRow);
-                    addedRowIds.add(entityRowId);
-                }
-                // Place all results
-                for (int col = 0; col < rowResults.length; col++) {
-                    // Place each found entity on a row
-                    if (!rowResults[col].hasError()) {
-                        final NamedEntity[] entities = rowResults[col].getNamedEntities();
-                        for (int r = 0; r < entities.length; r++)
-                            rows.get(rowNumber + r).cells.set(cellIndexes[col], entities[r].toCell());
+            // Keep rows without results as they are
+            if (maxEntities == 0) {
+                rows.add(originalRow);
+                continue;
+            }
+
+            // Copy the original row and create new blank rows if the results don't fit on a single line
+            final Row[] entityRows = new Row[maxEntities];
+            entityRows[0] = copyRow(originalRow, minRowSize);
+            for (int i = 1; i < maxEntities; i++) {
+                entityRows[i] = new Row(minRowSize);
+                for (int j = 0; j < minRowSize; j++)
+                    entityRows[i].cells.add(null);
+                addedRowIds.add(rows.size() + i);
+            }
+            // Place all results
+            for (int col = 0; col < serviceNames.length; col++) {
+                // Place each found entity on a row
+                if (!extractionResults.hasError(resultRow, col)) {
+                    final int entityCount = extractionResults.getEntityCount(resultRow, col);
+                    for (int r = 0; r < entityCount; r++) {
+                        final int entityId = extractionResults.getEntityId(resultRow, col, r);
+                        entityRows[r].cells.set(cellIndexes[col], createCell(entityId, col, recons));
                     }
-                    // Place an error only on the first row
-                    else {
-                        final Cell errorCell = new Cell(rowResults[col].getExtractionError(), null);
-                        rows.get(rowNumber).cells.set(cellIndexes[col], errorCell);
+                }
+                // Place an error only on the first row
+                else {
+                    final Cell errorCell = new Cell(extractionResults.getExtractionError(resultRow, col), null);
+                    entityRows[0].cells.set(cellIndexes[col], errorCell);
+                }
+            }
+            rows.addAll(Arrays.asList(entityRows));
+        }
+        // Keep any rows beyond the extraction results
+        rows.addAll(originalRows.subList(resultRowCount, originalRows.size()));
+        return rows;
+    }
+
+    /**
+     * Create a copy of the row with one cell per service that holds all of its named entities
+     *
+     * @param originalRow The original row
+     * @param resultRow   The index of the row in the extraction results
+     * @param cellIndexes The cell indexes of the columns that will contain the named entities
+     * @param minRowSize  The minimum number of cells of the row
+     * @param recons      The reconciliation values created so far per service and entity
+     * @return The row with named entities, or the original row if there were no results
+     */
+    protected Row createAggregatedRow(final Row originalRow, final int resultRow,
+                                      final int[] cellIndexes, final int minRowSize, final Recon[][] recons) {
+        Row row = originalRow;
+        for (int col = 0; col < serviceNames.length; col++) {
+            final Cell cell;
+            // Place the error
+            if (extractionResults.hasError(resultRow, col)) {
+                cell = new Cell(extractionResults.getExtractionError(resultRow, col), null);
+            }
+            // Place a JSON array of the extracted texts, reconciled to the best entity
+            else {
+                final int entityCount = extractionResults.getEntityCount(resultRow, col);
+                if (entityCount == 0)
+                    continue;
+                final ArrayNode texts = ParsingUtilities.mapper.createArrayNode();
+                int bestEntityId = -1;
+                double bestScore = Double.NEGATIVE_INFINITY;
+                for (int r = 0; r < entityCount; r++) {
+                    final int entityId = extractionResults.getEntityId(resultRow, col, r);
+                    texts.add(extractionResults.getExtractedText(entityId));
+                    final List<ReconCandidate> candidates = getRecon(entityId, col, recons).candidates;
+                    if (candidates != null) {
+                        for (final ReconCandidate candidate : candidates) {
+                            if (bestEntityId < 0 || candidate.score > bestScore) {
+                                bestEntityId = entityId;
+                                bestScore = candidate.score;
+                            }
+                        }
                     }
+                    if (bestEntityId < 0)
+                        bestEntityId = entityId;
                 }
+                cell = new Cell(texts.toString(), getRecon(bestEntityId, col, recons));
             }
-            // Advance to the next original row
-            rowNumber += Math.max(1, maxEntities);
+            if (row == originalRow)
+                row = copyRow(originalRow, minRowSize);
+            row.cells.set(cellIndexes[col], cell);
         }
+        return row;
+    }
+
+    /**
+     * Create a cell for the entity, sharing its reconciliation value with identical entities of the service
+     *
+     * @param entityId The identifier of the entity in the extraction results
+     * @param service  The service index
+     * @param recons   The reconciliation values created so far per service and entity
+     * @return The cell
+     */
+    protected Cell createCell(final int entityId, final int service, final Recon[][] recons) {
+        return new Cell(extractionResults.getExtractedText(entityId), getRecon(entityId, service, recons));
+    }
+
+    /**
+     * Get the reconciliation value of the entity, creating it once per service
+     *
+     * @param entityId The identifier of the entity in the extraction results
+     * @param service  The service index
+     * @param recons   The reconciliation values created so far per service and entity
+     * @return The reconciliation value
+     */
+    protected Recon getRecon(final int entityId, final int service, final Recon[][] recons) {
+        Recon recon = recons[service][entityId];
+        if (recon == null)
+            recon = recons[service][entityId] = extractionResults.getNamedEntity(entityId).toRecon();
+        return recon;
+    }
+
+    /**
+     * Copy a row, making sure it has enough cells
+     *
+     * @param row     The row
+     * @param minSize The minimum number of cells of the copy
+     * @return The copy
+     */
+    protected static Row copyRow(final Row row, final int minSize) {
+        final Row copy = new Row(Math.max(minSize, row.cells.size()));
+        copy.flagged = row.flagged;
+        copy.starred = row.starred;
+        copy.cells.addAll(row.cells);
+        while (copy.cells.size() < minSize)
+            copy.cells.add(null);
+        return copy;
     }
 
     /**
@@ -312,6 +779,28 @@ public class NERChange implements Change {
         addedRowIds.clear();
     }
 
+    /**
+     * Rows that were built in advance from a snapshot of the project
+     */
+    protected static class PreparedRows {
+        private final List<Row> originalRows;
+        private final int[] cellIndexes;
+        private final List<Row> newRows;
+
+        /**
+         * Creates new <tt>PreparedRows</tt>
+         *
+         * @param originalRows The snapshot of the rows of the project
+         * @param cellIndexes  The reserved cell indexes of the new columns
+         * @param newRows      The rows with the named entities
+         */
+        public PreparedRows(final List<Row> originalRows, final int[] cellIndexes, final List<Row> newRows) {
+            this.originalRows = originalRows;
+            this.cellIndexes = cellIndexes;
+            this.newRows = newRows;
+        }
+    }
+
     /**
      * Subclass of <tt>ColumnAdditionChange</tt>
      * that provides access to the cell index of the created column
@@ -329,6 +818,20 @@ public class NERChange implements Change {
             super(columnName, columnIndex, newCells);
         }
 
+        /**
+         * Create a new <tt>CustomColumnAdditionChange</tt> with a reserved cell index
+         *
+         * @param columnName  The column name
+         * @param columnIndex The column index
+         * @param newCells    The new cells
+         * @param cellIndex   The reserved cell index
+         */
+        public CustomColumnAdditionChange(final String columnName, final int columnIndex,
+                                          final List<CellAtRow> newCells, final int cellIndex) {
+            super(columnName, columnIndex, newCells);
+            _newCellIndex = cellIndex;
+        }
+
         /**
          * Gets the cell index of the created column
          *
@@ -0,0 +1,53 @@
+package org.freeyourmetadata.ner.operations;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event around applying or reverting a named-entity recognition change
+ *
+ * @author Ruben Verborgh
+ */
+@Name("org.freeyourmetadata.ner.Change")
+@Label("NER Change")
+@Category({"OpenRefine", "Named-Entity Recognition"})
+@Description("Application or reversal of the results of named-entity recognition on a project")
+@StackTrace(false)
+public class NERChangeEvent extends jdk.jfr.Event {
+    @Label("Action")
+    @Description("apply or revert")
+    String action;
+
+    @Label("Services")
+    String services;
+
+    @Label("Output Mode")
+    String outputMode;
+
+    @Label("Result Rows")
+    int resultRowCount;
+
+    @Label("Entity Count")
+    @Description("Number of distinct named entities")
+    int entityCount;
+
+    @Label("Added Rows")
+    int addedRowCount;
+
+    @Label("Project Rows")
+    @Description("Number of rows of the project afterwards")
+    int projectRowCount;
+
+    /**
+     * Creates and begins a change event
+     *
+     * @param action The action on the change
+     */
+    NERChangeEvent(final String action) {
+        this.action = action;
+        begin();
+    }
+}
@@ -4,6 +4,7 @@ import java.util.Properties;
 import java.util.SortedMap;
 import java.util.Map;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.freeyourmetadata.ner.services.NERService;
 import com.google.refine.model.Column;
@@ -21,6 +22,9 @@ public class NEROperation extends EngineDependentOperation {
     private final Column column;
     private final SortedMap<String, NERService> services;
     private final Map<String, Map<String, String>> settings;
+    private final NERChange.OutputMode outputMode;
+    private final boolean resume;
+    private final boolean incremental;
 
     /**
      * Creates a new <tt>NEROperation</tt>
@@ -28,14 +32,47 @@ public class NEROperation extends EngineDependentOperation {
      * @param column       The column on which named-entity recognition is performed
      * @param services     The services that will be used for named-entity recognition
      * @param settings     The settings of the individual services
+     * @param outputMode   The way in which the named entities are written to the project
      * @param engineConfig The faceted browsing engine configuration
      */
+    public NEROperation(Column column, final SortedMap<String, NERService> services,
+                        final Map<String, Map<String, String>> settings,
+                        final NERChange.OutputMode outputMode, EngineConfig engineConfig) {
+        this(column, services, settings, outputMode, engineConfig, false, false);
+    }
+
+    /**
+     * Creates a new <tt>NEROperation</tt> that can resume an interrupted run or reuse the results of unchanged texts
+     *
+     * @param column       The column on which named-entity recognition is performed
+     * @param services     The services that will be used for named-entity recognition
+     * @param settings     The settings of the individual services
+     * @param outputMode   The way in which the named entities are written to the project
+     * @param engineConfig The faceted browsing engine configuration
+     * @param resume       Whether to reuse the journaled results of an interrupted run with the same services
+     * @param incremental  Whether to reuse the results of the previous run on the column for unchanged texts
+     */
+    @JsonCreator
     public NEROperation(@JsonProperty("column") Column column, @JsonProperty("services") final SortedMap<String, NERService> services,
-                        @JsonProperty("settings") final Map<String, Map<String, String>> settings, @JsonProperty("engineConfig") EngineConfig engineConfig) {
+                        @JsonProperty("settings") final Map<String, Map<String, String>> settings,
+                        @JsonProperty("mode") final NERChange.OutputMode outputMode, @JsonProperty("engineConfig") EngineConfig engineConfig,
+                        @JsonProperty("resume") final boolean resume, @JsonProperty("incremental") final boolean incremental) {
         super(engineConfig);
         this.column = column;
         this.services = services;
         this.settings = settings;
+        this.outputMode = outputMode == null ? NERChange.OutputMode.ROWS : outputMode;
+        this.resume = resume;
+        this.incremental = incremental;
+    }
+
+    /**
+     * Gets the name of the column on which named-entity recognition is performed
+     *
+     * @return The column name
+     */
+    public String getColumnName() {
+        return column.getName();
     }
 
     /**
@@ -54,6 +91,7 @@ public class NEROperation extends EngineDependentOperation {
      */
     @Override
     public Process createProcess(final Project project, final Properties options) throws Exception {
-        return new NERProcess(project, column, services, settings, this, getBriefDescription(project), getEngineConfig());
+        return new NERProcess(project, column, services, settings, outputMode, this,
+                getBriefDescription(project), getEngineConfig(), resume, incremental);
     }
 }
@@ -1,18 +1,30 @@
 package org.freeyourmetadata.ner.operations;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.apache.log4j.Logger;
+import org.freeyourmetadata.ner.services.CascadeNER;
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
 import org.freeyourmetadata.ner.services.ExtractionResult;
 import org.freeyourmetadata.ner.services.NERService;
+import org.freeyourmetadata.ner.services.ServiceMetrics;
 
 import com.google.refine.browsing.Engine;
 import com.google.refine.browsing.EngineConfig;
 import com.google.refine.browsing.RowVisitor;
+import com.google.refine.ProjectManager;
 import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
 import com.google.refine.model.AbstractOperation;
 import com.google.refine.model.Cell;
 import com.google.refine.model.Column;
@@ -28,14 +40,27 @@ import com.google.refine.process.LongRunningProcess;
  */
 public class NERProcess extends LongRunningProcess implements Runnable {
     private final static Logger LOGGER = Logger.getLogger(NERProcess.class);
+    private final static int EVENT_BATCH_SIZE = 100;
+    private final static int LOG_INTERVAL_ROWS = 1000;
+    private final static long LOG_INTERVAL_MILLIS = 10000;
+    private final static int CHECKPOINT_ROWS = 100;
 
     private final Project project;
     private final Column column;
     private final Map<String, NERService> services;
     private final Map<String, Map<String, String>> settings;
+    private final NERChange.OutputMode outputMode;
     private final AbstractOperation parentOperation;
     private final EngineConfig engineConfig;
     private final long historyEntryId;
+    private final boolean resume;
+    private final boolean incremental;
+    private final long[] settingsHashes;
+    private ExtractionJournal journal;
+    private long[] textHashes;
+    private Map<String, RunReport.ServiceRecorder> serviceRecorders;
+    private volatile ExtractionProgress progress;
+    private RunReport report;
 
     /**
      * Creates a new <tt>NERProcess</tt>
@@ -44,21 +69,29 @@ public class NERProcess extends LongRunningProcess implements Runnable {
      * @param column          The column on which named-entity recognition is performed
      * @param services        The services that will be used for named-entity recognition
      * @param settings        The settings of the individual services
+     * @param outputMode      The way in which the named entities are written to the project
      * @param parentOperation The operation that creates this process
      * @param description     The description of this operation
      * @param engineConfig    The faceted browsing engine configuration
+     * @param resume          Whether to reuse the journaled results of an interrupted run with the same services
+     * @param incremental     Whether to reuse the results of the previous run on the column for unchanged texts
      */
     protected NERProcess(final Project project, final Column column,
                          final Map<String, NERService> services, final Map<String, Map<String, String>> settings,
+                         final NERChange.OutputMode outputMode,
                          final AbstractOperation parentOperation, final String description,
-                         final EngineConfig engineConfig) {
+                         final EngineConfig engineConfig, final boolean resume, final boolean incremental) {
         super(description);
         this.project = project;
         this.column = column;
         this.services = services;
         this.settings = settings;
+        this.outputMode = outputMode;
         this.parentOperation = parentOperation;
         this.engineConfig = engineConfig;
+        this.resume = resume;
+        this.incremental = incremental;
+        settingsHashes = hashSettings(services, settings);
         historyEntryId = HistoryEntry.allocateID();
     }
 
@@ -69,11 +102,20 @@ public class NERProcess extends LongRunningProcess implements Runnable {
     public void run() {
         final int columnIndex = project.columnModel.getColumnIndexByName(column.getName()) + 1;
         final String[] serviceNames = services.keySet().toArray(new String[services.size()]);
-        final ExtractionResult[][] namedEntities = performExtraction();
+        final Map<String, Map<String, Long>> cascadeCounts = getCascadeCounts();
+        final CompactExtractionResults namedEntities = performExtraction();
+        logCascadeCounts(cascadeCounts);
 
         if (!_canceled) {
-            project.history.addEntry(new HistoryEntry(historyEntryId, project, _description, parentOperation,
-                    new NERChange(columnIndex, serviceNames, namedEntities)));
+            // Build the new rows before the history entry applies the change under the project lock
+            final NERChange change = new NERChange(columnIndex, serviceNames, namedEntities, outputMode, report,
+                    textHashes, settingsHashes);
+            change.prepare(project);
+            project.history.addEntry(new HistoryEntry(historyEntryId, project,
+                    String.format("%s (%s)", _description, report.getSummary()), parentOperation, change));
+            // The results are now part of the project, so the journal is no longer needed
+            if (journal != null)
+                journal.delete();
             project.processManager.onDoneProcess(this);
         }
     }
@@ -83,41 +125,113 @@ public class NERProcess extends LongRunningProcess implements Runnable {
      *
      * @return The extracted named entities per row and service
      */
-    protected ExtractionResult[][] performExtraction() {
+    protected CompactExtractionResults performExtraction() {
         // Count all rows
         final int rowsTotal = project.rows.size();
         // Get the cell index of the column in which to perform entity extraction
         final int cellIndex = column.getCellIndex();
         // Get the filtered rows
-        final Set<Integer> filteredRowIndices = getFilteredRowIndices();
-        final int rowsFiltered = filteredRowIndices.size();
+        final BitSet filteredRowIndices = getFilteredRowIndices();
+        final int rowsFiltered = filteredRowIndices.cardinality();
 
-        // Go through each row and extract entities if the row is part of the filter
-        final ExtractionResult[][] extractionResults = new ExtractionResult[rowsTotal][];
+        // Track the performance of the run
+        final long start = System.currentTimeMillis();
+        serviceRecorders = new LinkedHashMap<>();
+        for (final String serviceName : services.keySet())
+            serviceRecorders.put(serviceName, new RunReport.ServiceRecorder());
+        progress = new ExtractionProgress(rowsFiltered, serviceRecorders);
+
+        // Journal the results, so the run can be resumed if it is interrupted
+        journal = openJournal();
+        // Reuse the results of texts that did not change since the previous run on the column
+        final PreviousExtraction previousExtraction = incremental ? findPreviousExtraction() : null;
+        textHashes = new long[rowsTotal];
+        int rowsReused = 0;
+        int rowsResumed = 0;
+
+        final CompactExtractionResults extractionResults = new CompactExtractionResults(services.size());
         final ExtractionResult[] emptyResult = new ExtractionResult[0];
+        final String serviceNames = String.join(", ", services.keySet());
+        ExtractionBatchEvent batchEvent = null;
         int rowsProcessed = 0;
-        for (int rowIndex = 0; rowIndex < rowsTotal; rowIndex++) {
-            // If the row is part of the filter, extract entities
-            if (filteredRowIndices.contains(rowIndex)) {
-                final Row row = project.rows.get(rowIndex);
-                // Determine the text value of the cell
-                final Cell cell = row.getCell(cellIndex);
-                final Serializable cellValue = cell == null ? null : cell.value;
-                final String text = cellValue == null ? "" : cellValue.toString().trim();
-
-                // Perform extraction if the text is not empty
-                LOGGER.info(String.format("Extracting named entities in column %s on row %d of %d.",
-                        column.getName(), rowsProcessed + 1, rowsFiltered));
-                extractionResults[rowIndex] = text.isEmpty() ? emptyResult : performExtraction(text);
+        long lastLog = System.currentTimeMillis();
 
-                _progress = 100 * ++rowsProcessed / rowsFiltered;
+        // Go only through the rows of the filter; the other rows get empty results
+        for (int rowIndex = filteredRowIndices.nextSetBit(0); rowIndex >= 0;
+             rowIndex = filteredRowIndices.nextSetBit(rowIndex + 1)) {
+            extractionResults.addEmptyRows(rowIndex - extractionResults.getRowCount());
+            final Row row = project.rows.get(rowIndex);
+            // Determine the text value of the cell
+            final Cell cell = row.getCell(cellIndex);
+            final Serializable cellValue = cell == null ? null : cell.value;
+            final String text = cellValue == null ? "" : cellValue.toString().trim();
+
+            // Perform extraction if the text is not empty
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(String.format("Extracting named entities in column %s on row %d of %d.",
+                        column.getName(), rowsProcessed + 1, rowsFiltered));
+            }
+            if (batchEvent == null)
+                batchEvent = new ExtractionBatchEvent(column.getName(), serviceNames, rowIndex);
+            final ExtractionResult[] rowResults;
+            if (text.isEmpty()) {
+                rowResults = emptyResult;
             } else {
-                extractionResults[rowIndex] = emptyResult;
+                final long textHash = textHashes[rowIndex] = ExtractionJournal.hashText(text);
+                final ExtractionResult[] resumedResults = journal == null ? null
+                        : journal.getResumedResults(rowIndex, textHash);
+                final ExtractionResult[] previousResults = resumedResults != null || previousExtraction == null
+                        ? resumedResults : previousExtraction.getResults(textHash);
+                rowResults = performExtraction(text, previousResults);
+                if (resumedResults == null || rowResults != resumedResults)
+                    appendToJournal(rowIndex, textHash, rowResults);
+                if (resumedResults != null && rowResults == resumedResults)
+                    rowsResumed++;
+                else if (previousResults != null && rowResults == previousResults)
+                    rowsReused++;
+            }
+            extractionResults.addRow(rowResults);
+            addToEvent(batchEvent, rowIndex, text, rowResults);
+            if (batchEvent.rowCount == EVENT_BATCH_SIZE) {
+                batchEvent.finish();
+                batchEvent = null;
+            }
+
+            _progress = 100 * ++rowsProcessed / rowsFiltered;
+            progress.rowCompleted();
+            if (rowsProcessed % CHECKPOINT_ROWS == 0)
+                checkpointJournal();
+
+            // Log the progress every so many rows or seconds
+            if (rowsProcessed % LOG_INTERVAL_ROWS == 0 || rowsProcessed == rowsFiltered
+                    || System.currentTimeMillis() - lastLog >= LOG_INTERVAL_MILLIS) {
+                logProgress();
+                lastLog = System.currentTimeMillis();
             }
             // Exit directly if the process has been cancelled
             if (_canceled)
-                return null;
+                break;
         }
+        if (batchEvent != null)
+            batchEvent.finish();
+        checkpointJournal();
+        if (_canceled) {
+            closeJournal();
+            return null;
+        }
+        extractionResults.addEmptyRows(rowsTotal - extractionResults.getRowCount());
+        extractionResults.trim();
+        if (previousExtraction != null) {
+            LOGGER.info(String.format("Reused the previous results of %d unchanged rows in column %s.",
+                    rowsReused, column.getName()));
+        }
+
+        // Summarize the performance of the run
+        final LinkedHashMap<String, RunReport.ServiceReport> serviceReports = new LinkedHashMap<>();
+        for (final Map.Entry<String, RunReport.ServiceRecorder> recorder : serviceRecorders.entrySet())
+            serviceReports.put(recorder.getKey(), recorder.getValue().toReport());
+        report = new RunReport(System.currentTimeMillis() - start, rowsProcessed, countDistinctHashes(textHashes),
+                rowsReused, rowsResumed, serviceReports);
         return extractionResults;
     }
 
@@ -129,19 +243,43 @@ public class NERProcess extends LongRunningProcess implements Runnable {
      * @return The extracted named entities per service
      */
     protected ExtractionResult[] performExtraction(final String text) {
+        return performExtraction(text, null);
+    }
+
+    /**
+     * Performs named-entity extraction on the specified text,
+     * reusing the successful results of an earlier extraction
+     *
+     * @param text            The text
+     * @param previousResults The earlier results per service, with <tt>null</tt> for missing results (can be null)
+     * @return The extracted named entities per service,
+     * or <tt>previousResults</tt> itself if all of them were successful
+     */
+    protected ExtractionResult[] performExtraction(final String text, final ExtractionResult[] previousResults) {
         // The execution of the services happens in parallel.
-        // Create the extractors and corresponding threads
+        // Create the extractors and corresponding threads for services without a successful result
         final Extractor[] extractors = new Extractor[services.size()];
+        boolean extracting = false;
         int i = 0;
         for (final Map.Entry<String, NERService> service : services.entrySet()) {
-            final Extractor extractor = extractors[i++]
-                    = new Extractor(text, service.getValue(), settings.get(service.getKey()));
-            extractor.start();
+            if (previousResults == null || previousResults[i] == null || previousResults[i].hasError()) {
+                final Extractor extractor = extractors[i] = new Extractor(text, service.getValue(),
+                        settings.get(service.getKey()), serviceRecorders == null ? null : serviceRecorders.get(service.getKey()));
+                extractor.start();
+                extracting = true;
+            }
+            i++;
         }
+        if (!extracting)
+            return previousResults;
 
         // Wait for all threads to finish and collect their results
         final ExtractionResult[] extractionResults = new ExtractionResult[extractors.length];
         for (i = 0; i < extractors.length; i++) {
+            if (extractors[i] == null) {
+                extractionResults[i] = previousResults[i];
+                continue;
+            }
             try {
                 extractors[i].join();
             } catch (InterruptedException error) {
@@ -152,12 +290,305 @@ public class NERProcess extends LongRunningProcess implements Runnable {
         return extractionResults;
     }
 
+    /**
+     * Finds the most recent run on the column whose change recorded the hashes of its texts
+     *
+     * @return The results of the run, or <tt>null</tt> if there is no such run
+     */
+    protected PreviousExtraction findPreviousExtraction() {
+        final String[] serviceNames = services.keySet().toArray(new String[services.size()]);
+        final List<HistoryEntry> entries = getPastHistoryEntries();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            final HistoryEntry entry = entries.get(i);
+            if (entry.operation instanceof NEROperation
+                    && column.getName().equals(((NEROperation) entry.operation).getColumnName())) {
+                // Load the change, since past changes are not in memory after the project is reopened
+                final NERChange change = NERChange.fromHistoryEntry(entry, getHistoryEntryManager());
+                if (change != null && change.getTextHashes() != null) {
+                    // Only services whose settings did not change can reuse their results
+                    final PreviousExtraction previousExtraction = new PreviousExtraction(change, serviceNames,
+                            settingsHashes);
+                    if (previousExtraction.hasReusableServices())
+                        return previousExtraction;
+                    LOGGER.info(String.format("The services or their settings changed since the previous " +
+                            "extraction in column %s.", column.getName()));
+                    return null;
+                }
+                if (change == null)
+                    LOGGER.warn(String.format("Could not load the results of \"%s\".", entry.description));
+            }
+        }
+        LOGGER.info(String.format("No previous extraction to reuse in column %s.", column.getName()));
+        return null;
+    }
+
+    /**
+     * Gets the past entries of the project history
+     *
+     * @return The entries, from oldest to most recent
+     */
+    protected List<HistoryEntry> getPastHistoryEntries() {
+        return project.history.getLastPastEntries(-1);
+    }
+
+    /**
+     * Gets the manager that loads the changes of history entries
+     *
+     * @return The history entry manager
+     */
+    protected HistoryEntryManager getHistoryEntryManager() {
+        return ProjectManager.singleton.getHistoryEntryManager();
+    }
+
+    /**
+     * Opens the journal of the run, resuming an earlier journal if requested
+     *
+     * @return The journal, or <tt>null</tt> if it cannot be opened
+     */
+    protected ExtractionJournal openJournal() {
+        final String[] serviceNames = services.keySet().toArray(new String[services.size()]);
+        final File file = ExtractionJournal.getFile(project.id, column.getName());
+        try {
+            final ExtractionJournal journal = new ExtractionJournal(file, project.id, column.getName(),
+                    serviceNames, settingsHashes, resume);
+            if (resume) {
+                LOGGER.info(String.format("Resuming named-entity extraction in column %s with the results of %d rows.",
+                        column.getName(), journal.getResumedRowCount()));
+            }
+            return journal;
+        } catch (IOException error) {
+            LOGGER.warn("Could not open the journal " + file + "; the run cannot be resumed", error);
+            return null;
+        }
+    }
+
+    /**
+     * Appends the results of a row to the journal, disabling the journal if that fails
+     *
+     * @param rowIndex   The index of the row
+     * @param textHash   The hash of the text of the row
+     * @param rowResults The results per service
+     */
+    protected void appendToJournal(final int rowIndex, final long textHash, final ExtractionResult[] rowResults) {
+        if (journal != null) {
+            try {
+                journal.append(rowIndex, textHash, rowResults);
+            } catch (IOException error) {
+                LOGGER.warn("Could not write to the journal; the run cannot be resumed", error);
+                closeJournal();
+            }
+        }
+    }
+
+    /**
+     * Writes the journaled results to disk, disabling the journal if that fails
+     */
+    protected void checkpointJournal() {
+        if (journal != null) {
+            try {
+                journal.checkpoint();
+            } catch (IOException error) {
+                LOGGER.warn("Could not write to the journal; the run cannot be resumed", error);
+                closeJournal();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal, keeping its results on disk
+     */
+    protected void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException error) {
+                LOGGER.warn("Could not close the journal", error);
+            }
+            journal = null;
+        }
+    }
+
+    /**
+     * Gets the live progress of the extraction
+     *
+     * @return The progress, or <tt>null</tt> if the extraction has not started
+     */
+    @JsonProperty("extraction")
+    public ExtractionProgress getExtractionProgress() {
+        return progress;
+    }
+
+    /**
+     * Gets the description of the process, including the throughput and estimated remaining time
+     *
+     * @return The description
+     */
+    @Override
+    @JsonProperty("description")
+    public String getDescription() {
+        final ExtractionProgress progress = this.progress;
+        if (progress == null || progress.getRowsCompleted() == 0)
+            return _description;
+        final long eta = progress.getEtaSeconds();
+        return String.format("%s (%.1f rows/s, %s remaining)", _description, progress.getRowsPerSecond(),
+                eta < 0 ? "unknown time" : eta < 120 ? eta + " s" : eta < 7200 ? eta / 60 + " min" : eta / 3600 + " h");
+    }
+
+    /**
+     * Gets the hashes of the texts of the last completed extraction
+     *
+     * @return The hash of the extracted text per row, 0 if the row was not extracted,
+     * or <tt>null</tt> if no extraction has completed
+     */
+    public long[] getTextHashes() {
+        return textHashes;
+    }
+
+    /**
+     * Gets the hashes of the settings with which the services extract,
+     * so that results are only reused by services whose settings did not change
+     *
+     * @return The hash of the service and extraction settings per service, at the creation of the process
+     */
+    public long[] getSettingsHashes() {
+        return settingsHashes;
+    }
+
+    /**
+     * Calculates the hashes of the settings of services
+     *
+     * @param services The services
+     * @param settings The extraction settings of the services
+     * @return The hash of the settings per service
+     */
+    protected static long[] hashSettings(final Map<String, NERService> services,
+                                         final Map<String, Map<String, String>> settings) {
+        final long[] hashes = new long[services.size()];
+        int i = 0;
+        for (final Map.Entry<String, NERService> service : services.entrySet())
+            hashes[i++] = hashSettings(service.getValue(), settings.get(service.getKey()));
+        return hashes;
+    }
+
+    /**
+     * Calculates a hash of the settings of a service
+     *
+     * @param service            The service
+     * @param extractionSettings The extraction settings of the run (can be null)
+     * @return The hash of the service type, its service settings, and its extraction settings
+     */
+    protected static long hashSettings(final NERService service, final Map<String, String> extractionSettings) {
+        final StringBuilder serviceSettings = new StringBuilder(service.getClass().getName());
+        for (final String name : new TreeSet<>(service.getServiceSettings()))
+            serviceSettings.append('\n').append(name).append('=').append(service.getServiceSetting(name));
+        serviceSettings.append('\n');
+        for (final String name : new TreeSet<>(service.getExtractionSettings())) {
+            final String value = extractionSettings == null ? null : extractionSettings.get(name);
+            serviceSettings.append('\n').append(name).append('=')
+                    .append(value != null ? value : service.getExtractionSettingDefault(name));
+        }
+        return ExtractionJournal.hashText(serviceSettings.toString());
+    }
+
+    /**
+     * Gets the performance report of the last completed extraction
+     *
+     * @return The report, or <tt>null</tt> if no extraction has completed
+     */
+    public RunReport getReport() {
+        return report;
+    }
+
+    /**
+     * Counts the distinct texts of an extraction by their hashes
+     *
+     * @param textHashes The hash of the extracted text per row, 0 if the row was not extracted
+     * @return The number of distinct non-zero hashes
+     */
+    protected static int countDistinctHashes(final long[] textHashes) {
+        final long[] sorted = textHashes.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (sorted[i] != 0 && (i == 0 || sorted[i] != sorted[i - 1]))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Adds the extraction of a row to the flight recorder event of its batch
+     *
+     * @param event      The event of the batch
+     * @param rowIndex   The index of the row
+     * @param text       The text of the row
+     * @param rowResults The extracted named entities per service
+     */
+    protected static void addToEvent(final ExtractionBatchEvent event, final int rowIndex, final String text,
+                                     final ExtractionResult[] rowResults) {
+        event.rowCount++;
+        event.lastRow = rowIndex;
+        if (event.isEnabled()) {
+            event.textLength += text.length();
+            for (final ExtractionResult result : rowResults) {
+                if (result.hasError())
+                    event.errorCount++;
+                else
+                    event.entityCount += result.getNamedEntities().length;
+            }
+        }
+    }
+
+    /**
+     * Logs the number of completed rows, the throughput, and the errors of the extraction
+     */
+    protected void logProgress() {
+        final long eta = progress.getEtaSeconds();
+        LOGGER.info(String.format("Extracted named entities in column %s on %d of %d rows " +
+                        "(%.1f rows/s, %d requests in flight, %d errors, %s remaining).",
+                column.getName(), progress.getRowsCompleted(), progress.getRowsTotal(), progress.getRowsPerSecond(),
+                progress.getInFlightCount(), progress.getErrorCount(), eta < 0 ? "unknown time" : eta + " s"));
+    }
+
+    /**
+     * Gets the number of texts resolved by each stage of the cascade services
+     *
+     * @return The resolved counts by stage, per cascade service
+     */
+    protected Map<String, Map<String, Long>> getCascadeCounts() {
+        final Map<String, Map<String, Long>> counts = new TreeMap<>();
+        for (final Map.Entry<String, NERService> service : services.entrySet()) {
+            if (service.getValue() instanceof CascadeNER)
+                counts.put(service.getKey(), ((CascadeNER) service.getValue()).getResolvedCounts());
+        }
+        return counts;
+    }
+
+    /**
+     * Logs how many texts each stage of the cascade services resolved during this process
+     *
+     * @param initialCounts The counts before the process started
+     */
+    protected void logCascadeCounts(final Map<String, Map<String, Long>> initialCounts) {
+        for (final Map.Entry<String, Map<String, Long>> cascade : getCascadeCounts().entrySet()) {
+            final Map<String, Long> initial = initialCounts.get(cascade.getKey());
+            final StringBuilder report = new StringBuilder();
+            for (final Map.Entry<String, Long> count : new TreeMap<>(cascade.getValue()).entrySet()) {
+                final long resolved = count.getValue() - initial.getOrDefault(count.getKey(), 0L);
+                if (resolved > 0)
+                    report.append(report.length() == 0 ? "" : ", ").append(count.getKey()).append(": ").append(resolved);
+            }
+            LOGGER.info(String.format("Texts in column %s resolved by %s: %s.", column.getName(), cascade.getKey(),
+                    report.length() == 0 ? "none" : report));
+        }
+    }
+
     /**
      * Gets the indices of all rows that are part of the active selection filter
      *
-     * @return The filtered rows
+     * @return The filtered rows as a bitmap of row indices
      */
-    protected Set<Integer> getFilteredRowIndices() {
+    protected BitSet getFilteredRowIndices() {
         // Load the faceted browsing engine and configuration (including row filters)
         final Engine engine = new Engine(project);
         try {
@@ -166,11 +597,11 @@ public class NERProcess extends LongRunningProcess implements Runnable {
         }
 
         // Collect indices of rows that belong to the filter
-        final HashSet<Integer> filteredRowIndices = new HashSet<Integer>(project.rows.size());
+        final BitSet filteredRowIndices = new BitSet(project.rows.size());
         engine.getAllFilteredRows().accept(project, new RowVisitor() {
             @Override
             public boolean visit(final Project project, final int rowIndex, final Row row) {
-                filteredRowIndices.add(rowIndex);
+                filteredRowIndices.set(rowIndex);
                 return false;
             }
 
@@ -200,6 +631,7 @@ public class NERProcess extends LongRunningProcess implements Runnable {
         private final String text;
         private final NERService service;
         private final Map<String, String> settings;
+        private final RunReport.ServiceRecorder recorder;
         private ExtractionResult extractionResult;
 
         /**
@@ -210,9 +642,23 @@ public class NERProcess extends LongRunningProcess implements Runnable {
          * @param settings The extraction settings
          */
         public Extractor(final String text, final NERService service, final Map<String, String> settings) {
+            this(text, service, settings, null);
+        }
+
+        /**
+         * Creates a new <tt>Extractor</tt> that reports its performance
+         *
+         * @param text     The text to analyze
+         * @param service  The service that will analyze the text
+         * @param settings The extraction settings
+         * @param recorder The recorder of the service's performance during the run (can be null)
+         */
+        public Extractor(final String text, final NERService service, final Map<String, String> settings,
+                         final RunReport.ServiceRecorder recorder) {
             this.text = text;
             this.service = service;
             this.settings = settings;
+            this.recorder = recorder;
         }
 
         /**
@@ -229,11 +675,21 @@ public class NERProcess extends LongRunningProcess implements Runnable {
          */
         @Override
         public void run() {
+            if (recorder != null)
+                recorder.start();
+            final long start = System.nanoTime();
+            Exception failure = null;
             try {
                 extractionResult = new ExtractionResult(service.extractNamedEntities(text, settings));
             } catch (Exception error) {
+                service.getMetrics().recordError();
                 extractionResult = new ExtractionResult(error);
+                failure = error;
             }
+            final long duration = System.nanoTime() - start;
+            service.getMetrics().recordLatency(ServiceMetrics.Stage.TOTAL, duration);
+            if (recorder != null)
+                recorder.record(duration, failure);
         }
     }
 }
@@ -0,0 +1,83 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.util.HashMap;
+
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
+import org.freeyourmetadata.ner.services.ExtractionResult;
+
+/**
+ * The results of an earlier named-entity recognition run on a column, indexed by the hash of their texts,
+ * so that a new run only needs to send texts that changed since
+ *
+ * @author Ruben Verborgh
+ */
+public class PreviousExtraction {
+    private final CompactExtractionResults extractionResults;
+    private final int[] serviceIndexes;
+    private final HashMap<Long, Integer> rowsByHash;
+
+    /**
+     * Creates a new <tt>PreviousExtraction</tt>
+     *
+     * @param change         The change of the earlier run, which must have text hashes
+     * @param serviceNames   The names of the services of the new run
+     * @param settingsHashes The hashes of the settings of the services of the new run
+     */
+    public PreviousExtraction(final NERChange change, final String[] serviceNames, final long[] settingsHashes) {
+        extractionResults = change.getExtractionResults();
+
+        // Find the results of each new service among the earlier services with the same settings
+        final String[] previousServiceNames = change.getServiceNames();
+        final long[] previousSettingsHashes = change.getSettingsHashes();
+        serviceIndexes = new int[serviceNames.length];
+        for (int i = 0; i < serviceNames.length; i++) {
+            serviceIndexes[i] = -1;
+            for (int j = 0; j < previousServiceNames.length; j++) {
+                if (previousServiceNames[j].equals(serviceNames[i]) && previousSettingsHashes != null
+                        && j < previousSettingsHashes.length && previousSettingsHashes[j] == settingsHashes[i])
+                    serviceIndexes[i] = j;
+            }
+        }
+
+        // Index the extracted rows by the hash of their text
+        final long[] textHashes = change.getTextHashes();
+        final int rowCount = Math.min(textHashes.length, extractionResults.getRowCount());
+        rowsByHash = new HashMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            if (textHashes[row] != 0)
+                rowsByHash.putIfAbsent(textHashes[row], row);
+        }
+    }
+
+    /**
+     * Indicates whether any service of the new run can reuse earlier results
+     *
+     * @return <tt>true</tt> if at least one service ran earlier with the same settings
+     */
+    public boolean hasReusableServices() {
+        for (final int serviceIndex : serviceIndexes) {
+            if (serviceIndex >= 0)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the earlier results for a text
+     *
+     * @param textHash The hash of the text
+     * @return The results per new service, with <tt>null</tt> for services without an earlier result,
+     * or <tt>null</tt> if the text was not extracted earlier
+     */
+    public ExtractionResult[] getResults(final long textHash) {
+        final Integer row = rowsByHash.get(textHash);
+        if (row == null)
+            return null;
+        final ExtractionResult[] results = new ExtractionResult[serviceIndexes.length];
+        for (int i = 0; i < results.length; i++) {
+            if (serviceIndexes[i] >= 0)
+                results[i] = extractionResults.getExtractionResult(row, serviceIndexes[i]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,381 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.freeyourmetadata.ner.services.LatencyHistogram;
+
+/**
+ * Performance summary of a named-entity recognition run,
+ * stored with its change so that slow runs can be explained afterwards
+ *
+ * @author Ruben Verborgh
+ */
+public class RunReport {
+    private final long wallMillis;
+    private final int rowsProcessed;
+    private final int uniqueTexts;
+    private final int rowsReused;
+    private final int rowsResumed;
+    private final Map<String, ServiceReport> services;
+    private volatile long applyMillis = -1;
+
+    /**
+     * Creates a new run report
+     *
+     * @param wallMillis    The duration of the extraction in milliseconds
+     * @param rowsProcessed The number of rows on which extraction was performed
+     * @param uniqueTexts   The number of distinct non-empty texts
+     * @param services      The reports of the services by name
+     */
+    public RunReport(final long wallMillis, final int rowsProcessed, final int uniqueTexts,
+                     final Map<String, ServiceReport> services) {
+        this(wallMillis, rowsProcessed, uniqueTexts, 0, 0, services);
+    }
+
+    /**
+     * Creates a new run report of a run that reused earlier results
+     *
+     * @param wallMillis    The duration of the extraction in milliseconds
+     * @param rowsProcessed The number of rows on which extraction was performed
+     * @param uniqueTexts   The number of distinct non-empty texts
+     * @param rowsReused    The number of rows that reused the results of the previous run on the column
+     * @param rowsResumed   The number of rows that reused the journaled results of an interrupted run
+     * @param services      The reports of the services by name
+     */
+    public RunReport(final long wallMillis, final int rowsProcessed, final int uniqueTexts,
+                     final int rowsReused, final int rowsResumed, final Map<String, ServiceReport> services) {
+        this.wallMillis = wallMillis;
+        this.rowsProcessed = rowsProcessed;
+        this.uniqueTexts = uniqueTexts;
+        this.rowsReused = rowsReused;
+        this.rowsResumed = rowsResumed;
+        this.services = services;
+    }
+
+    /**
+     * Gets the duration of the extraction
+     *
+     * @return The duration in milliseconds
+     */
+    public long getWallMillis() {
+        return wallMillis;
+    }
+
+    /**
+     * Gets the number of rows on which extraction was performed
+     *
+     * @return The number of rows
+     */
+    public int getRowsProcessed() {
+        return rowsProcessed;
+    }
+
+    /**
+     * Gets the number of distinct non-empty texts
+     *
+     * @return The number of texts
+     */
+    public int getUniqueTexts() {
+        return uniqueTexts;
+    }
+
+    /**
+     * Gets the number of rows that reused the results of the previous run on the column
+     *
+     * @return The number of rows
+     */
+    public int getRowsReused() {
+        return rowsReused;
+    }
+
+    /**
+     * Gets the number of rows that reused the journaled results of an interrupted run
+     *
+     * @return The number of rows
+     */
+    public int getRowsResumed() {
+        return rowsResumed;
+    }
+
+    /**
+     * Gets the share of processed rows whose results were not requested again
+     *
+     * @return The ratio of reused and resumed rows to processed rows, between 0 and 1
+     */
+    public double getReuseRatio() {
+        return rowsProcessed == 0 ? 0 : (double) (rowsReused + rowsResumed) / rowsProcessed;
+    }
+
+    /**
+     * Gets the reports of the services
+     *
+     * @return The reports by service name
+     */
+    public Map<String, ServiceReport> getServices() {
+        return services;
+    }
+
+    /**
+     * Gets the duration of the last application of the results to the project
+     *
+     * @return The duration in milliseconds, or -1 if the results have not been applied
+     */
+    public long getApplyMillis() {
+        return applyMillis;
+    }
+
+    /**
+     * Sets the duration of the last application of the results to the project
+     *
+     * @param applyMillis The duration in milliseconds
+     */
+    public void setApplyMillis(final long applyMillis) {
+        this.applyMillis = applyMillis;
+    }
+
+    /**
+     * Gets a one-line summary of the run
+     *
+     * @return The summary
+     */
+    public String getSummary() {
+        final String summary = String.format("%d rows in %.1f s", rowsProcessed, wallMillis / 1000.0);
+        return rowsReused + rowsResumed == 0 ? summary
+                : String.format("%s, %.0f%% reused", summary, 100 * getReuseRatio());
+    }
+
+    /**
+     * Writes the report as JSON
+     *
+     * @param json The JSON generator
+     * @throws IOException if writing fails
+     */
+    public void writeTo(final JsonGenerator json) throws IOException {
+        json.writeStartObject();
+        json.writeNumberField("wallTime", wallMillis);
+        json.writeNumberField("rows", rowsProcessed);
+        json.writeNumberField("uniqueTexts", uniqueTexts);
+        json.writeNumberField("reusedRows", rowsReused);
+        json.writeNumberField("resumedRows", rowsResumed);
+        json.writeNumberField("applyTime", applyMillis);
+        json.writeObjectFieldStart("services");
+        for (final Map.Entry<String, ServiceReport> service : services.entrySet()) {
+            json.writeFieldName(service.getKey());
+            service.getValue().writeTo(json);
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    /**
+     * Reads a report from JSON
+     *
+     * @param json The JSON object
+     * @return The report
+     */
+    public static RunReport fromJson(final ObjectNode json) {
+        final LinkedHashMap<String, ServiceReport> services = new LinkedHashMap<>();
+        final Iterator<Map.Entry<String, JsonNode>> servicesJson = json.get("services").fields();
+        while (servicesJson.hasNext()) {
+            final Map.Entry<String, JsonNode> service = servicesJson.next();
+            services.put(service.getKey(), ServiceReport.fromJson(service.getValue()));
+        }
+        final RunReport report = new RunReport(json.get("wallTime").asLong(), json.get("rows").asInt(),
+                json.get("uniqueTexts").asInt(), json.path("reusedRows").asInt(0), json.path("resumedRows").asInt(0),
+                services);
+        report.setApplyMillis(json.path("applyTime").asLong(-1));
+        return report;
+    }
+
+    /**
+     * Performance summary of one service during a run
+     */
+    public static class ServiceReport {
+        private final long requests;
+        private final long errors;
+        private final long timeouts;
+        private final long p50Micros;
+        private final long p95Micros;
+        private final long p99Micros;
+
+        /**
+         * Creates a new service report
+         *
+         * @param requests  The number of extractions
+         * @param errors    The number of failed extractions
+         * @param timeouts  The number of extractions that failed because of a timeout
+         * @param p50Micros The median latency in microseconds
+         * @param p95Micros The 95th percentile of the latency in microseconds
+         * @param p99Micros The 99th percentile of the latency in microseconds
+         */
+        public ServiceReport(final long requests, final long errors, final long timeouts,
+                             final long p50Micros, final long p95Micros, final long p99Micros) {
+            this.requests = requests;
+            this.errors = errors;
+            this.timeouts = timeouts;
+            this.p50Micros = p50Micros;
+            this.p95Micros = p95Micros;
+            this.p99Micros = p99Micros;
+        }
+
+        /**
+         * Gets the number of extractions
+         *
+         * @return The number of extractions
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Gets the number of failed extractions, including timeouts
+         *
+         * @return The number of failed extractions
+         */
+        public long getErrors() {
+            return errors;
+        }
+
+        /**
+         * Gets the number of extractions that failed because of a timeout
+         *
+         * @return The number of timeouts
+         */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /**
+         * Gets a percentile of the latency
+         *
+         * @param percentile 50, 95 or 99
+         * @return The latency in microseconds
+         */
+        public long getPercentileMicros(final int percentile) {
+            switch (percentile) {
+                case 50:
+                    return p50Micros;
+                case 95:
+                    return p95Micros;
+                case 99:
+                    return p99Micros;
+                default:
+                    throw new IllegalArgumentException("Unsupported percentile " + percentile);
+            }
+        }
+
+        private void writeTo(final JsonGenerator json) throws IOException {
+            json.writeStartObject();
+            json.writeNumberField("requests", requests);
+            json.writeNumberField("errors", errors);
+            json.writeNumberField("timeouts", timeouts);
+            json.writeObjectFieldStart("latency");
+            json.writeNumberField("p50", p50Micros / 1000.0);
+            json.writeNumberField("p95", p95Micros / 1000.0);
+            json.writeNumberField("p99", p99Micros / 1000.0);
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+
+        private static ServiceReport fromJson(final JsonNode json) {
+            final JsonNode latency = json.get("latency");
+            return new ServiceReport(json.get("requests").asLong(), json.get("errors").asLong(),
+                    json.get("timeouts").asLong(),
+                    Math.round(latency.get("p50").asDouble() * 1000), Math.round(latency.get("p95").asDouble() * 1000),
+                    Math.round(latency.get("p99").asDouble() * 1000));
+        }
+    }
+
+    /**
+     * Collects the performance of one service during a run; safe to use from several threads
+     */
+    public static class ServiceRecorder {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong timeouts = new AtomicLong();
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * Records the start of an extraction
+         */
+        public void start() {
+            inFlight.incrementAndGet();
+        }
+
+        /**
+         * Records a finished extraction
+         *
+         * @param nanos The duration of the extraction in nanoseconds
+         * @param error The error of the extraction, or <tt>null</tt> if it succeeded
+         */
+        public void record(final long nanos, final Throwable error) {
+            inFlight.decrementAndGet();
+            latency.recordNanos(nanos);
+            if (error != null) {
+                errors.incrementAndGet();
+                if (isTimeout(error))
+                    timeouts.incrementAndGet();
+            }
+        }
+
+        /**
+         * Gets the number of finished extractions
+         *
+         * @return The number of extractions
+         */
+        public long getCompletedCount() {
+            return latency.getCount();
+        }
+
+        /**
+         * Gets the number of extractions that have started but not finished
+         *
+         * @return The number of extractions
+         */
+        public int getInFlightCount() {
+            return inFlight.get();
+        }
+
+        /**
+         * Gets the number of failed extractions
+         *
+         * @return The number of errors
+         */
+        public long getErrorCount() {
+            return errors.get();
+        }
+
+        /**
+         * Creates a report of the recorded extractions
+         *
+         * @return The report
+         */
+        public ServiceReport toReport() {
+            return new ServiceReport(latency.getCount(), errors.get(), timeouts.get(),
+                    latency.getPercentileMicros(50), latency.getPercentileMicros(95), latency.getPercentileMicros(99));
+        }
+
+        /**
+         * Determines whether an error was caused by a timeout
+         *
+         * @param error The error
+         * @return <tt>true</tt> if a timeout is among the causes of the error
+         */
+        protected static boolean isTimeout(Throwable error) {
+            for (; error != null; error = error.getCause()) {
+                if (error instanceof InterruptedIOException)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.freeyourmetadata.ner.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Composite service that tries an ordered chain of services, for instance a local gazetteer,
+ * then DBpedia Spotlight, then Dandelion. A text only reaches the next service if the previous ones
+ * found no entity with a disambiguation that scores at least the minimum score,
+ * so cheap services resolve most texts and expensive services are only called for the remainder.
+ * Each service in the chain uses its own default extraction settings.
+ *
+ * @author Ruben Verborgh
+ */
+public class CascadeNER extends NERServiceBase {
+    private final static String SERVICES = "Services";
+    private final static String MINIMUM_SCORE = "Minimum score";
+    private final static String[] SERVICESETTINGS = {SERVICES};
+    private final static String[] EXTRACTIONSETTINGS = {MINIMUM_SCORE};
+    private final static String UNRESOLVED = "(unresolved)";
+
+    private NERServiceManager serviceManager;
+    private final ConcurrentHashMap<String, AtomicLong> resolvedCounts = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new cascade service
+     */
+    public CascadeNER() {
+        super(null, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        setServiceSetting(SERVICES, "Gazetteer, DBpedia Spotlight, Dandelion Entity Extraction");
+        setExtractionSettingDefault(MINIMUM_SCORE, "0.5");
+    }
+
+    /**
+     * Sets the manager through which the services of the chain are found
+     *
+     * @param serviceManager The service manager
+     */
+    public void setServiceManager(final NERServiceManager serviceManager) {
+        this.serviceManager = serviceManager;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConfigured() {
+        return !getStageNames().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
+        final double minScore = parseScore(settings.get(MINIMUM_SCORE));
+        NamedEntity[] unresolvedEntities = EMPTY_EXTRACTION_RESULT;
+        Exception lastError = null;
+        boolean succeeded = false;
+
+        for (final String stageName : getStageNames()) {
+            final NERService stage = getService(stageName);
+            final NamedEntity[] entities;
+            try {
+                entities = stage.extractNamedEntities(text, getExtractionSettingDefaults(stage));
+            }
+            // A failing service does not stop the chain
+            catch (Exception error) {
+                lastError = error;
+                continue;
+            }
+            succeeded = true;
+            if (isResolved(entities, minScore)) {
+                countResolved(stageName);
+                return entities;
+            }
+            // Keep uncertain results in case no later service does better
+            if (entities.length > 0)
+                unresolvedEntities = entities;
+        }
+
+        if (!succeeded && lastError != null)
+            throw lastError;
+        countResolved(UNRESOLVED);
+        return unresolvedEntities;
+    }
+
+    /**
+     * Gets the names of the configured services in the chain, in order
+     *
+     * @return The service names
+     */
+    public List<String> getStageNames() {
+        final ArrayList<String> stageNames = new ArrayList<>();
+        for (final String name : getServiceSetting(SERVICES).split(",")) {
+            final String stageName = name.trim();
+            final NERService stage = stageName.isEmpty() ? null : getService(stageName);
+            // Skip unknown services and cascades, which could call themselves
+            if (stage != null && !(stage instanceof CascadeNER) && stage.isConfigured())
+                stageNames.add(stageName);
+        }
+        return stageNames;
+    }
+
+    /**
+     * Gets the service with the specified name from the service manager
+     *
+     * @param name The name of the service
+     * @return The service, or <tt>null</tt> if it does not exist
+     */
+    protected NERService getService(final String name) {
+        return serviceManager != null && serviceManager.hasService(name) ? serviceManager.getService(name) : null;
+    }
+
+    /**
+     * Gets the number of texts that each service resolved since the cascade was created,
+     * including the number of texts that no service resolved
+     *
+     * @return The counts by service name
+     */
+    public Map<String, Long> getResolvedCounts() {
+        final HashMap<String, Long> counts = new HashMap<>();
+        for (final Map.Entry<String, AtomicLong> count : resolvedCounts.entrySet())
+            counts.put(count.getKey(), count.getValue().get());
+        return counts;
+    }
+
+    /**
+     * Indicates whether any of the entities has a disambiguation with at least the minimum score
+     *
+     * @param entities The entities
+     * @param minScore The minimum score
+     * @return <tt>true</tt> if the entities resolve the text
+     */
+    protected static boolean isResolved(final NamedEntity[] entities, final double minScore) {
+        for (final NamedEntity entity : entities)
+            for (final Disambiguation disambiguation : entity.getDisambiguations())
+                if (disambiguation.getScore() >= minScore)
+                    return true;
+        return false;
+    }
+
+    private void countResolved(final String stageName) {
+        resolvedCounts.computeIfAbsent(stageName, name -> new AtomicLong()).incrementAndGet();
+    }
+
+    private static double parseScore(final String score) {
+        try {
+            return score == null || score.isEmpty() ? 0 : Double.parseDouble(score);
+        } catch (NumberFormatException error) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.freeyourmetadata.util.UriUtil.createUri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+import com.google.refine.expr.EvalError;
+
+/**
+ * Compact storage of the extraction results of many rows and services.
+ *
+ * Instead of keeping one object graph per entity, all results are stored
+ * in parallel primitive arrays: every row has one result per service,
+ * every result is a range of entity mentions, and every mention refers to
+ * a distinct entity, whose texts, URIs and scores are stored only once.
+ *
+ * @author Ruben Verborgh
+ */
+public class CompactExtractionResults {
+    private final static int INITIAL_CAPACITY = 16;
+
+    private final int serviceCount;
+    private int rowCount;
+
+    /* Per result (one per row and service): start of its mentions */
+    private int[] resultStarts;
+    private final HashMap<Integer, EvalError> resultErrors;
+
+    /* Per mention: entity and position in the original text */
+    private int mentionCount;
+    private int[] mentionEntities;
+    private int[] mentionBegins;
+    private int[] mentionEnds;
+
+    /* Per distinct entity: text, matched flag and start of its disambiguations */
+    private int entityCount;
+    private int[] entityTexts;
+    private int[] entityDisambiguationStarts;
+    private final BitSet unmatchedEntities;
+
+    /* Per disambiguation: label, URI, score and type (or -1 if unknown) */
+    private int disambiguationCount;
+    private int[] disambiguationLabels;
+    private int[] disambiguationUris;
+    private double[] disambiguationScores;
+    private int[] disambiguationTypes;
+
+    /* Shared strings, referred to by their position */
+    private final ArrayList<String> strings;
+    private HashMap<String, Integer> stringIds;
+    private HashMap<NamedEntity, Integer> entityIds;
+
+    /**
+     * Creates a new, empty <tt>CompactExtractionResults</tt>
+     *
+     * @param serviceCount The number of services per row
+     */
+    public CompactExtractionResults(final int serviceCount) {
+        this.serviceCount = serviceCount;
+        resultStarts = new int[INITIAL_CAPACITY];
+        resultErrors = new HashMap<>();
+        mentionEntities = new int[INITIAL_CAPACITY];
+        mentionBegins = new int[INITIAL_CAPACITY];
+        mentionEnds = new int[INITIAL_CAPACITY];
+        entityTexts = new int[INITIAL_CAPACITY];
+        entityDisambiguationStarts = new int[INITIAL_CAPACITY];
+        unmatchedEntities = new BitSet();
+        disambiguationLabels = new int[INITIAL_CAPACITY];
+        disambiguationUris = new int[INITIAL_CAPACITY];
+        disambiguationScores = new double[INITIAL_CAPACITY];
+        disambiguationTypes = new int[INITIAL_CAPACITY];
+        strings = new ArrayList<>();
+        stringIds = new HashMap<>();
+        entityIds = new HashMap<>();
+    }
+
+    /**
+     * Creates a new <tt>CompactExtractionResults</tt> from extraction results
+     *
+     * @param serviceCount      The number of services per row
+     * @param extractionResults The results of named-entity extraction per row and service
+     * @return The compact results
+     */
+    public static CompactExtractionResults fromArray(final int serviceCount,
+                                                     final ExtractionResult[][] extractionResults) {
+        final CompactExtractionResults results = new CompactExtractionResults(serviceCount);
+        for (final ExtractionResult[] rowResults : extractionResults)
+            results.addRow(rowResults);
+        results.trim();
+        return results;
+    }
+
+    /**
+     * Appends the results of a row
+     *
+     * @param rowResults The results per service, or an empty array if the row has no results
+     */
+    public void addRow(final ExtractionResult[] rowResults) {
+        final int firstResult = rowCount * serviceCount;
+        resultStarts = ensureCapacity(resultStarts, firstResult + serviceCount + 1);
+        for (int service = 0; service < serviceCount; service++) {
+            resultStarts[firstResult + service] = mentionCount;
+            if (service < rowResults.length) {
+                final ExtractionResult result = rowResults[service];
+                if (result.hasError())
+                    resultErrors.put(firstResult + service, result.getExtractionError());
+                else
+                    for (final NamedEntity entity : result.getNamedEntities())
+                        addMention(entity);
+            }
+        }
+        resultStarts[firstResult + serviceCount] = mentionCount;
+        rowCount++;
+    }
+
+    /**
+     * Appends rows without results
+     *
+     * @param count The number of rows
+     */
+    public void addEmptyRows(final int count) {
+        if (count <= 0)
+            return;
+        final int firstResult = rowCount * serviceCount;
+        final int endResult = firstResult + count * serviceCount + 1;
+        resultStarts = ensureCapacity(resultStarts, endResult);
+        Arrays.fill(resultStarts, firstResult, endResult, mentionCount);
+        rowCount += count;
+    }
+
+    /**
+     * Releases the memory that is only needed while adding rows.
+     * Rows can still be added afterwards, but their entities
+     * will no longer be shared with those of earlier rows.
+     */
+    public void trim() {
+        resultStarts = Arrays.copyOf(resultStarts, rowCount * serviceCount + 1);
+        mentionEntities = Arrays.copyOf(mentionEntities, mentionCount);
+        mentionBegins = Arrays.copyOf(mentionBegins, mentionCount);
+        mentionEnds = Arrays.copyOf(mentionEnds, mentionCount);
+        entityTexts = Arrays.copyOf(entityTexts, entityCount);
+        entityDisambiguationStarts = Arrays.copyOf(entityDisambiguationStarts, entityCount + 1);
+        disambiguationLabels = Arrays.copyOf(disambiguationLabels, disambiguationCount);
+        disambiguationUris = Arrays.copyOf(disambiguationUris, disambiguationCount);
+        disambiguationScores = Arrays.copyOf(disambiguationScores, disambiguationCount);
+        disambiguationTypes = Arrays.copyOf(disambiguationTypes, disambiguationCount);
+        strings.trimToSize();
+        stringIds = new HashMap<>();
+        entityIds = new HashMap<>();
+    }
+
+    /**
+     * Gets the number of rows
+     *
+     * @return The row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Gets the number of services per row
+     *
+     * @return The service count
+     */
+    public int getServiceCount() {
+        return serviceCount;
+    }
+
+    /**
+     * Gets the number of distinct entities over all rows and services
+     *
+     * @return The distinct entity count
+     */
+    public int getDistinctEntityCount() {
+        return entityCount;
+    }
+
+    /**
+     * Indicates whether an error occurred during extraction by the service on the row.
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @return <tt>true</tt> if an error occurred
+     */
+    public boolean hasError(final int row, final int service) {
+        return !resultErrors.isEmpty() && resultErrors.containsKey(getResultIndex(row, service));
+    }
+
+    /**
+     * Gets the error that occurred during extraction by the service on the row
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @return The error, or <tt>null</tt> if none occurred
+     */
+    public EvalError getExtractionError(final int row, final int service) {
+        return resultErrors.get(getResultIndex(row, service));
+    }
+
+    /**
+     * Gets the number of entities extracted by the service on the row
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @return The entity count
+     */
+    public int getEntityCount(final int row, final int service) {
+        final int result = getResultIndex(row, service);
+        return resultStarts[result + 1] - resultStarts[result];
+    }
+
+    /**
+     * Gets the identifier of an entity extracted by the service on the row.
+     * Identical entities have the same identifier.
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @param index   The index of the entity within the result
+     * @return The entity identifier
+     */
+    public int getEntityId(final int row, final int service, final int index) {
+        return mentionEntities[getMentionIndex(row, service, index)];
+    }
+
+    /**
+     * Gets an entity extracted by the service on the row
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @param index   The index of the entity within the result
+     * @return The named entity
+     */
+    public NamedEntity getNamedEntity(final int row, final int service, final int index) {
+        final int mention = getMentionIndex(row, service, index);
+        return createNamedEntity(mentionEntities[mention], mentionBegins[mention], mentionEnds[mention]);
+    }
+
+    /**
+     * Gets the entity with the specified identifier, without position
+     *
+     * @param entityId The entity identifier
+     * @return The named entity
+     */
+    public NamedEntity getNamedEntity(final int entityId) {
+        return createNamedEntity(entityId, -1, -1);
+    }
+
+    /**
+     * Gets the text of the entity with the specified identifier
+     *
+     * @param entityId The entity identifier
+     * @return The extracted text
+     */
+    public String getExtractedText(final int entityId) {
+        return strings.get(entityTexts[entityId]);
+    }
+
+    /**
+     * Gets the result of the service on the row as a regular extraction result
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @return The extraction result
+     */
+    public ExtractionResult getExtractionResult(final int row, final int service) {
+        final EvalError error = getExtractionError(row, service);
+        if (error != null)
+            return new ExtractionResult(new Exception(error.message));
+        final NamedEntity[] entities = new NamedEntity[getEntityCount(row, service)];
+        for (int i = 0; i < entities.length; i++)
+            entities[i] = getNamedEntity(row, service, i);
+        return new ExtractionResult(entities);
+    }
+
+    /**
+     * Adds a mention of the entity to the current result
+     *
+     * @param entity The entity
+     */
+    protected void addMention(final NamedEntity entity) {
+        mentionEntities = ensureCapacity(mentionEntities, mentionCount + 1);
+        mentionBegins = ensureCapacity(mentionBegins, mentionCount + 1);
+        mentionEnds = ensureCapacity(mentionEnds, mentionCount + 1);
+        mentionEntities[mentionCount] = getOrAddEntity(entity);
+        mentionBegins[mentionCount] = entity.getBeginOffset();
+        mentionEnds[mentionCount] = entity.getEndOffset();
+        mentionCount++;
+    }
+
+    /**
+     * Gets the identifier of the entity, adding it if it did not exist yet
+     *
+     * @param entity The entity
+     * @return The entity identifier
+     */
+    protected int getOrAddEntity(final NamedEntity entity) {
+        final Integer existingId = entityIds.get(entity);
+        if (existingId != null)
+            return existingId;
+
+        final Disambiguation[] disambiguations = entity.getDisambiguations();
+        final int entityId = entityCount++;
+        entityTexts = ensureCapacity(entityTexts, entityCount);
+        entityDisambiguationStarts = ensureCapacity(entityDisambiguationStarts, entityCount + 1);
+        entityTexts[entityId] = getOrAddString(entity.getExtractedText());
+        entityDisambiguationStarts[entityId] = disambiguationCount;
+        if (!entity.isMatched())
+            unmatchedEntities.set(entityId);
+
+        final int newCount = disambiguationCount + disambiguations.length;
+        disambiguationLabels = ensureCapacity(disambiguationLabels, newCount);
+        disambiguationUris = ensureCapacity(disambiguationUris, newCount);
+        disambiguationTypes = ensureCapacity(disambiguationTypes, newCount);
+        if (disambiguationScores.length < newCount)
+            disambiguationScores = Arrays.copyOf(disambiguationScores, Math.max(newCount, 2 * disambiguationScores.length));
+        for (final Disambiguation disambiguation : disambiguations) {
+            disambiguationLabels[disambiguationCount] = getOrAddString(disambiguation.getLabel());
+            disambiguationUris[disambiguationCount] = getOrAddString(disambiguation.getUri().toString());
+            disambiguationScores[disambiguationCount] = disambiguation.getScore();
+            disambiguationTypes[disambiguationCount] = disambiguation.getType() == null ? -1
+                    : getOrAddString(disambiguation.getType());
+            disambiguationCount++;
+        }
+        entityDisambiguationStarts[entityCount] = disambiguationCount;
+
+        entityIds.put(entity, entityId);
+        return entityId;
+    }
+
+    /**
+     * Gets the identifier of the string, adding it if it did not exist yet
+     *
+     * @param string The string
+     * @return The string identifier
+     */
+    protected int getOrAddString(final String string) {
+        final Integer existingId = stringIds.get(string);
+        if (existingId != null)
+            return existingId;
+        final int stringId = strings.size();
+        strings.add(string);
+        stringIds.put(string, stringId);
+        return stringId;
+    }
+
+    /**
+     * Creates a named entity from its stored representation
+     *
+     * @param entityId    The entity identifier
+     * @param beginOffset The begin offset of the mention
+     * @param endOffset   The end offset of the mention
+     * @return The named entity
+     */
+    protected NamedEntity createNamedEntity(final int entityId, final int beginOffset, final int endOffset) {
+        final int first = entityDisambiguationStarts[entityId];
+        final Disambiguation[] disambiguations = new Disambiguation[entityDisambiguationStarts[entityId + 1] - first];
+        for (int i = 0; i < disambiguations.length; i++) {
+            final int type = disambiguationTypes[first + i];
+            disambiguations[i] = new Disambiguation(strings.get(disambiguationLabels[first + i]),
+                    createUri(strings.get(disambiguationUris[first + i])), disambiguationScores[first + i],
+                    type < 0 ? null : strings.get(type));
+        }
+        return new NamedEntity(getExtractedText(entityId), disambiguations,
+                !unmatchedEntities.get(entityId), beginOffset, endOffset);
+    }
+
+    /**
+     * Gets the position of the result of the service on the row
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @return The result index
+     */
+    private int getResultIndex(final int row, final int service) {
+        if (row < 0 || row >= rowCount || service < 0 || service >= serviceCount)
+            throw new IndexOutOfBoundsException(String.format("No result for service %d on row %d.", service, row));
+        return row * serviceCount + service;
+    }
+
+    /**
+     * Gets the position of a mention in the result of the service on the row
+     *
+     * @param row     The row index
+     * @param service The service index
+     * @param index   The index of the entity within the result
+     * @return The mention index
+     */
+    private int getMentionIndex(final int row, final int service, final int index) {
+        final int result = getResultIndex(row, service);
+        final int mention = resultStarts[result] + index;
+        if (index < 0 || mention >= resultStarts[result + 1])
+            throw new IndexOutOfBoundsException(String.format("No entity %d for service %d on row %d.",
+                    index, service, row));
+        return mention;
+    }
+
+    /**
+     * Grows the array if it cannot hold the specified number of elements
+     *
+     * @param array    The array
+     * @param capacity The needed capacity
+     * @return The array, or a larger copy of it
+     */
+    private static int[] ensureCapacity(final int[] array, final int capacity) {
+        return array.length >= capacity ? array : Arrays.copyOf(array, Math.max(capacity, 2 * array.length));
+    }
+}
@@ -25,7 +25,16 @@ public class DBpediaSpotlight extends NERServiceBase implements NERService {
      * Creates a new DBpedia spotlight service connector
      */
     public DBpediaSpotlight() {
-        super(SERVICEBASEURL, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        this(SERVICEBASEURL);
+    }
+
+    /**
+     * Creates a new DBpedia spotlight service connector for a specific endpoint
+     *
+     * @param serviceUrl The URL of the annotation endpoint
+     */
+    public DBpediaSpotlight(final URI serviceUrl) {
+        super(serviceUrl, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
         setExtractionSettingDefault("Confidence", "0.5");
         setExtractionSettingDefault("Support", "30");
     }
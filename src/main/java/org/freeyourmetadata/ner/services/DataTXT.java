@@ -29,7 +29,16 @@ public class DataTXT extends NERServiceBase {
      * Creates a new dataTXT service connector
      */
     public DataTXT() {
-        super(SERVICEBASEURL, DOCUMENTATIONURI, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        this(SERVICEBASEURL);
+    }
+
+    /**
+     * Creates a new dataTXT service connector for a specific endpoint
+     *
+     * @param serviceUrl The URL of the extraction endpoint
+     */
+    public DataTXT(final URI serviceUrl) {
+        super(serviceUrl, DOCUMENTATIONURI, SERVICESETTINGS, EXTRACTIONSETTINGS);
         setExtractionSettingDefault("Language", "auto");
         setExtractionSettingDefault("Confidence", "0.6");
         setExtractionSettingDefault("Min length", "2");
@@ -20,6 +20,7 @@ public class Disambiguation {
     private final String label;
     private final URI uri;
     private final double score;
+    private final String type;
 
     /**
      * Creates a new disambiguation with an empty URI
@@ -48,9 +49,22 @@ public class Disambiguation {
      * @param score The disambiguation's score
      */
     public Disambiguation(final String label, final URI uri, final double score) {
+        this(label, uri, score, null);
+    }
+
+    /**
+     * Creates a new disambiguation with a type
+     *
+     * @param label The label of the entity
+     * @param uri   The URI of the entity
+     * @param score The disambiguation's score
+     * @param type  The type of the entity (can be null if unknown)
+     */
+    public Disambiguation(final String label, final URI uri, final double score, final String type) {
         this.label = label;
         this.uri = uri;
         this.score = score;
+        this.type = type;
     }
 
     /**
@@ -63,6 +77,7 @@ public class Disambiguation {
         this.label = json.get("label").asText();
         this.uri = createUri(json.get("uri").asText());
         this.score = json.get("score").asDouble();
+        this.type = json.has("type") ? json.get("type").asText() : null;
     }
 
     /**
@@ -92,6 +107,15 @@ public class Disambiguation {
         return score;
     }
 
+    /**
+     * Gets the disambiguation's type
+     *
+     * @return The type, or <tt>null</tt> if unknown
+     */
+    public String getType() {
+        return type;
+    }
+
     /**
      * Writes the disambiguation in a JSON representation
      *
@@ -103,6 +127,8 @@ public class Disambiguation {
         json.writeStringField("label", getLabel());
         json.writeStringField("uri", getUri().toString());
         json.writeNumberField("score", getScore());
+        if (getType() != null)
+            json.writeStringField("type", getType());
         json.writeEndObject();
     }
 
@@ -113,12 +139,13 @@ public class Disambiguation {
         Disambiguation that = (Disambiguation) o;
         return Double.compare(that.score, score) == 0 &&
                 Objects.equals(label, that.label) &&
-                Objects.equals(uri, that.uri);
+                Objects.equals(uri, that.uri) &&
+                Objects.equals(type, that.type);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(label, uri, score);
+        return Objects.hash(label, uri, score, type);
     }
 
     @Override
@@ -127,6 +154,7 @@ public class Disambiguation {
                 "label='" + label + '\'' +
                 ", uri=" + uri +
                 ", score=" + score +
+                (type != null ? ", type='" + type + '\'' : "") +
                 '}';
     }
 }
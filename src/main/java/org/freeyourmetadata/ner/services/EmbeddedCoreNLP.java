@@ -0,0 +1,233 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.freeyourmetadata.util.UriUtil.EMPTYURI;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stanford CoreNLP pipelines that run inside the Refine JVM.
+ * CoreNLP is not a dependency of the extension; it is accessed through reflection
+ * when its jar (and models) are on the classpath.
+ * Constructing a pipeline loads large models, so each configuration is built once and shared,
+ * since pipelines can annotate documents concurrently.
+ *
+ * @author Ruben Verborgh
+ */
+public class EmbeddedCoreNLP {
+    private final static String PIPELINE_CLASS = "edu.stanford.nlp.pipeline.StanfordCoreNLP";
+    private final static String DOCUMENT_CLASS = "edu.stanford.nlp.pipeline.CoreDocument";
+    private final static String MENTION_CLASS = "edu.stanford.nlp.pipeline.CoreEntityMention";
+    private final static String LANGUAGE_INFO_CLASS = "edu.stanford.nlp.pipeline.LanguageInfo";
+    private final static String PAIR_CLASS = "edu.stanford.nlp.util.Pair";
+    private final static String DEFAULT_LANGUAGE = "default";
+
+    private final ClassLoader classLoader;
+    private final Constructor<?> pipelineConstructor;
+    private final Constructor<?> documentConstructor;
+    private final Method annotate;
+    private final Method entityMentions;
+    private final Method mentionText;
+    private final Method mentionType;
+    private final Method mentionOffsets;
+    private final Method pairFirst;
+    private final Method pairSecond;
+    private final ConcurrentHashMap<String, Object> pipelines = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new set of embedded pipelines from the CoreNLP classes
+     *
+     * @param classLoader The class loader of CoreNLP
+     * @throws ReflectiveOperationException if the CoreNLP classes are missing or incompatible
+     */
+    protected EmbeddedCoreNLP(final ClassLoader classLoader) throws ReflectiveOperationException {
+        this.classLoader = classLoader;
+        final Class<?> pipelineClass = Class.forName(PIPELINE_CLASS, true, classLoader);
+        final Class<?> documentClass = Class.forName(DOCUMENT_CLASS, true, classLoader);
+        final Class<?> mentionClass = Class.forName(MENTION_CLASS, true, classLoader);
+        final Class<?> pairClass = Class.forName(PAIR_CLASS, true, classLoader);
+        pipelineConstructor = pipelineClass.getConstructor(Properties.class);
+        documentConstructor = documentClass.getConstructor(String.class);
+        annotate = pipelineClass.getMethod("annotate", documentClass);
+        entityMentions = documentClass.getMethod("entityMentions");
+        mentionText = mentionClass.getMethod("text");
+        mentionType = mentionClass.getMethod("entityType");
+        mentionOffsets = mentionClass.getMethod("charOffsets");
+        pairFirst = pairClass.getMethod("first");
+        pairSecond = pairClass.getMethod("second");
+    }
+
+    /**
+     * Creates a new set of embedded pipelines without the CoreNLP classes,
+     * for subclasses that create pipelines themselves
+     */
+    protected EmbeddedCoreNLP() {
+        classLoader = null;
+        pipelineConstructor = null;
+        documentConstructor = null;
+        annotate = null;
+        entityMentions = null;
+        mentionText = null;
+        mentionType = null;
+        mentionOffsets = null;
+        pairFirst = null;
+        pairSecond = null;
+    }
+
+    /**
+     * Gets the embedded pipelines if CoreNLP is on the classpath
+     *
+     * @return The embedded pipelines, or <tt>null</tt> if CoreNLP is unavailable
+     */
+    public static EmbeddedCoreNLP getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Extracts named entities from the text with the pipeline for the given settings
+     *
+     * @param text                    The text
+     * @param pipelineLanguage        The language of the pipeline, or <tt>default</tt>
+     * @param applyFineGrained        Whether fine-grained entity types should be assigned
+     * @param applyNumericClassifiers Whether numeric entities should be recognized
+     * @return The named entities, with their types and offsets
+     * @throws Exception if the pipeline cannot be created or the text cannot be annotated
+     */
+    public NamedEntity[] extractNamedEntities(final String text, final String pipelineLanguage,
+                                              final boolean applyFineGrained, final boolean applyNumericClassifiers)
+            throws Exception {
+        final Object pipeline = getPipeline(pipelineLanguage, applyFineGrained, applyNumericClassifiers);
+        try {
+            final Object document = documentConstructor.newInstance(text);
+            annotate.invoke(pipeline, document);
+            final List<?> mentions = (List<?>) entityMentions.invoke(document);
+            if (mentions == null)
+                return NERServiceBase.EMPTY_EXTRACTION_RESULT;
+
+            final NamedEntity[] entities = new NamedEntity[mentions.size()];
+            for (int i = 0; i < entities.length; i++) {
+                final Object mention = mentions.get(i);
+                final String mentionText = (String) this.mentionText.invoke(mention);
+                final Object offsets = mentionOffsets.invoke(mention);
+                final Disambiguation disambiguation = new Disambiguation(mentionText, EMPTYURI, 1.0,
+                        (String) mentionType.invoke(mention));
+                entities[i] = new NamedEntity(mentionText, new Disambiguation[]{disambiguation}, true,
+                        (Integer) pairFirst.invoke(offsets), (Integer) pairSecond.invoke(offsets));
+            }
+            return entities;
+        } catch (InvocationTargetException error) {
+            throw unwrap(error);
+        }
+    }
+
+    /**
+     * Gets the pipeline for the given settings, creating it only the first time it is needed
+     *
+     * @param pipelineLanguage        The language of the pipeline, or <tt>default</tt>
+     * @param applyFineGrained        Whether fine-grained entity types should be assigned
+     * @param applyNumericClassifiers Whether numeric entities should be recognized
+     * @return The pipeline
+     * @throws Exception if the pipeline cannot be created
+     */
+    protected Object getPipeline(final String pipelineLanguage, final boolean applyFineGrained,
+                                 final boolean applyNumericClassifiers) throws Exception {
+        final String language = pipelineLanguage == null || pipelineLanguage.isEmpty()
+                ? DEFAULT_LANGUAGE : pipelineLanguage.toLowerCase();
+        final String key = language + '|' + applyFineGrained + '|' + applyNumericClassifiers;
+        Object pipeline = pipelines.get(key);
+        if (pipeline == null) {
+            // Block concurrent requests for the same pipeline instead of loading the models twice
+            synchronized (pipelines) {
+                pipeline = pipelines.get(key);
+                if (pipeline == null) {
+                    pipeline = createPipeline(language, applyFineGrained, applyNumericClassifiers);
+                    pipelines.put(key, pipeline);
+                }
+            }
+        }
+        return pipeline;
+    }
+
+    /**
+     * Creates a new pipeline for the given settings
+     *
+     * @param language                The lowercase language of the pipeline, or <tt>default</tt>
+     * @param applyFineGrained        Whether fine-grained entity types should be assigned
+     * @param applyNumericClassifiers Whether numeric entities should be recognized
+     * @return The pipeline
+     * @throws Exception if the pipeline cannot be created
+     */
+    protected Object createPipeline(final String language, final boolean applyFineGrained,
+                                    final boolean applyNumericClassifiers) throws Exception {
+        try {
+            return pipelineConstructor.newInstance(createProperties(language, applyFineGrained, applyNumericClassifiers));
+        } catch (InvocationTargetException error) {
+            throw unwrap(error);
+        }
+    }
+
+    /**
+     * Gets the number of pipelines that have been created
+     *
+     * @return The number of pipelines
+     */
+    public int getPipelineCount() {
+        return pipelines.size();
+    }
+
+    /**
+     * Creates the properties of a named-entity recognition pipeline,
+     * starting from the language's default properties like the CoreNLP server does
+     */
+    private Properties createProperties(final String language, final boolean applyFineGrained,
+                                        final boolean applyNumericClassifiers)
+            throws ReflectiveOperationException, IOException {
+        final Properties properties = new Properties();
+        if (!DEFAULT_LANGUAGE.equals(language)) {
+            final Method getPropertiesFile = Class.forName(LANGUAGE_INFO_CLASS, true, classLoader)
+                    .getMethod("getLanguagePropertiesFile", String.class);
+            final String propertiesFile = (String) getPropertiesFile.invoke(null, language);
+            if (propertiesFile == null)
+                throw new IllegalArgumentException("CoreNLP does not support the language " + language + ".");
+            try (InputStream input = classLoader.getResourceAsStream(propertiesFile)) {
+                if (input == null)
+                    throw new IOException("The CoreNLP models for " + language + " are not on the classpath.");
+                properties.load(input);
+            }
+        }
+        properties.setProperty("annotators", "tokenize,ssplit,pos,lemma,ner");
+        properties.setProperty("ner.applyFineGrained", Boolean.toString(applyFineGrained));
+        properties.setProperty("ner.applyNumericClassifiers", Boolean.toString(applyNumericClassifiers));
+        return properties;
+    }
+
+    /**
+     * Lazily looks up CoreNLP once, the first time it is needed
+     */
+    private static class Holder {
+        private final static EmbeddedCoreNLP INSTANCE = load();
+
+        private static EmbeddedCoreNLP load() {
+            try {
+                return new EmbeddedCoreNLP(EmbeddedCoreNLP.class.getClassLoader());
+            } catch (ReflectiveOperationException | LinkageError error) {
+                return null;
+            }
+        }
+    }
+
+    private static Exception unwrap(final InvocationTargetException error) {
+        final Throwable cause = error.getCause();
+        if (cause instanceof Exception)
+            return (Exception) cause;
+        if (cause instanceof Error)
+            throw (Error) cause;
+        return error;
+    }
+}
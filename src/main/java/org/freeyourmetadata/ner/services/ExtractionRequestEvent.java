@@ -0,0 +1,87 @@
+package org.freeyourmetadata.ner.services;
+
+import java.net.URI;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event around a request to a named-entity recognition service,
+ * so that slow requests can be correlated with garbage collection and I/O in the same recording
+ *
+ * @author Ruben Verborgh
+ */
+@Name("org.freeyourmetadata.ner.ExtractionRequest")
+@Label("Extraction Request")
+@Category({"OpenRefine", "Named-Entity Recognition"})
+@Description("A request to a named-entity recognition service")
+@StackTrace(false)
+public class ExtractionRequestEvent extends jdk.jfr.Event {
+    @Label("Service")
+    String service;
+
+    @Label("Endpoint")
+    String endpoint;
+
+    @Label("Text Length")
+    int textLength;
+
+    @Label("Entity Count")
+    int entityCount;
+
+    @Label("Status")
+    @Description("ok, or the message of the error")
+    String status;
+
+    /**
+     * Creates and begins an extraction request event
+     *
+     * @param service    The service that performs the request
+     * @param textLength The length of the text
+     */
+    ExtractionRequestEvent(final NERService service, final int textLength) {
+        this.service = service.getClass().getSimpleName();
+        this.textLength = textLength;
+        begin();
+    }
+
+    /**
+     * Sets the endpoint of the request, leaving out the query string which may contain keys
+     *
+     * @param uri The request URI
+     */
+    void setEndpoint(final URI uri) {
+        if (uri != null && isEnabled())
+            endpoint = uri.getScheme() + "://" + uri.getRawAuthority() + uri.getRawPath();
+    }
+
+    /**
+     * Ends and commits the event for a successful request
+     *
+     * @param entities The extracted named entities
+     */
+    void succeeded(final NamedEntity[] entities) {
+        end();
+        if (shouldCommit()) {
+            entityCount = entities.length;
+            status = "ok";
+            commit();
+        }
+    }
+
+    /**
+     * Ends and commits the event for a failed request
+     *
+     * @param error The reason of failure
+     */
+    void failed(final Throwable error) {
+        end();
+        if (shouldCommit()) {
+            status = error.getMessage() == null ? error.getClass().getSimpleName() : error.getMessage();
+            commit();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package org.freeyourmetadata.ner.services;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Local gazetteer service, which finds the surface forms
+ * of a list of known entities in texts without any remote call.
+ * The gazetteer is a file in the extension's cache folder, either tab-separated
+ * with one surface form, URI, and optional label and score per line,
+ * or compiled from a reconciled column by the <tt>GazetteerCommand</tt>.
+ *
+ * @author Ruben Verborgh
+ */
+public class Gazetteer extends NERServiceBase {
+    private final static String GAZETTEER_FILE = "Gazetteer file";
+    private final static String CASE_SENSITIVE = "Case sensitive";
+    private final static String MINIMUM_SCORE = "Minimum score";
+    private final static String[] SERVICESETTINGS = {GAZETTEER_FILE, CASE_SENSITIVE};
+    private final static String[] EXTRACTIONSETTINGS = {MINIMUM_SCORE};
+
+    private GazetteerAutomaton automaton;
+    private File automatonFile;
+    private long automatonLastModified;
+    private boolean automatonCaseSensitive;
+
+    /**
+     * Creates a new gazetteer service
+     */
+    public Gazetteer() {
+        super(null, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        setServiceSetting(GAZETTEER_FILE, "gazetteer.tsv");
+        setServiceSetting(CASE_SENSITIVE, "false");
+        setExtractionSettingDefault(MINIMUM_SCORE, "0");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConfigured() {
+        return getGazetteerFile().isFile();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
+        return performLocalExtraction(text, () -> findNamedEntities(text, settings));
+    }
+
+    /**
+     * Finds the surface forms of the gazetteer in the text
+     *
+     * @param text     The text
+     * @param settings The extraction settings
+     * @return The named entities of the surface forms with candidates above the minimum score
+     * @throws IOException if the gazetteer file cannot be read
+     */
+    protected NamedEntity[] findNamedEntities(final String text, final Map<String, String> settings)
+            throws IOException {
+        final GazetteerAutomaton automaton = getAutomaton();
+        final double minScore = parseScore(settings.get(MINIMUM_SCORE), 0);
+        final int[] matches = automaton.findMatches(text);
+
+        final NamedEntity[] entities = new NamedEntity[matches.length / 3];
+        int entityCount = 0;
+        for (int m = 0; m < matches.length; m += 3) {
+            final int begin = matches[m], end = matches[m + 1];
+            final Disambiguation[] disambiguations = automaton.getDisambiguations(matches[m + 2], minScore);
+            if (disambiguations.length > 0) {
+                // The match is only certain if one candidate scores best
+                final boolean matched = disambiguations.length == 1
+                        || disambiguations[0].getScore() > disambiguations[1].getScore();
+                entities[entityCount++] = new NamedEntity(text.substring(begin, end), disambiguations,
+                        matched, begin, end);
+            }
+        }
+        return entityCount == entities.length ? entities : Arrays.copyOf(entities, entityCount);
+    }
+
+    /**
+     * Gets the automaton of the configured gazetteer file,
+     * (re)building it if the file or settings changed.
+     * Compiled gazetteers are memory-mapped and keep the case sensitivity they were compiled with.
+     *
+     * @return The automaton
+     * @throws IOException if the gazetteer file cannot be read
+     */
+    protected synchronized GazetteerAutomaton getAutomaton() throws IOException {
+        final File file = getGazetteerFile();
+        final boolean caseSensitive = Boolean.parseBoolean(getServiceSetting(CASE_SENSITIVE));
+        if (automaton == null || !file.equals(automatonFile) || file.lastModified() != automatonLastModified
+                || caseSensitive != automatonCaseSensitive) {
+            if (!file.isFile())
+                throw new IOException("The gazetteer file " + file.getName() + " does not exist.");
+            // Release the previous automaton, so its file is no longer mapped once it is collected
+            automaton = null;
+            if (GazetteerAutomaton.isCompiled(file)) {
+                automaton = GazetteerAutomaton.map(file);
+            } else {
+                try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                    automaton = readGazetteer(reader, caseSensitive);
+                }
+            }
+            automatonFile = file;
+            automatonLastModified = file.lastModified();
+            automatonCaseSensitive = caseSensitive;
+        }
+        return automaton;
+    }
+
+    /**
+     * Gets the gazetteer file, which always resides in the cache folder
+     *
+     * @return The gazetteer file
+     */
+    protected File getGazetteerFile() {
+        return new File(NERServiceManager.getCacheFolder(), new File(getServiceSetting(GAZETTEER_FILE)).getName());
+    }
+
+    /**
+     * Builds an automaton from a tab-separated gazetteer.
+     * Empty lines, lines starting with <tt>#</tt>, and lines without URI are skipped.
+     *
+     * @param gazetteer     The reader of the gazetteer
+     * @param caseSensitive Whether surface forms should be matched case-sensitively
+     * @return The automaton
+     * @throws IOException if the gazetteer cannot be read
+     */
+    protected static GazetteerAutomaton readGazetteer(final Reader gazetteer, final boolean caseSensitive)
+            throws IOException {
+        final GazetteerAutomaton.Builder builder = new GazetteerAutomaton.Builder(caseSensitive);
+        final BufferedReader lines = new BufferedReader(gazetteer);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+            final String[] columns = line.split("\t");
+            if (columns.length < 2 || columns[0].isEmpty() || columns[1].isEmpty())
+                continue;
+            final String label = columns.length > 2 && !columns[2].isEmpty() ? columns[2] : columns[0];
+            final double score = columns.length > 3 ? parseScore(columns[3], 1.0) : 1.0;
+            builder.add(columns[0], label, columns[1], score);
+        }
+        return builder.build();
+    }
+
+    private static double parseScore(final String score, final double defaultScore) {
+        if (score == null || score.isEmpty())
+            return defaultScore;
+        try {
+            return Double.parseDouble(score);
+        } catch (NumberFormatException error) {
+            return defaultScore;
+        }
+    }
+}
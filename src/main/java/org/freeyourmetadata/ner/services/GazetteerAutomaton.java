@@ -0,0 +1,712 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.freeyourmetadata.util.UriUtil.createUri;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Aho–Corasick automaton over the surface forms of a gazetteer,
+ * which finds all known entities in a text in a single pass.
+ * All states, transitions, and entities are stored in one flat buffer,
+ * which can be saved to a file and memory-mapped from it without parsing.
+ *
+ * @author Ruben Verborgh
+ */
+public class GazetteerAutomaton {
+    private final static int ROOT = 0;
+    private final static int NONE = -1;
+
+    /* Serialization header: magic number, version, case sensitivity, and section sizes.
+       The magic number starts with a byte that cannot occur in UTF-8 text, unlike the legacy "NERG". */
+    private final static int MAGIC = 0xFF4E4552;
+    private final static int LEGACY_MAGIC = 0x4E455247;
+    private final static int VERSION = 1;
+    private final static int HEADER_SIZE = 8 * Integer.BYTES;
+    private final static int MAX_VERSIONS = 100;
+    private final static String EXTENSION = ".gazetteer";
+
+    private final ByteBuffer buffer;
+    private final boolean caseSensitive;
+
+    /* Transitions of state s are at indices edgeStarts[s] until edgeStarts[s + 1], sorted by label */
+    private final IntBuffer edgeStarts;
+    private final CharBuffer edgeLabels;
+    private final IntBuffer edgeTargets;
+    /* Longest proper suffix of each state that is also a state */
+    private final IntBuffer failures;
+    /* Surface form that ends in each state, or NONE */
+    private final IntBuffer stateForms;
+    /* Nearest state along the failure chain in which a surface form ends, or NONE */
+    private final IntBuffer outputLinks;
+
+    /* Candidates of surface form f are at indices formCandidateStarts[f] until formCandidateStarts[f + 1] */
+    private final IntBuffer formLengths;
+    private final IntBuffer formCandidateStarts;
+    private final IntBuffer candidateEntities;
+    private final DoubleBuffer candidateScores;
+    /* UTF-8 label and URI of entity e start at entityStringStarts[2e] and entityStringStarts[2e + 1] */
+    private final IntBuffer entityStringStarts;
+    private final ByteBuffer entityStrings;
+
+    /**
+     * Creates an automaton on top of its serialized form
+     *
+     * @param buffer The serialized automaton
+     * @throws IOException if the buffer does not contain a valid automaton
+     */
+    private GazetteerAutomaton(final ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC && buffer.getInt(0) != LEGACY_MAGIC)
+            throw new IOException("Not a compiled gazetteer.");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported compiled gazetteer version " + buffer.getInt(4) + ".");
+        caseSensitive = buffer.getInt(8) != 0;
+        final int stateCount = buffer.getInt(12);
+        final int edgeCount = buffer.getInt(16);
+        final int formCount = buffer.getInt(20);
+        final int candidateCount = buffer.getInt(24);
+        final int entityCount = buffer.getInt(28);
+
+        int position = HEADER_SIZE;
+        candidateScores = section(position, candidateCount * Double.BYTES).asDoubleBuffer();
+        position += candidateCount * Double.BYTES;
+        edgeStarts = section(position, (stateCount + 1) * Integer.BYTES).asIntBuffer();
+        position += (stateCount + 1) * Integer.BYTES;
+        edgeTargets = section(position, edgeCount * Integer.BYTES).asIntBuffer();
+        position += edgeCount * Integer.BYTES;
+        failures = section(position, stateCount * Integer.BYTES).asIntBuffer();
+        position += stateCount * Integer.BYTES;
+        stateForms = section(position, stateCount * Integer.BYTES).asIntBuffer();
+        position += stateCount * Integer.BYTES;
+        outputLinks = section(position, stateCount * Integer.BYTES).asIntBuffer();
+        position += stateCount * Integer.BYTES;
+        formLengths = section(position, formCount * Integer.BYTES).asIntBuffer();
+        position += formCount * Integer.BYTES;
+        formCandidateStarts = section(position, (formCount + 1) * Integer.BYTES).asIntBuffer();
+        position += (formCount + 1) * Integer.BYTES;
+        candidateEntities = section(position, candidateCount * Integer.BYTES).asIntBuffer();
+        position += candidateCount * Integer.BYTES;
+        entityStringStarts = section(position, (2 * entityCount + 1) * Integer.BYTES).asIntBuffer();
+        position += (2 * entityCount + 1) * Integer.BYTES;
+        edgeLabels = section(position, edgeCount * Character.BYTES).asCharBuffer();
+        position += edgeCount * Character.BYTES;
+        entityStrings = section(position, entityStringStarts.get(2 * entityCount));
+    }
+
+    /**
+     * Gets a section of the serialized automaton
+     *
+     * @param position The start of the section
+     * @param length   The length of the section in bytes
+     * @return The section
+     * @throws IOException if the section lies outside of the buffer
+     */
+    private ByteBuffer section(final int position, final int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > buffer.capacity())
+            throw new IOException("Truncated compiled gazetteer.");
+        final ByteBuffer section = buffer.duplicate();
+        section.limit(position + length).position(position);
+        return section.slice();
+    }
+
+    /**
+     * Memory-maps a compiled gazetteer file
+     *
+     * @param file The file, as written by {@link #save(File)}
+     * @return The automaton
+     * @throws IOException if the file cannot be read or is not a compiled gazetteer
+     */
+    public static GazetteerAutomaton map(final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return new GazetteerAutomaton(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Indicates whether the file contains a compiled gazetteer,
+     * which is the case if it starts with a valid header.
+     * Files with the legacy magic number, which text can start with as well,
+     * additionally need the <tt>.gazetteer</tt> extension.
+     *
+     * @param file The file
+     * @return <tt>true</tt> if the file starts like a compiled gazetteer
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompiled(final File file) throws IOException {
+        final long length = file.length();
+        if (length < HEADER_SIZE)
+            return false;
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0)
+                continue;
+        }
+        final int magic = header.getInt(0);
+        if (magic != MAGIC && !(magic == LEGACY_MAGIC && file.getName().endsWith(EXTENSION)))
+            return false;
+        if (header.getInt(4) != VERSION)
+            return false;
+        // All sections except the entity strings have sizes that follow from the header
+        long size = HEADER_SIZE;
+        final int[] counts = new int[5];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = header.getInt(12 + i * Integer.BYTES);
+            if (counts[i] < 0)
+                return false;
+        }
+        final long stateCount = counts[0], edgeCount = counts[1], formCount = counts[2];
+        final long candidateCount = counts[3], entityCount = counts[4];
+        size += candidateCount * Double.BYTES + edgeCount * Character.BYTES
+                + (4 * stateCount + 1 + edgeCount + 2 * formCount + 1 + candidateCount + 2 * entityCount + 1) * Integer.BYTES;
+        return size <= length;
+    }
+
+    /**
+     * Saves the automaton to a file, which can be memory-mapped afterwards.
+     * The file is replaced atomically, so readers never see a partially written automaton.
+     * Existing mappings keep the old contents where the file system allows replacing a mapped file;
+     * where it does not (such as on Windows), the automaton is saved under a new versioned name
+     * next to the file instead, so the mapped file remains untouched.
+     *
+     * @param file The file
+     * @return The file to which the automaton was saved
+     * @throws IOException if the file cannot be written
+     */
+    public File save(final File file) throws IOException {
+        final File folder = file.getAbsoluteFile().getParentFile();
+        final File temporaryFile = File.createTempFile(file.getName(), ".tmp", folder);
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile.toPath(), StandardOpenOption.WRITE)) {
+                final ByteBuffer contents = buffer.duplicate();
+                contents.clear();
+                while (contents.hasRemaining())
+                    channel.write(contents);
+            }
+            try {
+                Files.move(temporaryFile.toPath(), file.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return file;
+            } catch (FileSystemException error) {
+                // The file is in use, so choose a name that is not
+                final String name = file.getName();
+                final int extension = name.lastIndexOf('.') > 0 ? name.lastIndexOf('.') : name.length();
+                for (int version = 2; version <= MAX_VERSIONS; version++) {
+                    final File versionedFile = new File(folder, String.format("%s-%d%s",
+                            name.substring(0, extension), version, name.substring(extension)));
+                    if (versionedFile.exists())
+                        continue;
+                    try {
+                        Files.move(temporaryFile.toPath(), versionedFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                        return versionedFile;
+                    } catch (FileSystemException inUse) {
+                        // Try the next version
+                    }
+                }
+                throw new IOException(String.format("Could not save the gazetteer %s, " +
+                        "because it is in use and no free versioned name was found.", name), error);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+    }
+
+    /**
+     * Gets the state reached from the given state with the given character
+     *
+     * @param state The origin state
+     * @param label The character
+     * @return The target state, or <tt>-1</tt> if there is no such transition
+     */
+    private int getTransition(final int state, final char label) {
+        int low = edgeStarts.get(state), high = edgeStarts.get(state + 1) - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final char middleLabel = edgeLabels.get(middle);
+            if (middleLabel < label)
+                low = middle + 1;
+            else if (middleLabel > label)
+                high = middle - 1;
+            else
+                return edgeTargets.get(middle);
+        }
+        return NONE;
+    }
+
+    /**
+     * Finds the leftmost longest occurrences of surface forms in the text
+     * that do not overlap and start and end at word boundaries
+     *
+     * @param text The text
+     * @return The matches as consecutive (begin offset, end offset, surface form) triples
+     */
+    public int[] findMatches(final CharSequence text) {
+        final int length = text.length();
+        // Longest match starting at each position, allocated upon the first match
+        int[] matchEnds = null;
+        int[] matchForms = null;
+
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            final char c = caseSensitive ? text.charAt(i) : Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = getTransition(state, c)) == NONE && state != ROOT)
+                state = failures.get(state);
+            state = next == NONE ? ROOT : next;
+
+            // Report all forms ending here, from the longest to the shortest
+            final int end = i + 1;
+            if (end < length && isWordCharacter(text.charAt(end)))
+                continue;
+            for (int output = stateForms.get(state) != NONE ? state : outputLinks.get(state);
+                 output != NONE; output = outputLinks.get(output)) {
+                final int form = stateForms.get(output);
+                final int begin = end - formLengths.get(form);
+                if (begin > 0 && isWordCharacter(text.charAt(begin - 1)))
+                    continue;
+                if (matchEnds == null) {
+                    matchEnds = new int[length];
+                    matchForms = new int[length];
+                }
+                if (matchEnds[begin] < end) {
+                    matchEnds[begin] = end;
+                    matchForms[begin] = form;
+                }
+            }
+        }
+        if (matchEnds == null)
+            return new int[0];
+
+        // Select matches from left to right, skipping those that overlap
+        int[] matches = new int[12];
+        int matchCount = 0;
+        for (int begin = 0; begin < length; begin++) {
+            if (matchEnds[begin] > 0) {
+                if (3 * matchCount + 3 > matches.length)
+                    matches = Arrays.copyOf(matches, 2 * matches.length);
+                matches[3 * matchCount] = begin;
+                matches[3 * matchCount + 1] = matchEnds[begin];
+                matches[3 * matchCount + 2] = matchForms[begin];
+                matchCount++;
+                begin = matchEnds[begin] - 1;
+            }
+        }
+        return Arrays.copyOf(matches, 3 * matchCount);
+    }
+
+    /**
+     * Creates the disambiguations of the given surface form, by decreasing score
+     *
+     * @param form     The surface form
+     * @param minScore The minimum score of included disambiguations
+     * @return The disambiguations
+     */
+    public Disambiguation[] getDisambiguations(final int form, final double minScore) {
+        final ArrayList<Disambiguation> disambiguations = new ArrayList<>();
+        for (int c = formCandidateStarts.get(form); c < formCandidateStarts.get(form + 1); c++) {
+            final double score = candidateScores.get(c);
+            if (score >= minScore) {
+                final int entity = candidateEntities.get(c);
+                disambiguations.add(new Disambiguation(getEntityString(2 * entity),
+                        createUri(getEntityString(2 * entity + 1)), score));
+            }
+        }
+        return disambiguations.toArray(new Disambiguation[disambiguations.size()]);
+    }
+
+    /**
+     * Decodes the label or URI of an entity
+     *
+     * @param index The index of the string
+     * @return The string
+     */
+    private String getEntityString(final int index) {
+        final int start = entityStringStarts.get(index);
+        final byte[] bytes = new byte[entityStringStarts.get(index + 1) - start];
+        for (int i = 0; i < bytes.length; i++)
+            bytes[i] = entityStrings.get(start + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Indicates whether surface forms are matched case-sensitively
+     *
+     * @return <tt>true</tt> if the automaton is case-sensitive
+     */
+    public boolean isCaseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * Gets the number of states of the automaton
+     *
+     * @return The number of states
+     */
+    public int getStateCount() {
+        return stateForms.capacity();
+    }
+
+    /**
+     * Gets the number of distinct surface forms of the automaton
+     *
+     * @return The number of surface forms
+     */
+    public int getFormCount() {
+        return formLengths.capacity();
+    }
+
+    /**
+     * Gets the number of distinct entities of the automaton
+     *
+     * @return The number of entities
+     */
+    public int getEntityCount() {
+        return (entityStringStarts.capacity() - 1) / 2;
+    }
+
+    private static boolean isWordCharacter(final char c) {
+        return Character.isLetterOrDigit(c);
+    }
+
+    /**
+     * Builder of gazetteer automata, which does not retain the added surface forms
+     */
+    public static class Builder {
+        private final boolean caseSensitive;
+        private boolean relativeScores;
+        /* Transitions of the trie, keyed by origin state and label */
+        private final LongIntTable transitions = new LongIntTable();
+        private int stateCount = 1;
+        private int[] stateForms = {NONE};
+        private int[] formLengths = new int[16];
+        private int formCount = 0;
+        /* Candidates, keyed by surface form and entity */
+        private final LongIntTable candidates = new LongIntTable();
+        private int[] candidateForms = new int[16];
+        private int[] candidateEntities = new int[16];
+        private double[] candidateScores = new double[16];
+        /* Entities, keyed by URI */
+        private final HashMap<String, Integer> entities = new HashMap<>();
+        private final ArrayList<String> entityLabels = new ArrayList<>();
+        private final ArrayList<String> entityUris = new ArrayList<>();
+
+        /**
+         * Creates a new builder
+         *
+         * @param caseSensitive Whether surface forms should be matched case-sensitively
+         */
+        public Builder(final boolean caseSensitive) {
+            this.caseSensitive = caseSensitive;
+        }
+
+        /**
+         * Sets whether the score of each candidate should be divided
+         * by the total score of all candidates of its surface form,
+         * such that adding occurrences with score 1 yields their relative frequency
+         *
+         * @param relativeScores Whether scores should be relative
+         * @return This builder
+         */
+        public Builder setRelativeScores(final boolean relativeScores) {
+            this.relativeScores = relativeScores;
+            return this;
+        }
+
+        /**
+         * Adds a candidate entity for a surface form.
+         * Scores of repeated candidates for the same surface form are added up.
+         *
+         * @param surfaceForm The surface form
+         * @param label       The label of the entity
+         * @param uri         The URI of the entity
+         * @param score       The score of the entity for this surface form
+         * @return This builder
+         */
+        public Builder add(final CharSequence surfaceForm, final String label, final String uri, final double score) {
+            if (surfaceForm.length() == 0)
+                throw new IllegalArgumentException("Surface forms cannot be empty.");
+
+            // Follow or create the path of the surface form
+            int state = ROOT;
+            for (int i = 0; i < surfaceForm.length(); i++) {
+                final char c = caseSensitive ? surfaceForm.charAt(i) : Character.toLowerCase(surfaceForm.charAt(i));
+                final long key = ((long) state << 16) | c;
+                final int next = transitions.get(key);
+                if (next != NONE) {
+                    state = next;
+                } else {
+                    if (stateCount == stateForms.length)
+                        stateForms = Arrays.copyOf(stateForms, 2 * stateCount);
+                    stateForms[stateCount] = NONE;
+                    transitions.put(key, stateCount);
+                    state = stateCount++;
+                }
+            }
+
+            // Register the surface form
+            if (stateForms[state] == NONE) {
+                if (formCount == formLengths.length)
+                    formLengths = Arrays.copyOf(formLengths, 2 * formCount);
+                formLengths[formCount] = surfaceForm.length();
+                stateForms[state] = formCount++;
+            }
+            final int form = stateForms[state];
+
+            // Register the entity
+            Integer entity = entities.get(uri);
+            if (entity == null) {
+                entity = entityUris.size();
+                entities.put(uri, entity);
+                entityLabels.add(label);
+                entityUris.add(uri);
+            }
+
+            // Register the candidate, or add to its score
+            final long candidateKey = ((long) form << 32) | entity;
+            final int existing = candidates.get(candidateKey);
+            if (existing != NONE) {
+                candidateScores[existing] += score;
+            } else {
+                final int candidate = candidates.size();
+                if (candidate == candidateForms.length) {
+                    candidateForms = Arrays.copyOf(candidateForms, 2 * candidate);
+                    candidateEntities = Arrays.copyOf(candidateEntities, 2 * candidate);
+                    candidateScores = Arrays.copyOf(candidateScores, 2 * candidate);
+                }
+                candidateForms[candidate] = form;
+                candidateEntities[candidate] = entity;
+                candidateScores[candidate] = score;
+                candidates.put(candidateKey, candidate);
+            }
+            return this;
+        }
+
+        /**
+         * Creates the automaton of all added surface forms
+         *
+         * @return The automaton
+         */
+        public GazetteerAutomaton build() {
+            // Group the transitions by origin state, sorted by label
+            final int edgeCount = transitions.size();
+            final long[] edges = new long[edgeCount];
+            int e = 0;
+            for (int slot = 0; slot < transitions.getCapacity(); slot++) {
+                if (transitions.getValueAt(slot) != NONE)
+                    edges[e++] = transitions.getKeyAt(slot);
+            }
+            Arrays.sort(edges);
+            final int[] edgeStarts = new int[stateCount + 1];
+            final char[] edgeLabels = new char[edgeCount];
+            final int[] edgeTargets = new int[edgeCount];
+            for (e = 0; e < edgeCount; e++) {
+                edgeStarts[(int) (edges[e] >>> 16) + 1]++;
+                edgeLabels[e] = (char) (edges[e] & 0xFFFF);
+                edgeTargets[e] = transitions.get(edges[e]);
+            }
+            for (int s = 0; s < stateCount; s++)
+                edgeStarts[s + 1] += edgeStarts[s];
+
+            // Compute the failure and output links in breadth-first order
+            final int[] failures = new int[stateCount];
+            final int[] outputLinks = new int[stateCount];
+            final int[] queue = new int[stateCount];
+            int head = 0, tail = 0;
+            outputLinks[ROOT] = NONE;
+            queue[tail++] = ROOT;
+            while (head < tail) {
+                final int state = queue[head++];
+                for (int edge = edgeStarts[state]; edge < edgeStarts[state + 1]; edge++) {
+                    final int target = edgeTargets[edge];
+                    int failure = ROOT;
+                    if (state != ROOT) {
+                        int candidate = failures[state];
+                        int next;
+                        while ((next = getTransition(edgeStarts, edgeLabels, edgeTargets, candidate, edgeLabels[edge])) == NONE
+                                && candidate != ROOT)
+                            candidate = failures[candidate];
+                        failure = next == NONE ? ROOT : next;
+                    }
+                    failures[target] = failure;
+                    outputLinks[target] = stateForms[failure] != NONE ? failure : outputLinks[failure];
+                    queue[tail++] = target;
+                }
+            }
+
+            // Group the candidates by surface form, by decreasing score
+            final int candidateCount = candidates.size();
+            final Integer[] order = new Integer[candidateCount];
+            for (int c = 0; c < candidateCount; c++)
+                order[c] = c;
+            Arrays.sort(order, (a, b) -> candidateForms[a] != candidateForms[b]
+                    ? Integer.compare(candidateForms[a], candidateForms[b])
+                    : Double.compare(candidateScores[b], candidateScores[a]));
+            final int[] formCandidateStarts = new int[formCount + 1];
+            final double[] formTotals = new double[formCount];
+            for (int c = 0; c < candidateCount; c++) {
+                formCandidateStarts[candidateForms[c] + 1]++;
+                formTotals[candidateForms[c]] += candidateScores[c];
+            }
+            for (int f = 0; f < formCount; f++)
+                formCandidateStarts[f + 1] += formCandidateStarts[f];
+
+            // Encode the entity strings
+            final int entityCount = entityUris.size();
+            final byte[][] entityStrings = new byte[2 * entityCount][];
+            final int[] entityStringStarts = new int[2 * entityCount + 1];
+            for (int i = 0; i < entityCount; i++) {
+                entityStrings[2 * i] = entityLabels.get(i).getBytes(StandardCharsets.UTF_8);
+                entityStrings[2 * i + 1] = entityUris.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < entityStrings.length; i++)
+                entityStringStarts[i + 1] = entityStringStarts[i] + entityStrings[i].length;
+
+            // Serialize all sections in the order expected by the constructor
+            final long size = HEADER_SIZE + (long) candidateCount * Double.BYTES
+                    + ((long) 4 * stateCount + 1 + edgeCount + 2 * formCount + 1 + candidateCount + 2 * entityCount + 1) * Integer.BYTES
+                    + (long) edgeCount * Character.BYTES + entityStringStarts[2 * entityCount];
+            if (size > Integer.MAX_VALUE)
+                throw new IllegalStateException("The gazetteer is too large to be compiled.");
+            final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(caseSensitive ? 1 : 0)
+                    .putInt(stateCount).putInt(edgeCount).putInt(formCount).putInt(candidateCount).putInt(entityCount);
+            for (int c = 0; c < candidateCount; c++) {
+                final double score = candidateScores[order[c]];
+                final double total = formTotals[candidateForms[order[c]]];
+                buffer.putDouble(relativeScores && total > 0 ? score / total : score);
+            }
+            putInts(buffer, edgeStarts, stateCount + 1);
+            putInts(buffer, edgeTargets, edgeCount);
+            putInts(buffer, failures, stateCount);
+            putInts(buffer, stateForms, stateCount);
+            putInts(buffer, outputLinks, stateCount);
+            putInts(buffer, formLengths, formCount);
+            putInts(buffer, formCandidateStarts, formCount + 1);
+            for (int c = 0; c < candidateCount; c++)
+                buffer.putInt(candidateEntities[order[c]]);
+            putInts(buffer, entityStringStarts, 2 * entityCount + 1);
+            for (int i = 0; i < edgeCount; i++)
+                buffer.putChar(edgeLabels[i]);
+            for (final byte[] entityString : entityStrings)
+                buffer.put(entityString);
+
+            try {
+                return new GazetteerAutomaton(buffer);
+            } catch (IOException error) {
+                throw new IllegalStateException(error);
+            }
+        }
+
+        private static int getTransition(final int[] edgeStarts, final char[] edgeLabels, final int[] edgeTargets,
+                                         final int state, final char label) {
+            final int edge = Arrays.binarySearch(edgeLabels, edgeStarts[state], edgeStarts[state + 1], label);
+            return edge < 0 ? NONE : edgeTargets[edge];
+        }
+
+        private static void putInts(final ByteBuffer buffer, final int[] values, final int count) {
+            for (int i = 0; i < count; i++)
+                buffer.putInt(values[i]);
+        }
+    }
+
+    /**
+     * Open-addressing hash table from <tt>long</tt> keys to non-negative <tt>int</tt> values,
+     * which stores its entries in primitive arrays instead of boxed map entries
+     */
+    private static class LongIntTable {
+        private long[] keys = new long[64];
+        private int[] values = createValues(64);
+        private int size;
+
+        /**
+         * Gets the value of a key
+         *
+         * @param key The key
+         * @return The value, or <tt>-1</tt> if the key is absent
+         */
+        int get(final long key) {
+            final int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; values[slot] != NONE; slot = (slot + 1) & mask) {
+                if (keys[slot] == key)
+                    return values[slot];
+            }
+            return NONE;
+        }
+
+        /**
+         * Sets the value of a key
+         *
+         * @param key   The key
+         * @param value The non-negative value
+         */
+        void put(final long key, final int value) {
+            // Keep the table at most half full, so probe sequences stay short
+            if (2 * (size + 1) > keys.length)
+                resize(2 * keys.length);
+            if (insert(keys, values, key, value))
+                size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int getCapacity() {
+            return keys.length;
+        }
+
+        long getKeyAt(final int slot) {
+            return keys[slot];
+        }
+
+        int getValueAt(final int slot) {
+            return values[slot];
+        }
+
+        private void resize(final int capacity) {
+            final long[] newKeys = new long[capacity];
+            final int[] newValues = createValues(capacity);
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (values[slot] != NONE)
+                    insert(newKeys, newValues, keys[slot], values[slot]);
+            }
+            keys = newKeys;
+            values = newValues;
+        }
+
+        private static boolean insert(final long[] keys, final int[] values, final long key, final int value) {
+            final int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != NONE && keys[slot] != key)
+                slot = (slot + 1) & mask;
+            final boolean added = values[slot] == NONE;
+            keys[slot] = key;
+            values[slot] = value;
+            return added;
+        }
+
+        private static int[] createValues(final int capacity) {
+            final int[] values = new int[capacity];
+            Arrays.fill(values, NONE);
+            return values;
+        }
+
+        private static int hash(final long key) {
+            // Spread the bits of the key, since its low bits hold small labels or entity indices
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package org.freeyourmetadata.ner.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of durations in microseconds with log-linear buckets, in the style of HdrHistogram:
+ * durations up to 16 microseconds have their own bucket, and every larger power of two
+ * is split into 8 buckets, so percentiles are accurate to within 12.5% over the whole range
+ * with a fixed, small footprint. Recording is lock-free and can happen from any thread.
+ *
+ * @author Ruben Verborgh
+ */
+public class LatencyHistogram {
+    private final static int LINEAR_BUCKETS = 16;
+    private final static int SUB_BUCKET_BITS = 3;
+    private final static int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private final static int MAX_EXPONENT = 40;
+    private final static int BUCKET_COUNT = LINEAR_BUCKETS + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * Records a duration
+     *
+     * @param nanos The duration in nanoseconds
+     */
+    public void recordNanos(final long nanos) {
+        final long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(getBucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+    }
+
+    /**
+     * Gets the number of recorded durations
+     *
+     * @return The number of durations
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the sum of all recorded durations
+     *
+     * @return The sum in microseconds
+     */
+    public long getSumMicros() {
+        return sum.get();
+    }
+
+    /**
+     * Gets the duration below which the given percentage of recorded durations lie
+     *
+     * @param percentile The percentile between 0 and 100
+     * @return The upper bound of the bucket of the percentile in microseconds, or 0 if nothing was recorded
+     */
+    public long getPercentileMicros(final double percentile) {
+        final long total = count.get();
+        if (total == 0)
+            return 0;
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            seen += counts.get(bucket);
+            if (seen >= rank)
+                return getUpperBound(bucket);
+        }
+        return getUpperBound(BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Gets the bucket of a duration
+     *
+     * @param micros The duration in microseconds
+     * @return The bucket index
+     */
+    protected static int getBucket(final long micros) {
+        if (micros < LINEAR_BUCKETS)
+            return (int) micros;
+        final int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT)
+            return BUCKET_COUNT - 1;
+        final int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the largest duration in a bucket
+     *
+     * @param bucket The bucket index
+     * @return The largest duration in microseconds
+     */
+    protected static long getUpperBound(final int bucket) {
+        if (bucket < LINEAR_BUCKETS)
+            return bucket;
+        final int exponent = 4 + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        final long subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
@@ -79,4 +79,13 @@ public interface NERService {
      * @return A documentation URI
      */
     public URI getDocumentationUri();
+
+    /**
+     * Gets the request metrics of the service
+     *
+     * @return The metrics, or {@link ServiceMetrics#NONE} if the service does not record any
+     */
+    public default ServiceMetrics getMetrics() {
+        return ServiceMetrics.NONE;
+    }
 }
@@ -11,12 +11,14 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.refine.util.ParsingUtilities;
 import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
@@ -43,6 +45,7 @@ public abstract class NERServiceBase implements NERService {
     private final HashMap<String, String> serviceSettings;
     private final HashMap<String, String> extractionSettingsDefault;
     private final URI documentationUri;
+    private final ServiceMetrics metrics = new ServiceMetrics();
 
     /**
      * Creates a new named-entity recognition service base class
@@ -126,8 +129,42 @@ public abstract class NERServiceBase implements NERService {
      */
     @Override
     public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
-        final HttpUriRequest request = createExtractionRequest(text, settings);
-        return performExtractionRequest(request);
+        final ExtractionRequestEvent event = new ExtractionRequestEvent(this, text.length());
+        try {
+            final HttpUriRequest request = createExtractionRequest(text, settings);
+            event.setEndpoint(request.getURI());
+            final NamedEntity[] entities = performExtractionRequest(request);
+            event.succeeded(entities);
+            return entities;
+        } catch (Exception error) {
+            event.failed(error);
+            throw error;
+        }
+    }
+
+    /**
+     * Performs an extraction inside this JVM, recording it like a request:
+     * as a flight recorder event, and with its duration as the parse stage of the metrics
+     *
+     * @param text       The text
+     * @param extraction The extraction of the named entities in the text
+     * @return The extracted named entities
+     * @throws Exception if the extraction fails
+     */
+    protected NamedEntity[] performLocalExtraction(final String text, final Callable<NamedEntity[]> extraction)
+            throws Exception {
+        final ExtractionRequestEvent event = new ExtractionRequestEvent(this, text.length());
+        final long start = System.nanoTime();
+        try {
+            final NamedEntity[] entities = extraction.call();
+            event.succeeded(entities);
+            return entities;
+        } catch (Exception error) {
+            event.failed(error);
+            throw error;
+        } finally {
+            metrics.recordLatency(ServiceMetrics.Stage.PARSE, System.nanoTime() - start);
+        }
     }
 
     /**
@@ -145,6 +182,14 @@ public abstract class NERServiceBase implements NERService {
         return documentationUri;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
     /**
      * Performs the named-entity recognition request
      *
@@ -155,12 +200,23 @@ public abstract class NERServiceBase implements NERService {
     protected NamedEntity[] performExtractionRequest(final HttpUriRequest request) throws Exception {
         final HttpClient httpClient = HttpClientBuilder.create().build();
         final HttpResponse response;
+        if (request instanceof HttpEntityEnclosingRequest)
+            metrics.recordRequestBody(((HttpEntityEnclosingRequest) request).getEntity());
+        final long start = System.nanoTime();
         try {
             response = httpClient.execute(request);
         } catch (IOException error) {
             throw new RuntimeException("Could not execute HTTP request", error);
         }
-        return parseExtractionResponse(response);
+        final long received = System.nanoTime();
+        metrics.recordLatency(ServiceMetrics.Stage.NETWORK, received - start);
+        metrics.recordStatusCode(response.getStatusLine().getStatusCode());
+        metrics.countResponseBody(response);
+        try {
+            return parseExtractionResponse(response);
+        } finally {
+            metrics.recordLatency(ServiceMetrics.Stage.PARSE, System.nanoTime() - received);
+        }
     }
 
     /**
@@ -251,6 +307,19 @@ public abstract class NERServiceBase implements NERService {
         return EMPTY_EXTRACTION_RESULT;
     }
 
+    /**
+     * Gets the default values of all extraction settings of a service
+     *
+     * @param service The service
+     * @return A new map with the default value of each extraction setting
+     */
+    public static Map<String, String> getExtractionSettingDefaults(final NERService service) {
+        final HashMap<String, String> settings = new HashMap<>();
+        for (final String name : service.getExtractionSettings())
+            settings.put(name, service.getExtractionSettingDefault(name));
+        return settings;
+    }
+
     /**
      * Encodes the specified text for use in an URL.
      *
@@ -61,6 +61,15 @@ public class NERServiceManager {
         this(new File(CACHEFOLDER, "services.json"));
     }
 
+    /**
+     * Gets the folder in which the extension stores its settings and data
+     *
+     * @return The cache folder
+     */
+    public static File getCacheFolder() {
+        return CACHEFOLDER;
+    }
+
     /**
      * Returns whether the manager contains the specified service
      *
@@ -119,6 +128,10 @@ public class NERServiceManager {
                 throw new RuntimeException(error);
             }
 
+            // Composite services find the services they combine through the manager
+            if (service instanceof CascadeNER)
+                ((CascadeNER) service).setServiceManager(this);
+
             // Add the newly created service
             addService(serviceName, service);
         }
@@ -0,0 +1,154 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.freeyourmetadata.util.UriUtil.createUri;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.vocabulary.RDFS;
+
+/**
+ * Streaming parser of NIF annotation responses.
+ * Instead of building an RDF graph, it collects the few properties of interest
+ * per annotation while the triples are parsed, and turns them into named entities.
+ */
+public class NIFResponseParser extends StreamRDFBase {
+    private static final String NIF_ANCHOR_OF = NIFService.NIF_ANCHOR_OF.getURI();
+    private static final String NIF_BEGIN_INDEX = NIFService.NIF_BEGIN_INDEX.getURI();
+    private static final String NIF_END_INDEX = NIFService.NIF_END_INDEX.getURI();
+    private static final String ITSRDF_TA_IDENTREF = NIFService.ITSRDF_TA_IDENTREF.getURI();
+    private static final String ITSRDF_TA_CONFIDENCE = NIFService.ITSRDF_TA_CONFIDENCE.getURI();
+    private static final String RDFS_LABEL = RDFS.label.getURI();
+
+    private final Map<Node, Annotation> annotations = new LinkedHashMap<>();
+    private final Map<String, String> labels = new HashMap<>();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void triple(Triple triple) {
+        Node predicate = triple.getPredicate();
+        if (!predicate.isURI()) {
+            return;
+        }
+        String property = predicate.getURI();
+        Node object = triple.getObject();
+
+        if (RDFS_LABEL.equals(property)) {
+            if (triple.getSubject().isURI() && object.isLiteral()) {
+                labels.putIfAbsent(triple.getSubject().getURI(), object.getLiteralLexicalForm());
+            }
+        } else if (ITSRDF_TA_IDENTREF.equals(property)) {
+            Annotation annotation = getAnnotation(triple.getSubject());
+            if (annotation.identRef == null && object.isURI()) {
+                annotation.identRef = object.getURI();
+            }
+        } else if (NIF_BEGIN_INDEX.equals(property)) {
+            getAnnotation(triple.getSubject()).beginIndex = parseInt(object);
+        } else if (NIF_END_INDEX.equals(property)) {
+            getAnnotation(triple.getSubject()).endIndex = parseInt(object);
+        } else if (NIF_ANCHOR_OF.equals(property)) {
+            if (object.isLiteral()) {
+                getAnnotation(triple.getSubject()).anchorOf = object.getLiteralLexicalForm();
+            }
+        } else if (ITSRDF_TA_CONFIDENCE.equals(property)) {
+            getAnnotation(triple.getSubject()).confidence = parseDouble(object, 1.0);
+        }
+    }
+
+    /**
+     * Creates named entities from the annotations that were parsed,
+     * grouping all disambiguations that cover the same text.
+     *
+     * @param originalText the text that was annotated
+     * @param confidenceThreshold the score above which entities are marked as matched
+     * @return the list of named entities
+     */
+    public NamedEntity[] getNamedEntities(String originalText, double confidenceThreshold) {
+        Map<NIFService.Phrase, List<Disambiguation>> disambiguations = new LinkedHashMap<>();
+        for (Annotation annotation : annotations.values()) {
+            // Only annotations that link to an entity are relevant
+            if (annotation.identRef == null) {
+                continue;
+            }
+
+            // Find extracted text
+            String extractedText = "";
+            if (annotation.anchorOf != null) {
+                extractedText = annotation.anchorOf;
+            } else if (annotation.beginIndex >= 0 && annotation.endIndex >= annotation.beginIndex
+                    && annotation.endIndex <= originalText.length()) {
+                extractedText = originalText.substring(annotation.beginIndex, annotation.endIndex);
+            }
+
+            // Find label, with a fallback for resources which do not have labels provided
+            String entityLabel = labels.get(annotation.identRef);
+            if (entityLabel == null) {
+                String[] parts = annotation.identRef.split("/");
+                entityLabel = parts.length == 0 ? "" : parts[parts.length - 1];
+            }
+
+            // all disambiguations covering the same text will be grouped together
+            NIFService.Phrase phrase = new NIFService.Phrase(annotation.beginIndex, annotation.endIndex, extractedText);
+            disambiguations.computeIfAbsent(phrase, p -> new ArrayList<>())
+                    .add(new Disambiguation(entityLabel, createUri(annotation.identRef), annotation.confidence));
+        }
+
+        NamedEntity[] entities = new NamedEntity[disambiguations.size()];
+        int index = 0;
+        for (Map.Entry<NIFService.Phrase, List<Disambiguation>> entry : disambiguations.entrySet()) {
+            List<Disambiguation> localDisambiguations = entry.getValue();
+            // sort disambiguations by decreasing score
+            localDisambiguations.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+            boolean matched = localDisambiguations.get(0).getScore() > confidenceThreshold;
+            Disambiguation[] disambiguationArray = localDisambiguations.toArray(new Disambiguation[localDisambiguations.size()]);
+            NIFService.Phrase phrase = entry.getKey();
+            entities[index++] = new NamedEntity(phrase.extractedText, disambiguationArray, matched, phrase.x, phrase.y);
+        }
+        return entities;
+    }
+
+    private Annotation getAnnotation(Node subject) {
+        return annotations.computeIfAbsent(subject, s -> new Annotation());
+    }
+
+    private static int parseInt(Node node) {
+        if (!node.isLiteral()) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(node.getLiteralLexicalForm().trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static double parseDouble(Node node, double defaultValue) {
+        if (!node.isLiteral()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(node.getLiteralLexicalForm().trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * The properties of interest of a single annotation
+     */
+    private static class Annotation {
+        int beginIndex = -1;
+        int endIndex = -1;
+        String anchorOf;
+        String identRef;
+        double confidence = 1.0;
+    }
+}
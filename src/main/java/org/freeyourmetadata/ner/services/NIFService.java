@@ -4,29 +4,28 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.util.EntityUtils;
-import org.apache.jena.datatypes.xsd.XSDDatatype;
-import org.apache.jena.query.Dataset;
-import org.apache.jena.rdf.model.*;
+import org.apache.jena.rdf.model.Property;
+import org.apache.jena.rdf.model.ResourceFactory;
 import org.apache.jena.riot.Lang;
-import org.apache.jena.riot.RDFDataMgr;
 import org.apache.jena.riot.RDFLanguages;
 import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.RDFParserRegistry;
 import org.apache.jena.riot.system.ErrorHandlerFactory;
-import org.apache.jena.vocabulary.RDF;
-import org.apache.jena.vocabulary.RDFS;
-import org.apache.jena.vocabulary.XSD;
-import org.freeyourmetadata.util.UriUtil;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class NIFService implements NERService {
 
@@ -34,6 +33,7 @@ public class NIFService implements NERService {
     public static final String RDFS_PREFIX = "http://www.w3.org/2000/01/rdf-schema#";
     public static final String NIF_PREFIX = "http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#";
     public static final String ITSRDF_PREFIX = "http://www.w3.org/2005/11/its/rdf#";
+    public static final String XSD_PREFIX = "http://www.w3.org/2001/XMLSchema#";
 
     public static final String NIF_RFC5147STRING = NIF_PREFIX + "RFC5147String";
     public static final String NIF_STRING = NIF_PREFIX + "String";
@@ -51,10 +51,32 @@ public class NIFService implements NERService {
     
     private static final String documentURI = "http://localhost/document/query";
 
+    // Response formats to negotiate, the cheapest to parse first
+    private static final String NEGOTIATED_ACCEPT = "application/n-triples, application/turtle;q=0.9, "
+            + "text/turtle;q=0.9, application/ld+json;q=0.5";
+
+    // Turtle serialization of a NIF context, split around its variable parts
+    private static final String NIF_REQUEST_START = ""
+            + "@prefix itsrdf: <" + ITSRDF_PREFIX + "> .\n"
+            + "@prefix nif:    <" + NIF_PREFIX + "> .\n"
+            + "@prefix rdf:    <" + RDF_PREFIX + "> .\n"
+            + "@prefix xsd:    <" + XSD_PREFIX + "> .\n"
+            + "\n"
+            + "<" + documentURI + ">\n"
+            + "        rdf:type        nif:Context , nif:String , nif:RFC5147String ;\n"
+            + "        nif:beginIndex  \"0\"^^xsd:nonNegativeInteger ;\n"
+            + "        nif:endIndex    \"";
+    private static final String NIF_REQUEST_IS_STRING = "\"^^xsd:nonNegativeInteger ;\n"
+            + "        nif:isString    \"";
+    private static final String NIF_REQUEST_END = "\" .\n";
+
     protected final HttpClient httpClient = HttpClientBuilder.create().build();
 
     protected Map<String, String> settings;
     protected double confidenceThreshold;
+    // Response format each endpoint answered with, once known
+    protected final Map<String, Lang> responseFormats = new ConcurrentHashMap<>();
+    protected final ServiceMetrics metrics = new ServiceMetrics();
 
     public NIFService() {
         this.settings = new HashMap<>();
@@ -69,26 +91,84 @@ public class NIFService implements NERService {
 
     @Override
     public NamedEntity[] extractNamedEntities(String text, Map<String, String> annotationSettings) throws Exception {
-        // Construct NIF document corresponding to the text
-        String nifDocument = createNIFDocument(text);
+        ExtractionRequestEvent event = new ExtractionRequestEvent(this, text.length());
+        try {
+            NamedEntity[] entities = performExtraction(text, event);
+            event.succeeded(entities);
+            return entities;
+        } catch (Exception error) {
+            event.failed(error);
+            throw error;
+        }
+    }
 
-        // Prepare the query
-        URI endpoint = new URI(settings.get(ENDPOINT_NAME));
-        HttpPost request = new HttpPost(endpoint);
-        request.setHeader("Accept", "application/turtle");
+    /**
+     * Sends the text to the NIF endpoint and parses the entities in its response.
+     *
+     * @param text the text to annotate
+     * @param event the flight recorder event of the request
+     * @return the named entities
+     * @throws Exception if the request or parsing fails
+     */
+    protected NamedEntity[] performExtraction(String text, ExtractionRequestEvent event) throws Exception {
+        // Write the NIF document corresponding to the text into the request body
+        ByteArrayOutputStream nifDocument = new ByteArrayOutputStream(NIF_REQUEST_START.length() + 2 * text.length() + 64);
+        Writer nifWriter = new OutputStreamWriter(nifDocument, StandardCharsets.UTF_8);
+        writeNIFDocument(text, nifWriter);
+        nifWriter.flush();
+
+        // Prepare the query, asking for the format the endpoint chose before if any
+        String endpoint = settings.get(ENDPOINT_NAME);
+        HttpPost request = new HttpPost(new URI(endpoint));
+        event.setEndpoint(request.getURI());
+        Lang knownFormat = responseFormats.get(endpoint);
+        request.setHeader("Accept", knownFormat == null ? NEGOTIATED_ACCEPT : knownFormat.getHeaderString());
         request.setHeader("User-Agent", "Refine NER Extension");
-        HttpEntity body = new StringEntity(nifDocument, ContentType.create("application/turtle", Charset.forName("utf-8")));
+        HttpEntity body = new ByteArrayEntity(nifDocument.toByteArray(),
+                ContentType.create("application/turtle", StandardCharsets.UTF_8));
         request.setEntity(body);
+        metrics.recordRequestBody(body);
         // Execute the request
+        long start = System.nanoTime();
         HttpResponse response = httpClient.execute(request);
+        long received = System.nanoTime();
+        metrics.recordLatency(ServiceMetrics.Stage.NETWORK, received - start);
+        metrics.recordStatusCode(response.getStatusLine().getStatusCode());
+        metrics.countResponseBody(response);
 
         if (response.getStatusLine().getStatusCode() >= 300) {
             throw new IOException(response.getStatusLine().getReasonPhrase());
         }
 
-        // Read the response
-        String responseString = EntityUtils.toString(response.getEntity(), Charset.forName("utf-8"));
-        return parseResponse(text, responseString, confidenceThreshold);
+        // Parse the response in the format the endpoint chose, while it is being read
+        HttpEntity responseEntity = response.getEntity();
+        Lang format = getResponseFormat(responseEntity);
+        if (format != null) {
+            responseFormats.put(endpoint, format);
+        } else {
+            format = RDFLanguages.TURTLE;
+        }
+        try (InputStream responseStream = responseEntity.getContent()) {
+            return parseResponse(text, responseStream, format, confidenceThreshold);
+        } finally {
+            EntityUtils.consumeQuietly(responseEntity);
+            metrics.recordLatency(ServiceMetrics.Stage.PARSE, System.nanoTime() - received);
+        }
+    }
+
+    /**
+     * Determines the RDF format of a response from its content type.
+     *
+     * @param entity the response entity
+     * @return the format, or <tt>null</tt> if it is absent or cannot be parsed
+     */
+    protected static Lang getResponseFormat(HttpEntity entity) {
+        if (entity.getContentType() == null) {
+            return null;
+        }
+        String mimeType = entity.getContentType().getValue().split(";")[0].trim();
+        Lang format = RDFLanguages.contentTypeToLang(mimeType);
+        return format != null && RDFParserRegistry.isTriples(format) ? format : null;
     }
 
     /**
@@ -98,28 +178,58 @@ public class NIFService implements NERService {
      * @return the Turtle encoding of the request
      */
     protected static String createNIFDocument(String text) {
-        Model model = ModelFactory.createDefaultModel();
-        Map<String, String> prefixMap = new HashMap<>();
-        prefixMap.put("nif", NIF_PREFIX);
-        prefixMap.put("itsrdf", ITSRDF_PREFIX);
-        prefixMap.put("rdf", RDF_PREFIX);
-        prefixMap.put("xsd", XSD.getURI());
-        model.setNsPrefixes(prefixMap);
-
-        Resource document = model.createResource(documentURI);
-        document.addProperty(RDF.type, model.createResource(NIF_RFC5147STRING));
-        document.addProperty(RDF.type, model.createResource(NIF_STRING));
-        document.addProperty(RDF.type, model.createResource(NIF_CONTEXT));
-        document.addProperty(NIF_BEGIN_INDEX,
-                ResourceFactory.createTypedLiteral(Integer.toString(0), XSDDatatype.XSDnonNegativeInteger));
-        document.addProperty(NIF_END_INDEX,
-                ResourceFactory.createTypedLiteral(Integer.toString(text.length()), XSDDatatype.XSDnonNegativeInteger));
-        document.addProperty(NIF_IS_STRING, text);
-        StringWriter stringWriter = new StringWriter();
-        RDFDataMgr.write(stringWriter, model, Lang.TURTLE);
+        StringWriter stringWriter = new StringWriter(NIF_REQUEST_START.length() + text.length() + 64);
+        try {
+            writeNIFDocument(text, stringWriter);
+        } catch (IOException e) {
+            // cannot happen when writing to a string
+        }
         return stringWriter.toString();
     }
 
+    /**
+     * Writes a NIF document for the text in Turtle, without building an RDF model.
+     * The output is identical to what Jena's Turtle writer produces for the same document.
+     *
+     * @param text the text to annotate
+     * @param writer the writer of the Turtle encoding
+     * @throws IOException if the writer fails
+     */
+    protected static void writeNIFDocument(String text, Writer writer) throws IOException {
+        writer.write(NIF_REQUEST_START);
+        writer.write(Integer.toString(text.length()));
+        writer.write(NIF_REQUEST_IS_STRING);
+        writeEscapedString(text, writer);
+        writer.write(NIF_REQUEST_END);
+    }
+
+    /**
+     * Writes the contents of a Turtle string literal, escaping the same characters as Jena.
+     *
+     * @param text the text of the literal
+     * @param writer the writer of the Turtle encoding
+     * @throws IOException if the writer fails
+     */
+    private static void writeEscapedString(String text, Writer writer) throws IOException {
+        int unescapedStart = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final String escape;
+            switch (text.charAt(i)) {
+                case '"': escape = "\\\""; break;
+                case '\\': escape = "\\\\"; break;
+                case '\n': escape = "\\n"; break;
+                case '\r': escape = "\\r"; break;
+                case '\t': escape = "\\t"; break;
+                case '\f': escape = "\\f"; break;
+                default: continue;
+            }
+            writer.write(text, unescapedStart, i - unescapedStart);
+            writer.write(escape);
+            unescapedStart = i + 1;
+        }
+        writer.write(text, unescapedStart, text.length() - unescapedStart);
+    }
+
     /**
      * Parses the Turtle response of the NIF service, to extract the list of named entities.
      *
@@ -128,86 +238,31 @@ public class NIFService implements NERService {
      * @return the list of named entities
      */
     protected static NamedEntity[] parseResponse(String originalText, String turtle, double confidenceThreshold) {
-        Dataset dataset = RDFParser
-                .fromString(turtle)
+        NIFResponseParser parser = new NIFResponseParser();
+        RDFParser.fromString(turtle)
                 .lang(RDFLanguages.TURTLE)
                 .errorHandler(ErrorHandlerFactory.errorHandlerNoWarnings)
-                .toDataset();
-        // TODO not sure how to detect parsing errors of the turtle response?
-        Model model = dataset.getDefaultModel();
-
-        // iterate over annotations
-        ResIterator iter = model.listSubjectsWithProperty(ITSRDF_TA_IDENTREF);
-        Map<Phrase, List<Disambiguation>> disambiguations = new HashMap<>();
-        while(iter.hasNext()) {
-            Resource resource = iter.nextResource();
-            double score = 1.0;
-            URI uri = UriUtil.EMPTYURI;
-
-            // Find location
-            int beginIndex = resource.getProperty(NIF_BEGIN_INDEX).getInt();
-            int endIndex = resource.getProperty(NIF_END_INDEX).getInt();
-
-            // Find extracted text
-            String extractedText = "";
-            if (resource.hasProperty(NIF_ANCHOR_OF)) {
-                extractedText = resource.getProperty(NIF_ANCHOR_OF).getString();
-            } else if (resource.hasProperty(NIF_BEGIN_INDEX) && resource.hasProperty(NIF_END_INDEX)) {
-                extractedText = originalText.substring(beginIndex, endIndex);
-            }
-
-            // Find URI and label
-            String entityLabel = "";
-            try {
-                RDFNode object = resource.getProperty(ITSRDF_TA_IDENTREF).getObject();
-                if (object.isResource()) {
-                    uri = new URI(object.asResource().getURI());
-                    Statement statement = model.getProperty(object.asResource(), RDFS.label);
-                    if (statement != null && statement.getObject().isLiteral()) {
-                        entityLabel = statement.getObject().asLiteral().getString();
-                    } else {
-                        // fallback strategy to create labels for resources which do not have labels provided
-                        String[] parts = object.asResource().getURI().split("/");
-                        entityLabel = parts[parts.length-1];
-                    }
-                } else {
-                    continue;
-                }
-            } catch (URISyntaxException e) {
-                // cannot happen since we know from Jena that this is a URI
-            }
-
-            // Find score
-            if (resource.hasProperty(ITSRDF_TA_CONFIDENCE)) {
-                score = resource.getProperty(ITSRDF_TA_CONFIDENCE).getDouble();
-            }
-
-            // compute key for aggregation of disambiguations:
-            // all disambiguations covering the same text will be grouped together
-            // so we compute an integer which represents both the start and end position
-            Phrase phrase = new Phrase(beginIndex, endIndex, extractedText);
-            List<Disambiguation> currentList = disambiguations.getOrDefault(phrase, new ArrayList<>());
-            currentList.add(new Disambiguation(entityLabel, uri, score));
-            disambiguations.put(phrase, currentList);
-        }
+                .parse(parser);
+        return parser.getNamedEntities(originalText, confidenceThreshold);
+    }
 
-        NamedEntity[] entities = new NamedEntity[disambiguations.size()];
-        int index = 0;
-        for (Map.Entry<Phrase, List<Disambiguation>> entry : disambiguations.entrySet()) {
-            List<Disambiguation> localDisambiguations = entry.getValue();
-            // sort disambiguations by decreasing score
-            localDisambiguations.sort(new Comparator<Disambiguation>() {
-                @Override
-                public int compare(Disambiguation a, Disambiguation b) {
-                    return Double.compare(b.getScore(), a.getScore());
-                }
-            });
-            boolean matched = localDisambiguations.stream().mapToDouble(d -> d.getScore()).max().orElse(Double.MIN_VALUE) > confidenceThreshold;
-            Disambiguation[] disambiguationArray = localDisambiguations.toArray(new Disambiguation[localDisambiguations.size()]);
-            entities[index] = new NamedEntity(entry.getKey().extractedText, disambiguationArray, matched);
-            index++;
-        }
-        return entities;
+    /**
+     * Parses the response of the NIF service as it is being read,
+     * to extract the list of named entities.
+     *
+     * @param originalText the text to annotate
+     * @param response the stream of the response from the service
+     * @param format the RDF format of the response
+     * @return the list of named entities
+     */
+    protected static NamedEntity[] parseResponse(String originalText, InputStream response, Lang format,
+                                                 double confidenceThreshold) {
+        NIFResponseParser parser = new NIFResponseParser();
+        RDFParser.source(response)
+                .lang(format)
+                .errorHandler(ErrorHandlerFactory.errorHandlerNoWarnings)
+                .parse(parser);
+        return parser.getNamedEntities(originalText, confidenceThreshold);
     }
 
     @Override
@@ -262,6 +317,11 @@ public class NIFService implements NERService {
         return null;
     }
 
+    @Override
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
     protected static class Phrase {
         final int x;
         final int y;
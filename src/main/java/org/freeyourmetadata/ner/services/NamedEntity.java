@@ -27,6 +27,8 @@ public class NamedEntity {
     private final String extractedText;
     private final Disambiguation[] disambiguations;
     private final boolean matched;
+    private final int beginOffset;
+    private final int endOffset;
 
     /**
      * Creates a new named entity without URIs
@@ -67,6 +69,8 @@ public class NamedEntity {
     public NamedEntity(final String extractedText, final URI[] uris) {
         this.extractedText = extractedText;
         this.matched = true;
+        this.beginOffset = -1;
+        this.endOffset = -1;
         this.disambiguations = new Disambiguation[uris.length];
         for (int i = 0; i < uris.length; i++)
             disambiguations[i] = new Disambiguation(extractedText, uris[i]);
@@ -91,9 +95,25 @@ public class NamedEntity {
      * @param matched         Whether to mark the corresponding cell as matched (assuming there is at least a candidate)
      */
     public NamedEntity(final String extractedText, final Disambiguation[] disambiguations, boolean matched) {
+        this(extractedText, disambiguations, matched, -1, -1);
+    }
+
+    /**
+     * Creates a new named entity at a known position in the original text
+     *
+     * @param extractedText   The label matched in the original text
+     * @param disambiguations An array of disambiguations
+     * @param matched         Whether to mark the corresponding cell as matched (assuming there is at least a candidate)
+     * @param beginOffset     The offset of the first character of the entity in the original text (or -1 if unknown)
+     * @param endOffset       The offset after the last character of the entity in the original text (or -1 if unknown)
+     */
+    public NamedEntity(final String extractedText, final Disambiguation[] disambiguations, boolean matched,
+                       final int beginOffset, final int endOffset) {
         this.extractedText = extractedText;
         this.disambiguations = disambiguations;
         this.matched = matched;
+        this.beginOffset = beginOffset;
+        this.endOffset = endOffset;
     }
 
     /**
@@ -106,6 +126,8 @@ public class NamedEntity {
         this.extractedText = extractedText;
         this.disambiguations = disambiguations.toArray(new Disambiguation[disambiguations.size()]);
         this.matched = true;
+        this.beginOffset = -1;
+        this.endOffset = -1;
     }
 
     /**
@@ -117,6 +139,8 @@ public class NamedEntity {
     public NamedEntity(final ObjectNode json) throws IOException {
         extractedText = json.get("extractedText").asText();
         matched = json.has("matched") ? json.get("matched").asBoolean(true) : true;
+        beginOffset = json.has("beginOffset") ? json.get("beginOffset").asInt(-1) : -1;
+        endOffset = json.has("endOffset") ? json.get("endOffset").asInt(-1) : -1;
         final ArrayNode jsonDisambiguations = (ArrayNode) json.get("disambiguations");
         disambiguations = new Disambiguation[jsonDisambiguations.size()];
         for (int i = 0; i < disambiguations.length; i++) {
@@ -142,6 +166,33 @@ public class NamedEntity {
         return disambiguations;
     }
 
+    /**
+     * Indicates whether the corresponding cell will be marked as matched
+     *
+     * @return <tt>true</tt> if the entity is matched to its best disambiguation
+     */
+    public boolean isMatched() {
+        return matched;
+    }
+
+    /**
+     * Gets the offset of the entity's first character in the original text
+     *
+     * @return The begin offset, or -1 if unknown
+     */
+    public int getBeginOffset() {
+        return beginOffset;
+    }
+
+    /**
+     * Gets the offset after the entity's last character in the original text
+     *
+     * @return The end offset, or -1 if unknown
+     */
+    public int getEndOffset() {
+        return endOffset;
+    }
+
     /**
      * Writes the named entity in a JSON representation
      *
@@ -151,6 +202,12 @@ public class NamedEntity {
     public void writeTo(final JsonGenerator json) throws IOException {
         json.writeStartObject();
         json.writeStringField("extractedText", getExtractedText());
+        if (!matched)
+            json.writeBooleanField("matched", false);
+        if (beginOffset >= 0 && endOffset >= 0) {
+            json.writeNumberField("beginOffset", beginOffset);
+            json.writeNumberField("endOffset", endOffset);
+        }
         json.writeArrayFieldStart("disambiguations");
         for (final Disambiguation disambiguation : getDisambiguations())
             disambiguation.writeTo(json);
@@ -164,6 +221,26 @@ public class NamedEntity {
      * @return The cell
      */
     public Cell toCell() {
+        return toCell(toRecon());
+    }
+
+    /**
+     * Convert the named entity into a Refine worksheet cell with the given reconciliation value,
+     * which can be shared between cells of identical entities
+     *
+     * @param recon The reconciliation value, as created by {@link #toRecon()}
+     * @return The cell
+     */
+    public Cell toCell(final Recon recon) {
+        return new Cell(getExtractedText(), recon);
+    }
+
+    /**
+     * Convert the named entity into a Refine reconciliation value
+     *
+     * @return The reconciliation value
+     */
+    public Recon toRecon() {
         // Try to determine a reconciliation value for the cell
         final Recon recon = new Recon(-1L, "", "");
         recon.judgment = matched ? Judgment.Matched : Judgment.None;
@@ -175,7 +252,8 @@ public class NamedEntity {
             final Disambiguation match = disambiguations[i];
             final String uri = match.getUri().toString();
             if (uri.length() > 0) {
-                final ReconCandidate candidate = new ReconCandidate(uri, match.getLabel(), EMPTY_TYPE_SET, match.getScore());
+                final String[] types = match.getType() == null ? EMPTY_TYPE_SET : new String[]{match.getType()};
+                final ReconCandidate candidate = new ReconCandidate(uri, match.getLabel(), types, match.getScore());
                 recon.addCandidate(candidate);
                 // If this candidate is better than the previous best candidate, make it the match
                 if (matched && (recon.match == null || match.getScore() > recon.match.score)) {
@@ -185,10 +263,11 @@ public class NamedEntity {
             }
         }
 
-        // Return the cell, adding a reconciliation value if a match was found
-        return new Cell(getExtractedText(), recon);
+        return recon;
     }
 
+    // Offsets are deliberately left out of equality,
+    // so different mentions of the same entity compare equal.
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,709 @@
+package org.freeyourmetadata.ner.services;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.TreeSet;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Deterministic automaton that recognizes a set of named regular expressions at once.
+ * All patterns are compiled into a single DFA over classes of equivalent characters,
+ * so a text is scanned once for all patterns instead of once per pattern.
+ * <p>
+ * Patterns support literals, escapes (<tt>\d \w \s</tt> and their negations), character classes,
+ * <tt>.</tt>, groups, alternation, and the quantifiers <tt>* + ? {n} {n,} {n,m}</tt>.
+ * Matches are always leftmost-longest, at most 1000 characters long, and start and end at word boundaries,
+ * so anchors and backreferences are not supported.
+ *
+ * @author Ruben Verborgh
+ */
+public class PatternAutomaton {
+    private final static int DEAD = -1;
+    private final static int MAX_STATES = 100000;
+    private final static int MAX_REPETITIONS = 1000;
+    private final static int MAX_MATCH_LENGTH = 1000;
+    private final static char MAX_CHAR = Character.MAX_VALUE;
+
+    private final String[] patternNames;
+    /* Class of equivalent characters of each character */
+    private final char[] characterClasses;
+    private final int classCount;
+    /* Transition of state s with class c is at index s * classCount + c */
+    private final int[] transitions;
+    /* Pattern accepted in each state, or -1 */
+    private final int[] acceptedPatterns;
+
+    /**
+     * Compiles the patterns into an automaton.
+     * If several patterns match the same text, the first one wins.
+     *
+     * @param patternNames The names of the patterns
+     * @param patterns     The patterns
+     * @throws PatternSyntaxException   if a pattern is invalid
+     * @throws IllegalArgumentException if the patterns result in too many states
+     */
+    public PatternAutomaton(final String[] patternNames, final String[] patterns) {
+        if (patternNames.length != patterns.length)
+            throw new IllegalArgumentException("Each pattern needs a name.");
+        this.patternNames = patternNames.clone();
+
+        // Build one nondeterministic automaton for all patterns
+        final Nfa nfa = new Nfa();
+        final int start = nfa.addState();
+        for (int p = 0; p < patterns.length; p++) {
+            final Node pattern = new Parser(patterns[p]).parse();
+            final int[] fragment = pattern.build(nfa);
+            nfa.addEpsilon(start, fragment[0]);
+            nfa.accepts.set(fragment[1], p);
+        }
+
+        // Partition the characters into classes that all patterns treat the same
+        final TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (final int[] ranges : nfa.ranges) {
+            if (ranges != null) {
+                for (int r = 0; r < ranges.length; r += 2) {
+                    boundaries.add(ranges[r]);
+                    if (ranges[r + 1] < MAX_CHAR)
+                        boundaries.add(ranges[r + 1] + 1);
+                }
+            }
+        }
+        characterClasses = new char[MAX_CHAR + 1];
+        int characterClass = -1;
+        for (int c = 0; c <= MAX_CHAR; c++) {
+            if (boundaries.contains(c))
+                characterClass++;
+            characterClasses[c] = (char) characterClass;
+        }
+        classCount = characterClass + 1;
+
+        // Determinize the automaton through subset construction
+        final HashMap<StateSet, Integer> dfaStates = new HashMap<>();
+        final ArrayList<int[]> dfaStateSets = new ArrayList<>();
+        final ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int[] dfaTransitions = new int[16 * classCount];
+        int[] dfaAccepts = new int[16];
+
+        final int[] initial = nfa.closure(new int[]{start}, 1);
+        dfaStates.put(new StateSet(initial), 0);
+        dfaStateSets.add(initial);
+        queue.add(0);
+
+        final int[][] targets = new int[classCount][];
+        final int[] targetCounts = new int[classCount];
+        while (!queue.isEmpty()) {
+            final int dfaState = queue.poll();
+            final int[] nfaStates = dfaStateSets.get(dfaState);
+
+            // Collect the targets per character class
+            Arrays.fill(targetCounts, 0);
+            int accepted = DEAD;
+            for (final int nfaState : nfaStates) {
+                final int pattern = nfa.accepts.get(nfaState);
+                if (pattern != DEAD && (accepted == DEAD || pattern < accepted))
+                    accepted = pattern;
+                final int[] ranges = nfa.ranges.get(nfaState);
+                if (ranges == null)
+                    continue;
+                for (int r = 0; r < ranges.length; r += 2) {
+                    for (int c = characterClasses[ranges[r]]; c <= characterClasses[ranges[r + 1]]; c++) {
+                        if (targets[c] == null || targets[c].length == targetCounts[c])
+                            targets[c] = targets[c] == null ? new int[4] : Arrays.copyOf(targets[c], 2 * targetCounts[c]);
+                        targets[c][targetCounts[c]++] = nfa.targets.get(nfaState);
+                    }
+                }
+            }
+            if (dfaState == dfaAccepts.length)
+                dfaAccepts = Arrays.copyOf(dfaAccepts, 2 * dfaState);
+            dfaAccepts[dfaState] = accepted;
+
+            // Find or create the target state for each character class
+            if ((dfaState + 1) * classCount > dfaTransitions.length)
+                dfaTransitions = Arrays.copyOf(dfaTransitions, 2 * dfaTransitions.length);
+            for (int c = 0; c < classCount; c++) {
+                int target = DEAD;
+                if (targetCounts[c] > 0) {
+                    final int[] closure = nfa.closure(targets[c], targetCounts[c]);
+                    final StateSet key = new StateSet(closure);
+                    final Integer existing = dfaStates.get(key);
+                    if (existing != null) {
+                        target = existing;
+                    } else {
+                        target = dfaStateSets.size();
+                        if (target == MAX_STATES)
+                            throw new IllegalArgumentException("The patterns are too complex to combine.");
+                        dfaStates.put(key, target);
+                        dfaStateSets.add(closure);
+                        queue.add(target);
+                    }
+                }
+                dfaTransitions[dfaState * classCount + c] = target;
+            }
+        }
+        transitions = Arrays.copyOf(dfaTransitions, dfaStateSets.size() * classCount);
+        acceptedPatterns = Arrays.copyOf(dfaAccepts, dfaStateSets.size());
+    }
+
+    /**
+     * Finds the leftmost longest occurrences of patterns in the text
+     * that do not overlap and start and end at word boundaries.
+     * The text is scanned once, running the automaton from every word boundary at the same time;
+     * runs that reach the same state have the same future, so only the earliest of them is kept.
+     * The time is thereby linear in the length of the text and in the number of states that are active at once.
+     * Only the text after a match that was scanned for a longer match is scanned again,
+     * which is limited by the maximum length of a match.
+     *
+     * @param text The text
+     * @return The matches as consecutive (begin offset, end offset, pattern) triples
+     */
+    public int[] findMatches(final CharSequence text) {
+        final int length = text.length();
+        int[] matches = new int[0];
+        int matchCount = 0;
+
+        // The active runs, ordered by start; the initial state is never reached again,
+        // so all runs are in different states and no more than the length of a match apart
+        final int capacity = Math.min(acceptedPatterns.length, MAX_MATCH_LENGTH + 1);
+        final int[] runStates = new int[capacity];
+        final int[] runStarts = new int[capacity];
+        int runCount = 0;
+        // The step at which each state was last reached by a run
+        final int[] reached = new int[acceptedPatterns.length];
+        int step = 0;
+
+        int matchBegin = DEAD, matchEnd = DEAD, matchPattern = DEAD;
+        int position = 0;
+        while (true) {
+            // Start a run at every word boundary, until a run has matched
+            if (matchBegin == DEAD && position < length && isBoundary(text, position)) {
+                runStates[runCount] = 0;
+                runStarts[runCount++] = position;
+            }
+            // All runs end with the text
+            if (position == length)
+                runCount = 0;
+
+            // Once no run can find an earlier or longer match, add the match and continue at its end
+            if (runCount == 0) {
+                if (matchBegin != DEAD) {
+                    if (3 * matchCount + 3 > matches.length)
+                        matches = Arrays.copyOf(matches, Math.max(12, 2 * matches.length));
+                    matches[3 * matchCount] = matchBegin;
+                    matches[3 * matchCount + 1] = matchEnd;
+                    matches[3 * matchCount + 2] = matchPattern;
+                    matchCount++;
+                    position = matchEnd;
+                    matchBegin = matchEnd = matchPattern = DEAD;
+                    continue;
+                }
+                if (position == length)
+                    break;
+                position++;
+                continue;
+            }
+
+            // Advance all runs over the next character
+            final int characterClass = characterClasses[text.charAt(position)];
+            final boolean boundary = isBoundary(text, position + 1);
+            step++;
+            int alive = 0;
+            for (int r = 0; r < runCount; r++) {
+                final int state = transitions[runStates[r] * classCount + characterClass];
+                final int start = runStarts[r];
+                // Drop runs that cannot match anymore, exceed the maximum length, or follow an earlier run
+                if (state == DEAD || position - start >= MAX_MATCH_LENGTH || reached[state] == step)
+                    continue;
+                reached[state] = step;
+                runStates[alive] = state;
+                runStarts[alive++] = start;
+                if (acceptedPatterns[state] != DEAD && boundary && (matchBegin == DEAD || start <= matchBegin)) {
+                    matchBegin = start;
+                    matchEnd = position + 1;
+                    matchPattern = acceptedPatterns[state];
+                }
+            }
+            runCount = alive;
+            // Runs that started after the match can no longer be the leftmost
+            while (matchBegin != DEAD && runCount > 0 && runStarts[runCount - 1] > matchBegin)
+                runCount--;
+            position++;
+        }
+        return Arrays.copyOf(matches, 3 * matchCount);
+    }
+
+    /**
+     * Gets the name of the pattern
+     *
+     * @param pattern The index of the pattern
+     * @return The name
+     */
+    public String getPatternName(final int pattern) {
+        return patternNames[pattern];
+    }
+
+    /**
+     * Gets the number of patterns of the automaton
+     *
+     * @return The number of patterns
+     */
+    public int getPatternCount() {
+        return patternNames.length;
+    }
+
+    /**
+     * Gets the number of states of the automaton
+     *
+     * @return The number of states
+     */
+    public int getStateCount() {
+        return acceptedPatterns.length;
+    }
+
+    /**
+     * Indicates whether the position lies on a word boundary,
+     * i.e., not in between two letters or digits
+     */
+    private static boolean isBoundary(final CharSequence text, final int position) {
+        return position == 0 || position == text.length()
+                || !Character.isLetterOrDigit(text.charAt(position - 1))
+                || !Character.isLetterOrDigit(text.charAt(position));
+    }
+
+    /**
+     * Sorted set of NFA states, used as key of a DFA state
+     */
+    private static class StateSet {
+        private final int[] states;
+        private final int hashCode;
+
+        StateSet(final int[] states) {
+            this.states = states;
+            this.hashCode = Arrays.hashCode(states);
+        }
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof StateSet && Arrays.equals(states, ((StateSet) other).states);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Nondeterministic automaton, in which each state has either
+     * a transition on a set of character ranges, epsilon transitions, or nothing
+     */
+    private static class Nfa {
+        final ArrayList<int[]> ranges = new ArrayList<>();
+        final ArrayList<Integer> targets = new ArrayList<>();
+        final ArrayList<int[]> epsilons = new ArrayList<>();
+        final ArrayList<Integer> accepts = new ArrayList<>();
+
+        int addState() {
+            ranges.add(null);
+            targets.add(DEAD);
+            epsilons.add(new int[0]);
+            accepts.add(DEAD);
+            return ranges.size() - 1;
+        }
+
+        void addEpsilon(final int from, final int to) {
+            final int[] existing = epsilons.get(from);
+            final int[] extended = Arrays.copyOf(existing, existing.length + 1);
+            extended[existing.length] = to;
+            epsilons.set(from, extended);
+        }
+
+        void addTransition(final int from, final int[] characterRanges, final int to) {
+            ranges.set(from, characterRanges);
+            targets.set(from, to);
+        }
+
+        /**
+         * Gets the sorted set of states reachable from the given states through epsilon transitions
+         */
+        int[] closure(final int[] states, final int count) {
+            final BitSet reached = new BitSet();
+            final ArrayDeque<Integer> pending = new ArrayDeque<>();
+            for (int i = 0; i < count; i++) {
+                if (!reached.get(states[i])) {
+                    reached.set(states[i]);
+                    pending.add(states[i]);
+                }
+            }
+            while (!pending.isEmpty()) {
+                for (final int next : epsilons.get(pending.poll())) {
+                    if (!reached.get(next)) {
+                        reached.set(next);
+                        pending.add(next);
+                    }
+                }
+            }
+            return reached.stream().toArray();
+        }
+    }
+
+    /**
+     * Node of the syntax tree of a pattern
+     */
+    private interface Node {
+        /**
+         * Adds a fragment for this node to the automaton
+         *
+         * @param nfa The automaton
+         * @return The start and end state of the fragment
+         */
+        int[] build(Nfa nfa);
+    }
+
+    /**
+     * Node that matches one character out of a set of ranges
+     */
+    private static class CharacterNode implements Node {
+        final int[] ranges;
+
+        CharacterNode(final int[] ranges) {
+            this.ranges = ranges;
+        }
+
+        @Override
+        public int[] build(final Nfa nfa) {
+            final int start = nfa.addState(), end = nfa.addState();
+            nfa.addTransition(start, ranges, end);
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Node that matches a sequence of nodes
+     */
+    private static class SequenceNode implements Node {
+        final ArrayList<Node> nodes = new ArrayList<>();
+
+        @Override
+        public int[] build(final Nfa nfa) {
+            final int start = nfa.addState();
+            int end = start;
+            for (final Node node : nodes) {
+                final int[] fragment = node.build(nfa);
+                nfa.addEpsilon(end, fragment[0]);
+                end = fragment[1];
+            }
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Node that matches one of several alternatives
+     */
+    private static class AlternativesNode implements Node {
+        final ArrayList<Node> alternatives = new ArrayList<>();
+
+        @Override
+        public int[] build(final Nfa nfa) {
+            final int start = nfa.addState(), end = nfa.addState();
+            for (final Node alternative : alternatives) {
+                final int[] fragment = alternative.build(nfa);
+                nfa.addEpsilon(start, fragment[0]);
+                nfa.addEpsilon(fragment[1], end);
+            }
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Node that matches a repetition of a node
+     */
+    private static class RepetitionNode implements Node {
+        final Node node;
+        final int min;
+        final int max;
+
+        RepetitionNode(final Node node, final int min, final int max) {
+            this.node = node;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public int[] build(final Nfa nfa) {
+            final int start = nfa.addState();
+            int end = start;
+            // Mandatory occurrences
+            for (int i = 0; i < min; i++) {
+                final int[] fragment = node.build(nfa);
+                nfa.addEpsilon(end, fragment[0]);
+                end = fragment[1];
+            }
+            // Unbounded occurrences
+            if (max < 0) {
+                final int[] fragment = node.build(nfa);
+                final int loopEnd = nfa.addState();
+                nfa.addEpsilon(end, fragment[0]);
+                nfa.addEpsilon(end, loopEnd);
+                nfa.addEpsilon(fragment[1], fragment[0]);
+                nfa.addEpsilon(fragment[1], loopEnd);
+                end = loopEnd;
+            }
+            // Optional occurrences
+            else {
+                final int optionalEnd = nfa.addState();
+                for (int i = min; i < max; i++) {
+                    final int[] fragment = node.build(nfa);
+                    nfa.addEpsilon(end, fragment[0]);
+                    nfa.addEpsilon(end, optionalEnd);
+                    end = fragment[1];
+                }
+                nfa.addEpsilon(end, optionalEnd);
+                end = optionalEnd;
+            }
+            return new int[]{start, end};
+        }
+    }
+
+    /**
+     * Recursive-descent parser of patterns
+     */
+    private static class Parser {
+        private final static int[] DIGITS = {'0', '9'};
+        private final static int[] WORD_CHARACTERS = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+        private final static int[] WHITESPACE = {'\t', '\r', ' ', ' '};
+        private final static int[] LINE_BREAKS = {'\n', '\n', '\r', '\r'};
+
+        private final String pattern;
+        private int position;
+
+        Parser(final String pattern) {
+            this.pattern = pattern;
+        }
+
+        Node parse() {
+            final Node node = parseAlternatives();
+            if (position < pattern.length())
+                throw error("Unmatched closing parenthesis");
+            return node;
+        }
+
+        private Node parseAlternatives() {
+            final AlternativesNode alternatives = new AlternativesNode();
+            alternatives.alternatives.add(parseSequence());
+            while (position < pattern.length() && pattern.charAt(position) == '|') {
+                position++;
+                alternatives.alternatives.add(parseSequence());
+            }
+            return alternatives.alternatives.size() == 1 ? alternatives.alternatives.get(0) : alternatives;
+        }
+
+        private Node parseSequence() {
+            final SequenceNode sequence = new SequenceNode();
+            while (position < pattern.length() && pattern.charAt(position) != '|' && pattern.charAt(position) != ')')
+                sequence.nodes.add(parseQuantifier(parseAtom()));
+            return sequence.nodes.size() == 1 ? sequence.nodes.get(0) : sequence;
+        }
+
+        private Node parseQuantifier(final Node atom) {
+            if (position == pattern.length())
+                return atom;
+            switch (pattern.charAt(position)) {
+                case '*':
+                    position++;
+                    return new RepetitionNode(atom, 0, -1);
+                case '+':
+                    position++;
+                    return new RepetitionNode(atom, 1, -1);
+                case '?':
+                    position++;
+                    return new RepetitionNode(atom, 0, 1);
+                case '{':
+                    position++;
+                    final int min = parseNumber();
+                    int max = min;
+                    if (position < pattern.length() && pattern.charAt(position) == ',') {
+                        position++;
+                        max = position < pattern.length() && pattern.charAt(position) == '}' ? -1 : parseNumber();
+                    }
+                    expect('}');
+                    if (max >= 0 && max < min)
+                        throw error("Invalid repetition range");
+                    return new RepetitionNode(atom, min, max);
+                default:
+                    return atom;
+            }
+        }
+
+        private int parseNumber() {
+            final int start = position;
+            while (position < pattern.length() && Character.isDigit(pattern.charAt(position)))
+                position++;
+            if (start == position || position - start > 4)
+                throw error("Invalid repetition count");
+            final int number = Integer.parseInt(pattern.substring(start, position));
+            if (number > MAX_REPETITIONS)
+                throw error("Repetition count too large");
+            return number;
+        }
+
+        private Node parseAtom() {
+            final char c = pattern.charAt(position++);
+            switch (c) {
+                case '(':
+                    if (pattern.startsWith("?:", position))
+                        position += 2;
+                    else if (position < pattern.length() && pattern.charAt(position) == '?')
+                        throw error("Unsupported group type");
+                    final Node group = parseAlternatives();
+                    expect(')');
+                    return group;
+                case '[':
+                    return new CharacterNode(parseCharacterClass());
+                case '.':
+                    return new CharacterNode(complement(LINE_BREAKS));
+                case '\\':
+                    return new CharacterNode(parseEscape());
+                case '^':
+                case '$':
+                    throw error("Anchors are not supported");
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw error("Dangling quantifier");
+                default:
+                    return new CharacterNode(new int[]{c, c});
+            }
+        }
+
+        private int[] parseCharacterClass() {
+            final boolean negated = position < pattern.length() && pattern.charAt(position) == '^';
+            if (negated)
+                position++;
+            final ArrayList<int[]> parts = new ArrayList<>();
+            boolean first = true;
+            while (true) {
+                if (position == pattern.length())
+                    throw error("Unclosed character class");
+                char c = pattern.charAt(position++);
+                if (c == ']' && !first)
+                    break;
+                first = false;
+                if (c == '\\') {
+                    final int[] escaped = parseEscape();
+                    if (escaped.length > 2 || escaped[0] != escaped[1]) {
+                        parts.add(escaped);
+                        continue;
+                    }
+                    c = (char) escaped[0];
+                }
+                // Range of characters
+                if (position + 1 < pattern.length() && pattern.charAt(position) == '-' && pattern.charAt(position + 1) != ']') {
+                    position++;
+                    char last = pattern.charAt(position++);
+                    if (last == '\\') {
+                        final int[] escaped = parseEscape();
+                        if (escaped.length > 2 || escaped[0] != escaped[1])
+                            throw error("Invalid character range");
+                        last = (char) escaped[0];
+                    }
+                    if (last < c)
+                        throw error("Invalid character range");
+                    parts.add(new int[]{c, last});
+                } else {
+                    parts.add(new int[]{c, c});
+                }
+            }
+            final int[] ranges = union(parts);
+            return negated ? complement(ranges) : ranges;
+        }
+
+        private int[] parseEscape() {
+            if (position == pattern.length())
+                throw error("Unfinished escape sequence");
+            final char c = pattern.charAt(position++);
+            switch (c) {
+                case 'd': return DIGITS;
+                case 'D': return complement(DIGITS);
+                case 'w': return WORD_CHARACTERS;
+                case 'W': return complement(WORD_CHARACTERS);
+                case 's': return WHITESPACE;
+                case 'S': return complement(WHITESPACE);
+                case 't': return new int[]{'\t', '\t'};
+                case 'n': return new int[]{'\n', '\n'};
+                case 'r': return new int[]{'\r', '\r'};
+                case 'f': return new int[]{'\f', '\f'};
+                case 'u':
+                    if (position + 4 > pattern.length())
+                        throw error("Invalid Unicode escape");
+                    try {
+                        final int code = Integer.parseInt(pattern.substring(position, position + 4), 16);
+                        position += 4;
+                        return new int[]{code, code};
+                    } catch (NumberFormatException e) {
+                        throw error("Invalid Unicode escape");
+                    }
+                default:
+                    if (Character.isLetterOrDigit(c))
+                        throw error("Unsupported escape sequence");
+                    return new int[]{c, c};
+            }
+        }
+
+        private void expect(final char expected) {
+            if (position == pattern.length() || pattern.charAt(position) != expected)
+                throw error("Expected " + expected);
+            position++;
+        }
+
+        private PatternSyntaxException error(final String description) {
+            return new PatternSyntaxException(description, pattern, position - 1);
+        }
+
+        /**
+         * Merges lists of character ranges into one sorted list of disjoint ranges
+         */
+        private static int[] union(final ArrayList<int[]> parts) {
+            final ArrayList<int[]> ranges = new ArrayList<>();
+            for (final int[] part : parts)
+                for (int r = 0; r < part.length; r += 2)
+                    ranges.add(new int[]{part[r], part[r + 1]});
+            ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+            final int[] merged = new int[2 * ranges.size()];
+            int count = 0;
+            for (final int[] range : ranges) {
+                if (count > 0 && range[0] <= merged[count - 1] + 1) {
+                    merged[count - 1] = Math.max(merged[count - 1], range[1]);
+                } else {
+                    merged[count++] = range[0];
+                    merged[count++] = range[1];
+                }
+            }
+            return Arrays.copyOf(merged, count);
+        }
+
+        /**
+         * Gets the sorted ranges of all characters outside of the given sorted ranges
+         */
+        private static int[] complement(final int[] ranges) {
+            final int[] complement = new int[ranges.length + 2];
+            int count = 0, next = 0;
+            for (int r = 0; r < ranges.length; r += 2) {
+                if (ranges[r] > next) {
+                    complement[count++] = next;
+                    complement[count++] = ranges[r] - 1;
+                }
+                next = ranges[r + 1] + 1;
+            }
+            if (next <= MAX_CHAR) {
+                complement[count++] = next;
+                complement[count++] = MAX_CHAR;
+            }
+            return Arrays.copyOf(complement, count);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.freeyourmetadata.util.UriUtil.createUri;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Local service that recognizes identifiers and other entities with a fixed syntax,
+ * such as DOIs, ORCIDs, ISBNs, Wikidata items, email addresses, and dates.
+ * All patterns are combined into a single automaton, so each text is scanned only once.
+ * Additional patterns can be placed in a tab-separated file in the extension's cache folder,
+ * with one name, pattern, and URI template per line; they replace default patterns with the same name.
+ *
+ * @author Ruben Verborgh
+ */
+public class PatternRecognizer extends NERServiceBase {
+    private final static String PATTERNS_FILE = "Patterns file";
+    private final static String[] SERVICESETTINGS = {PATTERNS_FILE};
+    private final static String[] EXTRACTIONSETTINGS = {};
+    private final static String DEFAULT_PATTERNS = "DefaultPatterns.tsv";
+    private final static String MATCH_PLACEHOLDER = "{match}";
+
+    private PatternAutomaton automaton;
+    private String[] uriTemplates;
+    private File patternsFile;
+    private long patternsLastModified;
+
+    /**
+     * Creates a new pattern recognition service
+     */
+    public PatternRecognizer() {
+        super(null, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        setServiceSetting(PATTERNS_FILE, "patterns.tsv");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isConfigured() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
+        return performLocalExtraction(text, () -> findNamedEntities(text));
+    }
+
+    /**
+     * Finds the matches of all patterns in the text
+     *
+     * @param text The text
+     * @return The named entities of the matches
+     * @throws IOException if the patterns cannot be read
+     */
+    protected NamedEntity[] findNamedEntities(final String text) throws IOException {
+        final PatternAutomaton automaton;
+        final String[] uriTemplates;
+        synchronized (this) {
+            automaton = getAutomaton();
+            uriTemplates = this.uriTemplates;
+        }
+        final int[] matches = automaton.findMatches(text);
+
+        final NamedEntity[] entities = new NamedEntity[matches.length / 3];
+        for (int m = 0; m < matches.length; m += 3) {
+            final int begin = matches[m], end = matches[m + 1], pattern = matches[m + 2];
+            final String match = text.substring(begin, end);
+            final String uri = uriTemplates[pattern].replace(MATCH_PLACEHOLDER, match);
+            final Disambiguation disambiguation = new Disambiguation(match, createUri(uri), 1.0,
+                    automaton.getPatternName(pattern));
+            entities[m / 3] = new NamedEntity(match, new Disambiguation[]{disambiguation}, true, begin, end);
+        }
+        return entities;
+    }
+
+    /**
+     * Gets the automaton of the default and configured patterns,
+     * (re)building it if the patterns file changed.
+     *
+     * @return The automaton
+     * @throws IOException if the patterns cannot be read
+     */
+    protected synchronized PatternAutomaton getAutomaton() throws IOException {
+        final File file = getPatternsFile();
+        final long lastModified = file.isFile() ? file.lastModified() : 0;
+        if (automaton == null || !file.equals(patternsFile) || lastModified != patternsLastModified) {
+            final Map<String, String[]> patterns = new LinkedHashMap<>();
+            // Resolve the default patterns relative to this class, since subclasses can reside in other packages
+            final InputStream defaultPatterns = PatternRecognizer.class.getResourceAsStream(DEFAULT_PATTERNS);
+            if (defaultPatterns == null)
+                throw new IOException("The default patterns " + DEFAULT_PATTERNS + " are not on the classpath.");
+            try (Reader reader = new InputStreamReader(defaultPatterns, StandardCharsets.UTF_8)) {
+                readPatterns(reader, patterns);
+            }
+            if (lastModified != 0) {
+                try (Reader reader = new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                    readPatterns(reader, patterns);
+                }
+            }
+
+            final String[] names = patterns.keySet().toArray(new String[0]);
+            final String[] expressions = new String[names.length];
+            final String[] templates = new String[names.length];
+            for (int i = 0; i < names.length; i++) {
+                expressions[i] = patterns.get(names[i])[0];
+                templates[i] = patterns.get(names[i])[1];
+            }
+            automaton = new PatternAutomaton(names, expressions);
+            uriTemplates = templates;
+            patternsFile = file;
+            patternsLastModified = lastModified;
+        }
+        return automaton;
+    }
+
+    /**
+     * Gets the file with additional patterns, which always resides in the cache folder
+     *
+     * @return The patterns file
+     */
+    protected File getPatternsFile() {
+        return new File(NERServiceManager.getCacheFolder(), new File(getServiceSetting(PATTERNS_FILE)).getName());
+    }
+
+    /**
+     * Reads tab-separated patterns with a name, a pattern, and an optional URI template per line.
+     * Empty lines, lines starting with <tt>#</tt>, and lines without pattern are skipped.
+     *
+     * @param reader   The reader of the patterns
+     * @param patterns The patterns and URI templates by name, to which the read patterns are added
+     * @throws IOException if the patterns cannot be read
+     */
+    protected static void readPatterns(final Reader reader, final Map<String, String[]> patterns) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+            final String[] columns = line.split("\t", -1);
+            if (columns.length < 2 || columns[0].isEmpty() || columns[1].isEmpty())
+                continue;
+            // Redefined patterns keep their original position
+            patterns.put(columns[0], new String[]{columns[1], columns.length > 2 ? columns[2] : ""});
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package org.freeyourmetadata.ner.services;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Request metrics of a named-entity recognition service:
+ * latency histograms of the network, parse and total stages of requests,
+ * and counters of status codes, errors and transferred bytes.
+ * The network stage lasts until the response headers arrive;
+ * the parse stage includes reading the response body, since responses are parsed as they stream in.
+ * Services that run inside this JVM record their whole analysis as the parse stage.
+ *
+ * @author Ruben Verborgh
+ */
+public class ServiceMetrics {
+    /**
+     * The stages of a request whose latency is recorded
+     */
+    public enum Stage {
+        NETWORK, PARSE, TOTAL
+    }
+
+    /**
+     * Metrics that record nothing, for services that do not track their requests
+     */
+    public final static ServiceMetrics NONE = new ServiceMetrics() {
+        @Override
+        public void recordLatency(final Stage stage, final long nanos) {
+        }
+
+        @Override
+        public void recordStatusCode(final int statusCode) {
+        }
+
+        @Override
+        public void recordError() {
+        }
+
+        @Override
+        public void recordRequestBody(final HttpEntity entity) {
+        }
+
+        @Override
+        public void countResponseBody(final HttpResponse response) {
+        }
+    };
+
+    private final static double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Stage.values().length];
+    private final ConcurrentHashMap<Integer, AtomicLong> statusCodes = new ConcurrentHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+
+    /**
+     * Creates new, empty service metrics
+     */
+    public ServiceMetrics() {
+        for (int i = 0; i < latencies.length; i++)
+            latencies[i] = new LatencyHistogram();
+    }
+
+    /**
+     * Gets the latency histogram of a stage
+     *
+     * @param stage The stage
+     * @return The histogram
+     */
+    public LatencyHistogram getLatency(final Stage stage) {
+        return latencies[stage.ordinal()];
+    }
+
+    /**
+     * Records the duration of a stage of a request
+     *
+     * @param stage The stage
+     * @param nanos The duration in nanoseconds
+     */
+    public void recordLatency(final Stage stage, final long nanos) {
+        latencies[stage.ordinal()].recordNanos(nanos);
+    }
+
+    /**
+     * Records the status code of a response
+     *
+     * @param statusCode The HTTP status code
+     */
+    public void recordStatusCode(final int statusCode) {
+        statusCodes.computeIfAbsent(statusCode, code -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Records a failed extraction
+     */
+    public void recordError() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * Records the size of a request body
+     *
+     * @param entity The request body (can be null)
+     */
+    public void recordRequestBody(final HttpEntity entity) {
+        if (entity != null && entity.getContentLength() > 0)
+            bytesOut.addAndGet(entity.getContentLength());
+    }
+
+    /**
+     * Makes the response count the bytes of its body as they are read
+     *
+     * @param response The response
+     */
+    public void countResponseBody(final HttpResponse response) {
+        final HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            response.setEntity(new HttpEntityWrapper(entity) {
+                @Override
+                public InputStream getContent() throws IOException {
+                    return new CountingInputStream(super.getContent());
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the number of errors
+     *
+     * @return The number of failed extractions
+     */
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    /**
+     * Gets the number of bytes sent in request bodies
+     *
+     * @return The number of bytes
+     */
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    /**
+     * Gets the number of bytes received in response bodies
+     *
+     * @return The number of bytes
+     */
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    /**
+     * Gets the number of responses per status code
+     *
+     * @return The counts by status code
+     */
+    public Map<Integer, Long> getStatusCodeCounts() {
+        final TreeMap<Integer, Long> counts = new TreeMap<>();
+        for (final Map.Entry<Integer, AtomicLong> count : statusCodes.entrySet())
+            counts.put(count.getKey(), count.getValue().get());
+        return counts;
+    }
+
+    /**
+     * Writes the metrics of services in the Prometheus text exposition format
+     *
+     * @param metrics The metrics by service name
+     * @param writer  The writer
+     * @throws IOException if writing fails
+     */
+    public static void writePrometheus(final Map<String, ServiceMetrics> metrics, final Writer writer)
+            throws IOException {
+        writer.write("# HELP ner_request_duration_seconds Duration of named-entity recognition requests by stage.\n");
+        writer.write("# TYPE ner_request_duration_seconds summary\n");
+        for (final Map.Entry<String, ServiceMetrics> service : metrics.entrySet()) {
+            for (final Stage stage : Stage.values()) {
+                final LatencyHistogram histogram = service.getValue().getLatency(stage);
+                final String labels = "service=\"" + escapeLabel(service.getKey()) + "\",stage=\""
+                        + stage.name().toLowerCase() + "\"";
+                for (final double quantile : QUANTILES) {
+                    writer.write("ner_request_duration_seconds{" + labels + ",quantile=\"" + quantile + "\"} "
+                            + histogram.getPercentileMicros(quantile * 100) / 1e6 + "\n");
+                }
+                writer.write("ner_request_duration_seconds_sum{" + labels + "} " + histogram.getSumMicros() / 1e6 + "\n");
+                writer.write("ner_request_duration_seconds_count{" + labels + "} " + histogram.getCount() + "\n");
+            }
+        }
+
+        writer.write("# HELP ner_responses_total Responses of named-entity recognition services by status code.\n");
+        writer.write("# TYPE ner_responses_total counter\n");
+        for (final Map.Entry<String, ServiceMetrics> service : metrics.entrySet()) {
+            for (final Map.Entry<Integer, Long> count : service.getValue().getStatusCodeCounts().entrySet()) {
+                writer.write("ner_responses_total{service=\"" + escapeLabel(service.getKey()) + "\",code=\""
+                        + count.getKey() + "\"} " + count.getValue() + "\n");
+            }
+        }
+
+        writeCounter(writer, metrics, "ner_errors_total", "Failed named-entity extractions.", m -> m.errors);
+        writeCounter(writer, metrics, "ner_request_bytes_total", "Bytes sent in request bodies.", m -> m.bytesOut);
+        writeCounter(writer, metrics, "ner_response_bytes_total", "Bytes received in response bodies.", m -> m.bytesIn);
+    }
+
+    /**
+     * Writes a counter of all services in the Prometheus text exposition format
+     */
+    private static void writeCounter(final Writer writer, final Map<String, ServiceMetrics> metrics,
+                                     final String name, final String help,
+                                     final Function<ServiceMetrics, AtomicLong> counter)
+            throws IOException {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " counter\n");
+        for (final Map.Entry<String, ServiceMetrics> service : metrics.entrySet()) {
+            writer.write(name + "{service=\"" + escapeLabel(service.getKey()) + "\"} "
+                    + counter.apply(service.getValue()).get() + "\n");
+        }
+    }
+
+    /**
+     * Escapes a Prometheus label value
+     */
+    private static String escapeLabel(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * Input stream that adds the number of bytes it reads to the received bytes
+     */
+    private class CountingInputStream extends FilterInputStream {
+        CountingInputStream(final InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final int value = super.read();
+            if (value >= 0)
+                bytesIn.incrementAndGet();
+            return value;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+            final int count = super.read(buffer, offset, length);
+            if (count > 0)
+                bytesIn.addAndGet(count);
+            return count;
+        }
+
+        @Override
+        public long skip(final long n) throws IOException {
+            final long count = super.skip(n);
+            if (count > 0)
+                bytesIn.addAndGet(count);
+            return count;
+        }
+    }
+}
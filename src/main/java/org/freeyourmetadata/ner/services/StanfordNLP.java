@@ -27,7 +27,9 @@ import static org.freeyourmetadata.util.UriUtil.createUri;
 public class StanfordNLP extends NERServiceBase implements NERService {
     private final static URI SERVICEBASEURL = createUri("http://localhost:9000");
     private final static URI DOCUMENTATIONURI = createUri("https://stanfordnlp.github.io/CoreNLP/ner.html");
-    private final static String[] SERVICESETTINGS = {"NLP Service URL"};
+    private final static String SERVICE_URL = "NLP Service URL";
+    private final static String EMBEDDED = "Embedded pipeline";
+    private final static String[] SERVICESETTINGS = {SERVICE_URL, EMBEDDED};
     private final static String[] EXTRACTIONSETTINGS = {"applyNumericClassifiers", "applyFineGrained", "pipelineLanguage"};
 
     /**
@@ -35,6 +37,7 @@ public class StanfordNLP extends NERServiceBase implements NERService {
      */
     public StanfordNLP() {
         super(SERVICEBASEURL, null, SERVICESETTINGS, EXTRACTIONSETTINGS);
+        setServiceSetting(EMBEDDED, "true");
         setExtractionSettingDefault("applyNumericClassifiers", "false");
         setExtractionSettingDefault("applyFineGrained", "true");
         setExtractionSettingDefault("pipelineLanguage", "default");
@@ -44,7 +47,31 @@ public class StanfordNLP extends NERServiceBase implements NERService {
      * {@inheritDoc}
      */
     public boolean isConfigured() {
-        return getServiceSetting("NLP Service URL").length() > 0;
+        return getEmbeddedPipelines() != null || getServiceSetting(SERVICE_URL).length() > 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamedEntity[] extractNamedEntities(final String text, final Map<String, String> settings) throws Exception {
+        // Annotate the text in this JVM if CoreNLP is available, avoiding HTTP and JSON overhead
+        final EmbeddedCoreNLP pipelines = getEmbeddedPipelines();
+        if (pipelines != null) {
+            return performLocalExtraction(text, () -> pipelines.extractNamedEntities(text,
+                    settings.get("pipelineLanguage"), Boolean.parseBoolean(settings.get("applyFineGrained")),
+                    Boolean.parseBoolean(settings.get("applyNumericClassifiers"))));
+        }
+        return super.extractNamedEntities(text, settings);
+    }
+
+    /**
+     * Gets the embedded CoreNLP pipelines, if enabled and available
+     *
+     * @return The embedded pipelines, or <tt>null</tt> if the CoreNLP server should be used
+     */
+    protected EmbeddedCoreNLP getEmbeddedPipelines() {
+        return Boolean.parseBoolean(getServiceSetting(EMBEDDED)) ? EmbeddedCoreNLP.getInstance() : null;
     }
 
     /**
@@ -99,7 +126,7 @@ public class StanfordNLP extends NERServiceBase implements NERService {
      */
     protected URI createExtractionRequestUrl(final String text, final Map<String, String> extractionSettings) {
         try {
-            URIBuilder builder = new URIBuilder(getServiceSetting("NLP Service URL"));
+            URIBuilder builder = new URIBuilder(getServiceSetting(SERVICE_URL));
             builder.addParameter("properties", "{\"annotators\":\"ner\","
                     + "\"ner.applyNumericClassifiers\":\""
                     + extractionSettings.get("applyNumericClassifiers") + "\","
@@ -109,7 +136,7 @@ public class StanfordNLP extends NERServiceBase implements NERService {
 
             return builder.build();
         } catch (java.net.URISyntaxException e) {
-            return createUri(getServiceSetting("NLP Service URL"));
+            return createUri(getServiceSetting(SERVICE_URL));
         }
     }
 
@@ -14,6 +14,10 @@ function init() {
   logger.info("Initializing commands, changes, and operations");
   refineServlet.registerCommand(module, "services", new commands.ServicesCommand(serviceManager));
   refineServlet.registerCommand(module, "extractions", new commands.ExtractionCommand(serviceManager));
+  refineServlet.registerCommand(module, "metrics", new commands.MetricsCommand(serviceManager));
+  refineServlet.registerCommand(module, "reports", new commands.ReportsCommand());
+  refineServlet.registerCommand(module, "journals", new commands.JournalCommand());
+  refineServlet.registerCommand(module, "gazetteers", new commands.GazetteerCommand());
   refineServlet.cacheClass(Packages.org.freeyourmetadata.ner.operations.NERChange);
   operationRegistry.registerOperation(module, "ner", Packages.org.freeyourmetadata.ner.operations.NEROperation);
 
@@ -27,6 +31,7 @@ function init() {
       "dialogs/about.js",
       "dialogs/configuration.js",
       "dialogs/extraction.js",
+      "dialogs/report.js",
       "scripts/menus.js",
     ]
   );
@@ -38,6 +43,7 @@ function init() {
       "dialogs/about.less",
       "dialogs/configuration.less",
       "dialogs/extraction.less",
+      "dialogs/report.less",
     ]
   );
 }
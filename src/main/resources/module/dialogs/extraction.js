@@ -18,6 +18,16 @@ ExtractionDialog.prototype = {
       self.extract(Object.keys(selectedServices).filter(function (s) { return selectedServices[s]; }));
     });
     
+    /* Offer to resume an interrupted extraction on this column */
+    $(controls.resume).hide();
+    $.getJSON(NERExtension.journalsPath, { project: theProject.id, column: this.column.name }, function (journal) {
+      if (journal.services) {
+        $(controls.resumeServices).text(journal.services.join(', '));
+        $(controls.resumeRows).text(journal.rows);
+        $(controls.resume).show();
+      }
+    });
+    
     /* Load service checkboxes */
     $.getJSON(NERExtension.servicesPath, function (services) {
       var $services = $(controls.services);
@@ -81,7 +91,13 @@ ExtractionDialog.prototype = {
   },
   
   extract: function (services) {
-    var data = { column: this.column.name, services: services };
+    var data = {
+      column: this.column.name,
+      services: services,
+      mode: $('select[name=mode]', this.dialogElement).val(),
+      resume: $('input[name=resume]', this.dialogElement).is(':checked'),
+      incremental: $('input[name=incremental]', this.dialogElement).is(':checked'),
+    };
 
     $('.dialog-frame.ner-extraction .settings input').each(function () {
       data[$(this).attr('name')] = $(this).val();
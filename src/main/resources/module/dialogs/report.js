@@ -0,0 +1,66 @@
+function ReportDialog() {}
+
+ReportDialog.prototype = {
+  init: function (callback) {
+    var self = this;
+    this.dialogElement = $(DOM.loadHTML("named-entity-recognition", "dialogs/report.html"));
+    var controls = DOM.bind(this.dialogElement);
+    controls.close.click(this.bound("hide"));
+    
+    /* Load the reports of the runs */
+    $.getJSON(NERExtension.reportsPath, { project: theProject.id }, function (entries) {
+      if (entries.length)
+        controls.empty.hide();
+      entries.forEach(function (entry) {
+        controls.reports.append(self.renderReport(entry));
+      });
+      callback.apply(self);
+    });
+  },
+  
+  renderReport: function (entry) {
+    var report = entry.report,
+        $report = $('<div/>', { 'class': 'report' }),
+        summary = report.rows + ' rows (' + report.uniqueTexts + ' unique texts) in ' +
+                  formatMillis(report.wallTime);
+    /* Older reports do not count the rows with earlier results */
+    var reusedRows = (report.reusedRows || 0) + (report.resumedRows || 0);
+    if (reusedRows)
+      summary += ', ' + (report.reusedRows || 0) + ' reused and ' + (report.resumedRows || 0) + ' resumed rows (' +
+                 (100 * reusedRows / report.rows).toFixed(0) + '% cache hits)';
+    if (report.applyTime >= 0)
+      summary += ', applied in ' + formatMillis(report.applyTime);
+    $report.append($('<h3/>', { text: entry.description }),
+                   $('<p/>', { text: summary }));
+    
+    var $table = $('<table/>').appendTo($report);
+    $table.append($('<tr/>').append(['Service', 'Requests', 'Errors', 'Timeouts',
+                                     'p50', 'p95', 'p99'].map(function (header) {
+      return $('<th/>', { text: header });
+    })));
+    Object.keys(report.services).forEach(function (name) {
+      var service = report.services[name];
+      $table.append($('<tr/>').append([name, service.requests, service.errors, service.timeouts,
+                                       service.latency.p50.toFixed(1) + ' ms',
+                                       service.latency.p95.toFixed(1) + ' ms',
+                                       service.latency.p99.toFixed(1) + ' ms'].map(function (value) {
+        return $('<td/>', { text: value });
+      })));
+    });
+    return $report;
+    
+    function formatMillis(millis) {
+      return (millis / 1000).toFixed(1) + ' s';
+    }
+  },
+  
+  show: function () {
+    this.init(function () {
+      this.dialogLevel = DialogSystem.showDialog(this.dialogElement);
+    });
+  },
+  
+  hide: function () {
+    DialogSystem.dismissUntil(this.dialogLevel - 1);
+  },
+};
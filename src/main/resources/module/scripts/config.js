@@ -2,6 +2,9 @@
 var NERExtension = {};
 NERExtension.commandPath = "/command/named-entity-recognition/";
 NERExtension.servicesPath = NERExtension.commandPath + "services";
+NERExtension.gazetteersPath = NERExtension.commandPath + "gazetteers";
+NERExtension.reportsPath = NERExtension.commandPath + "reports";
+NERExtension.journalsPath = NERExtension.commandPath + "journals";
 
 // Register a dummy reconciliation service that will be used to display named entities
 ReconciliationManager.registerService({
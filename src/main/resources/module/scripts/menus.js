@@ -8,6 +8,11 @@ ExtensionBar.addExtensionMenu({
       label: "Configure services...",
       click: dialogHandler(ConfigurationDialog),
     },
+    {
+      id   : "named-entity-recognition/reports",
+      label: "Performance reports...",
+      click: dialogHandler(ReportDialog),
+    },
     { /* separator */ },
     {
       id   : "named-entity-recognition/about",
@@ -26,9 +31,26 @@ DataTableColumnHeaderUI.extendMenu(function (column, columnHeaderUI, menu) {
       label: "Extract named entities...",
       click: dialogHandler(ExtractionDialog, column),
     },
+    {
+      id: "named-entity-recognition/gazetteer",
+      label: "Compile gazetteer from reconciled values",
+      click: function () { compileGazetteer(column); },
+    },
   ]);
 });
 
+/* Compile the matched values of the column into a gazetteer for the Gazetteer service */
+function compileGazetteer(column) {
+  var parameters = { project: theProject.id, column: column.name };
+  Refine.postCSRF(NERExtension.gazetteersPath + "?" + $.param(parameters), {}, function (result) {
+    if (result.code === "error")
+      alert(result.message);
+    else
+      alert("Compiled " + result.forms + " surface forms of " + result.entities + " entities into " +
+            result.file + ". Set it as the file of the Gazetteer service to use it.");
+  }, "json");
+}
+
 function dialogHandler(dialogConstructor) {
   var dialogArguments = Array.prototype.slice.call(arguments, 1);
   function Dialog() { return dialogConstructor.apply(this, dialogArguments); }
@@ -0,0 +1,52 @@
+package org.freeyourmetadata.ner.commands;
+
+import static org.testng.Assert.assertEquals;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.freeyourmetadata.ner.services.Disambiguation;
+import org.freeyourmetadata.ner.services.GazetteerAutomaton;
+import org.testng.annotations.Test;
+
+import com.google.refine.model.Cell;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.ReconCandidate;
+import com.google.refine.model.Row;
+
+public class GazetteerCommandTest {
+
+    private static Row createRow(String value, String id, String name) {
+        Row row = new Row(2);
+        Recon recon = null;
+        if (id != null) {
+            recon = new Recon(0, "http://www.wikidata.org/entity/", "http://www.wikidata.org/prop/direct/");
+            recon.match = new ReconCandidate(id, name, new String[0], 100);
+            recon.judgment = Recon.Judgment.Matched;
+        }
+        row.setCell(1, new Cell(value, recon));
+        return row;
+    }
+
+    @Test
+    public void testCompileGazetteer() throws URISyntaxException {
+        Project project = new Project();
+        project.rows.add(createRow("Lowell", "Q49162", "Lowell"));
+        project.rows.add(createRow("MA", "Q771", "Massachusetts"));
+        project.rows.add(createRow("MA ", "Q771", "Massachusetts"));
+        project.rows.add(createRow("MA", "Q1456", "Morocco"));
+        project.rows.add(createRow("USA", null, null));
+        project.rows.add(new Row(0));
+
+        GazetteerAutomaton automaton = GazetteerCommand.compileGazetteer(project, 1, false);
+
+        assertEquals(automaton.getFormCount(), 2);
+        assertEquals(automaton.getEntityCount(), 3);
+        assertEquals(automaton.findMatches("Lowell, MA 01852, USA"), new int[]{0, 6, 0, 8, 10, 1});
+        assertEquals(automaton.getDisambiguations(1, 0), new Disambiguation[]{
+                new Disambiguation("Massachusetts", new URI("http://www.wikidata.org/entity/Q771"), 2.0 / 3),
+                new Disambiguation("Morocco", new URI("http://www.wikidata.org/entity/Q1456"), 1.0 / 3),
+        });
+    }
+}
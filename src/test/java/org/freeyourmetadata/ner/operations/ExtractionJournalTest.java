@@ -0,0 +1,174 @@
+package org.freeyourmetadata.ner.operations;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+import org.freeyourmetadata.ner.services.ExtractionResult;
+import org.freeyourmetadata.ner.services.NamedEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+public class ExtractionJournalTest {
+
+    String[] services = {"A", "B"};
+    long[] settings = {1, 2};
+    File file;
+    NamedEntity lowell;
+
+    @BeforeMethod
+    public void setUp() throws IOException, URISyntaxException {
+        file = File.createTempFile("journal", ".jsonl");
+        file.delete();
+        lowell = new NamedEntity("Lowell", new URI("http://www.wikidata.org/entity/Q49162"));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void testResume() throws IOException {
+        writeJournal();
+
+        ExtractionJournal journal = open(services, settings, true);
+        journal.close();
+        assertEquals(journal.getResumedRowCount(), 2);
+        ExtractionResult[] results = journal.getResumedResults(0, 10);
+        assertEquals(results.length, 2);
+        assertEquals(results[0].getNamedEntities(), new NamedEntity[]{lowell});
+        assertEquals(results[1].getNamedEntities().length, 0);
+
+        // Rows whose text changed or that were not journaled have no results
+        assertNull(journal.getResumedResults(0, 11));
+        assertNull(journal.getResumedResults(2, 10));
+    }
+
+    @Test
+    public void testNoResume() throws IOException {
+        writeJournal();
+
+        ExtractionJournal journal = open(services, settings, false);
+        journal.close();
+        assertEquals(journal.getResumedRowCount(), 0);
+        // The journal starts over
+        assertEquals(ExtractionJournal.readSummary(file).get("rows").asInt(), 0);
+    }
+
+    @Test
+    public void testServicesMismatch() throws IOException {
+        writeJournal();
+
+        ExtractionJournal journal = open(new String[]{"A", "C"}, settings, true);
+        journal.close();
+        assertEquals(journal.getResumedRowCount(), 0);
+        assertNull(journal.getResumedResults(0, 10));
+
+        // The journal was restarted with the header of the new services
+        ObjectNode summary = ExtractionJournal.readSummary(file);
+        assertEquals(summary.get("services").get(1).asText(), "C");
+        assertEquals(summary.get("rows").asInt(), 0);
+    }
+
+    @Test
+    public void testSettingsMismatch() throws IOException {
+        writeJournal();
+
+        ExtractionJournal journal = open(services, new long[]{1, 3}, true);
+        journal.close();
+        assertEquals(journal.getResumedRowCount(), 0);
+        assertEquals(ExtractionJournal.readSummary(file).get("settings").get(1).asLong(), 3);
+    }
+
+    @Test
+    public void testPartiallyWrittenLine() throws IOException {
+        writeJournal();
+        // An interruption in the middle of a row leaves a line without its end
+        Files.write(file.toPath(), "{\"row\":5,\"hash\":50,\"results\":[[{\"extractedText\":\"Lo".getBytes(
+                StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        assertEquals(ExtractionJournal.readSummary(file).get("rows").asInt(), 2);
+
+        ExtractionJournal journal = open(services, settings, true);
+        assertEquals(journal.getResumedRowCount(), 2);
+        assertNull(journal.getResumedResults(5, 50));
+
+        // Rows appended after resuming start on a new line
+        journal.append(5, 50, new ExtractionResult[]{
+                new ExtractionResult(new NamedEntity[]{lowell}), new ExtractionResult(new NamedEntity[0])});
+        journal.close();
+        assertEquals(ExtractionJournal.readSummary(file).get("rows").asInt(), 3);
+        journal = open(services, settings, true);
+        journal.close();
+        assertEquals(journal.getResumedResults(5, 50)[0].getNamedEntities(), new NamedEntity[]{lowell});
+    }
+
+    @Test
+    public void testFailedRows() throws IOException {
+        writeJournal();
+
+        ExtractionJournal journal = open(services, settings, true);
+        ExtractionResult[] results = journal.getResumedResults(1, 20);
+        assertFalse(results[0].hasError());
+        assertTrue(results[1].hasError());
+        assertEquals(results[1].getExtractionError().message, "Service unavailable");
+
+        // A retried row replaces the failed results when the journal is read again
+        journal.append(1, 20, new ExtractionResult[]{results[0], new ExtractionResult(new NamedEntity[]{lowell})});
+        journal.close();
+        assertEquals(ExtractionJournal.readSummary(file).get("rows").asInt(), 2);
+        journal = open(services, settings, true);
+        journal.close();
+        assertFalse(journal.getResumedResults(1, 20)[1].hasError());
+    }
+
+    @Test
+    public void testDelete() throws IOException {
+        ExtractionJournal journal = open(services, settings, false);
+        journal.append(0, 10, new ExtractionResult[]{
+                new ExtractionResult(new NamedEntity[0]), new ExtractionResult(new NamedEntity[0])});
+        journal.checkpoint();
+        assertNotNull(ExtractionJournal.readSummary(file));
+
+        journal.delete();
+        assertFalse(file.exists());
+        assertNull(ExtractionJournal.readSummary(file));
+    }
+
+    @Test
+    public void testHashText() {
+        assertEquals(ExtractionJournal.hashText(""), 0xcbf29ce484222325L);
+        assertEquals(ExtractionJournal.hashText("a"), 0xaf63dc4c8601ec8cL);
+        assertFalse(ExtractionJournal.hashText("Lowell, MA") == ExtractionJournal.hashText("Boston, MA"));
+    }
+
+    /**
+     * Journals a successful row and a row on which the second service failed
+     */
+    void writeJournal() throws IOException {
+        ExtractionJournal journal = open(services, settings, false);
+        journal.append(0, 10, new ExtractionResult[]{
+                new ExtractionResult(new NamedEntity[]{lowell}), new ExtractionResult(new NamedEntity[0])});
+        journal.append(1, 20, new ExtractionResult[]{
+                new ExtractionResult(new NamedEntity[]{lowell}),
+                new ExtractionResult(new IOException("Service unavailable"))});
+        journal.close();
+    }
+
+    ExtractionJournal open(String[] services, long[] settings, boolean resume) throws IOException {
+        return new ExtractionJournal(file, 1, "Text", services, settings, resume);
+    }
+}
@@ -0,0 +1,234 @@
+package org.freeyourmetadata.ner.operations;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.Properties;
+
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
+import org.freeyourmetadata.ner.services.ExtractionResult;
+import org.freeyourmetadata.ner.services.NamedEntity;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.expr.EvalError;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Recon;
+import com.google.refine.model.Row;
+
+public class NERChangeTest {
+
+    Project project;
+    NERChange change;
+
+    @BeforeMethod
+    public void setUp() throws URISyntaxException {
+        StubProjectManager.install();
+        project = new Project();
+        project.columnModel.columns.add(new Column(project.columnModel.allocateNewCellIndex(), "Text"));
+        for (String text : new String[]{"Boston and Lowell", "Boston", "Lowell"}) {
+            Row row = new Row(1);
+            row.cells.add(new Cell(text, null));
+            project.rows.add(row);
+        }
+        project.update();
+
+        // Both services find the same entities, which occur in several rows
+        NamedEntity boston = new NamedEntity("Boston", new URI("http://www.wikidata.org/entity/Q100"));
+        NamedEntity lowell = new NamedEntity("Lowell", new URI("http://www.wikidata.org/entity/Q49162"));
+        change = new NERChange(1, new String[]{"A", "B"}, new ExtractionResult[][]{
+                {new ExtractionResult(new NamedEntity[]{boston, lowell}), new ExtractionResult(new NamedEntity[]{boston})},
+                {new ExtractionResult(new NamedEntity[]{boston}), new ExtractionResult(new NamedEntity[]{boston})},
+                {new ExtractionResult(new NamedEntity[]{lowell}), new ExtractionResult(new NamedEntity[0])},
+        });
+    }
+
+    @Test
+    public void testApplySharesRecons() {
+        change.apply(project);
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testApplyPreparedSharesRecons() {
+        change.prepare(project);
+        change.apply(project);
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testApplyPreparedAfterEdit() {
+        change.prepare(project);
+        project.rows.get(1).setCell(0, new Cell("Cambridge", null));
+        change.apply(project);
+
+        // The rows are rebuilt, so the edit is kept
+        assertEquals(project.rows.size(), 4);
+        assertEquals(project.rows.get(2).getCellValue(0), "Cambridge");
+        assertEquals(change.getAddedRowIds(), Collections.singletonList(1));
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testApplyPreparedAfterAddingRow() {
+        change.prepare(project);
+        Row added = new Row(1);
+        added.cells.add(new Cell("Worcester", null));
+        project.rows.add(added);
+        change.apply(project);
+
+        // Rows beyond the extraction results are kept as they are
+        assertEquals(project.rows.size(), 5);
+        assertSame(project.rows.get(4), added);
+        assertEquals(change.getAddedRowIds(), Collections.singletonList(1));
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testApplyPreparedAfterRemovingRow() {
+        change.prepare(project);
+        project.rows.remove(0);
+        change.apply(project);
+
+        // The results are placed on the remaining rows by position
+        assertEquals(project.rows.size(), 3);
+        assertEquals(project.rows.get(0).getCellValue(0), "Boston");
+        assertNull(project.rows.get(1).getCell(0));
+        assertEquals(project.rows.get(2).getCellValue(0), "Lowell");
+        assertEquals(change.getAddedRowIds(), Collections.singletonList(1));
+        assertEquals(getRecon(1, "A").match.id, "http://www.wikidata.org/entity/Q49162");
+    }
+
+    @Test
+    public void testApplyPreparedAfterFlagAndStar() {
+        change.prepare(project);
+        project.rows.get(0).flagged = true;
+        project.rows.get(1).starred = true;
+        change.apply(project);
+
+        assertEquals(project.rows.size(), 4);
+        assertTrue(project.rows.get(0).flagged);
+        assertFalse(project.rows.get(0).starred);
+        assertTrue(project.rows.get(2).starred);
+        assertFalse(project.rows.get(1).flagged);
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testRevertPreparedApply() {
+        change.prepare(project);
+        change.apply(project);
+        change.revert(project);
+
+        assertEquals(project.rows.size(), 3);
+        assertEquals(project.columnModel.columns.size(), 1);
+        assertEquals(change.getAddedRowIds(), Collections.emptyList());
+        assertEquals(project.rows.get(0).getCellValue(0), "Boston and Lowell");
+        assertEquals(project.rows.get(1).getCellValue(0), "Boston");
+        assertEquals(project.rows.get(2).getCellValue(0), "Lowell");
+
+        // Applying again after the revert builds the rows anew
+        change.apply(project);
+        assertEquals(change.getAddedRowIds(), Collections.singletonList(1));
+        assertSharedRecons();
+    }
+
+    @Test
+    public void testAggregatedCells() throws Exception {
+        NamedEntity boston = new NamedEntity("Boston", new URI("http://www.wikidata.org/entity/Q100"), 0.4);
+        NamedEntity lowell = new NamedEntity("Lowell", new URI("http://www.wikidata.org/entity/Q49162"), 0.9);
+        NERChange cells = new NERChange(1, new String[]{"A", "B"}, CompactExtractionResults.fromArray(2,
+                new ExtractionResult[][]{
+                        {new ExtractionResult(new NamedEntity[]{boston, lowell}),
+                                new ExtractionResult(new IOException("Service unavailable"))},
+                        {new ExtractionResult(new NamedEntity[]{boston}), new ExtractionResult(new NamedEntity[]{boston})},
+                        {new ExtractionResult(new NamedEntity[0]), new ExtractionResult(new NamedEntity[0])},
+                }), NERChange.OutputMode.CELLS);
+        cells.apply(project);
+        assertAggregatedCells();
+        cells.revert(project);
+        assertEquals(project.rows.size(), 3);
+        assertEquals(project.columnModel.columns.size(), 1);
+
+        // The output mode is saved with the change
+        Writer saved = new StringWriter();
+        cells.save(saved, new Properties());
+        NERChange loaded = (NERChange) NERChange.load(new LineNumberReader(new StringReader(saved.toString())), null);
+        loaded.apply(project);
+        assertAggregatedCells();
+    }
+
+    void assertAggregatedCells() {
+        // All entities of a row are in one cell, so no rows are added
+        assertEquals(project.rows.size(), 3);
+        Cell all = project.rows.get(0).getCell(getCellIndex("A"));
+        assertEquals(all.value, "[\"Boston\",\"Lowell\"]");
+        // The cell is reconciled to the best-scoring entity
+        assertEquals(all.recon.match.id, "http://www.wikidata.org/entity/Q49162");
+        assertEquals(getRecon(1, "A").match.id, "http://www.wikidata.org/entity/Q100");
+        assertNotSame(getRecon(1, "B"), getRecon(1, "A"));
+
+        // Errors are placed in the cell of their service
+        assertTrue(project.rows.get(0).getCellValue(getCellIndex("B")) instanceof EvalError);
+        assertEquals(((EvalError) project.rows.get(0).getCellValue(getCellIndex("B"))).message, "Service unavailable");
+        // Rows without entities get no cells
+        assertNull(project.rows.get(2).getCell(getCellIndex("A")));
+        assertNull(project.rows.get(2).getCell(getCellIndex("B")));
+    }
+
+    @Test
+    public void testParseOutputMode() {
+        assertEquals(NERChange.OutputMode.parse("cells"), NERChange.OutputMode.CELLS);
+        assertEquals(NERChange.OutputMode.parse("ROWS"), NERChange.OutputMode.ROWS);
+        assertEquals(NERChange.OutputMode.parse(null), NERChange.OutputMode.ROWS);
+        assertEquals(NERChange.OutputMode.parse(""), NERChange.OutputMode.ROWS);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testParseInvalidOutputMode() {
+        NERChange.OutputMode.parse("columns");
+    }
+
+    void assertSharedRecons() {
+        // The second entity of the first row is placed on an added row
+        assertEquals(project.rows.size(), 4);
+        Recon bostonA = getRecon(0, "A");
+        Recon lowellA = getRecon(1, "A");
+        Recon bostonB = getRecon(0, "B");
+        assertNotNull(bostonA);
+        assertEquals(bostonA.match.id, "http://www.wikidata.org/entity/Q100");
+
+        // Repeated entities share one reconciliation value per service
+        assertSame(getRecon(2, "A"), bostonA);
+        assertSame(getRecon(3, "A"), lowellA);
+        assertSame(getRecon(2, "B"), bostonB);
+        assertNotSame(lowellA, bostonA);
+        assertNull(project.rows.get(3).getCell(getCellIndex("B")));
+
+        // Different services do not share reconciliation values
+        assertNotSame(bostonB, bostonA);
+    }
+
+    Recon getRecon(int row, String column) {
+        return project.rows.get(row).getCell(getCellIndex(column)).recon;
+    }
+
+    int getCellIndex(String column) {
+        return project.columnModel.getColumnByName(column).getCellIndex();
+    }
+}
@@ -0,0 +1,268 @@
+package org.freeyourmetadata.ner.operations;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import org.freeyourmetadata.ner.services.CompactExtractionResults;
+import org.freeyourmetadata.ner.services.ExtractionResult;
+import org.freeyourmetadata.ner.services.NERService;
+import org.freeyourmetadata.ner.services.NERServiceBase;
+import org.freeyourmetadata.ner.services.NamedEntity;
+import org.freeyourmetadata.ner.services.StubNERServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.refine.browsing.EngineConfig;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.Cell;
+import com.google.refine.model.Column;
+import com.google.refine.model.Project;
+import com.google.refine.model.Row;
+
+public class NERProcessTest {
+
+    StubNERServer server;
+    Project project;
+    Column column;
+    TreeMap<String, NERService> services;
+    Map<String, Map<String, String>> settings;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        server = new StubNERServer(1).start();
+        project = new Project();
+        column = new Column(project.columnModel.allocateNewCellIndex(), "Text");
+        project.columnModel.columns.add(column);
+        for (String text : new String[]{"Lowell, MA", "Boston, MA", "", "Lowell, MA"}) {
+            Row row = new Row(1);
+            row.cells.add(new Cell(text, null));
+            project.rows.add(row);
+        }
+        project.update();
+
+        NERService service = server.createService(StubNERServer.Format.SPOTLIGHT);
+        services = new TreeMap<>(Collections.singletonMap("Spotlight", service));
+        settings = Collections.singletonMap("Spotlight", NERServiceBase.getExtractionSettingDefaults(service));
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        server.close();
+        StubProjectManager.install().setHistoryEntryManager(new StubProjectManager.MemoryHistoryEntryManager());
+        ExtractionJournal.getFile(project.id, column.getName()).delete();
+    }
+
+    @Test
+    public void testIncrementalAfterReload() throws Exception {
+        // Extract all rows and save the change, as when the project is closed
+        TestProcess first = new TestProcess(false, Collections.emptyList(), null);
+        CompactExtractionResults firstResults = first.performExtraction();
+        first.closeJournal();
+        NERChange change = new NERChange(1, new String[]{"Spotlight"}, firstResults, NERChange.OutputMode.ROWS,
+                first.getReport(), first.getTextHashes(), first.getSettingsHashes());
+        Writer saved = new StringWriter();
+        change.save(saved, new Properties());
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 3);
+        assertEquals(first.getReport().getUniqueTexts(), 2);
+
+        // After reopening the project, the history entry has no change until it is loaded
+        HistoryEntryManager manager = new SavedChangeManager(saved.toString());
+        StubProjectManager.install().setHistoryEntryManager(manager);
+        HistoryEntry entry = new HistoryEntry(1, project, "Recognize named entities", createOperation(false), null);
+        assertNull(entry.getChange());
+
+        // Only the changed text should be sent again
+        project.rows.get(1).setCell(column.getCellIndex(), new Cell("Cambridge, MA", null));
+        TestProcess second = new TestProcess(true, Collections.singletonList(entry), manager);
+        CompactExtractionResults secondResults = second.performExtraction();
+        second.closeJournal();
+
+        assertNotNull(entry.getChange());
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 4);
+        assertEquals(secondResults.getRowCount(), 4);
+        assertEquals(secondResults.getEntityCount(0, 0), firstResults.getEntityCount(0, 0));
+        assertEquals(secondResults.getNamedEntity(0, 0, 0), firstResults.getNamedEntity(0, 0, 0));
+        assertEquals(secondResults.getNamedEntity(3, 0, 0), firstResults.getNamedEntity(3, 0, 0));
+        assertEquals(secondResults.getEntityCount(2, 0), 0);
+        assertEquals(second.getReport().getRowsReused(), 2);
+        assertEquals(second.getReport().getRowsResumed(), 0);
+        assertEquals(second.getReport().getReuseRatio(), 0.5);
+
+        // The counts are saved with the change
+        Writer resaved = new StringWriter();
+        new NERChange(1, new String[]{"Spotlight"}, secondResults, NERChange.OutputMode.ROWS, second.getReport(),
+                second.getTextHashes(), second.getSettingsHashes()).save(resaved, new Properties());
+        RunReport loaded = ((NERChange) NERChange.load(new LineNumberReader(new StringReader(resaved.toString())),
+                null)).getReport();
+        assertEquals(loaded.getRowsReused(), 2);
+        assertEquals(loaded.getSummary(), second.getReport().getSummary());
+    }
+
+    @Test
+    public void testNoReuseAfterSettingsChange() throws Exception {
+        TestProcess first = new TestProcess(false, Collections.emptyList(), null);
+        CompactExtractionResults firstResults = first.performExtraction();
+        first.closeJournal();
+        NERChange change = new NERChange(1, new String[]{"Spotlight"}, firstResults, NERChange.OutputMode.ROWS,
+                first.getReport(), first.getTextHashes(), first.getSettingsHashes());
+        Writer saved = new StringWriter();
+        change.save(saved, new Properties());
+        HistoryEntryManager manager = new SavedChangeManager(saved.toString());
+        HistoryEntry entry = new HistoryEntry(1, project, "Recognize named entities", createOperation(false), null);
+
+        // The same settings yield the same hashes
+        assertEquals(new TestProcess(true, Collections.emptyList(), null).getSettingsHashes(),
+                first.getSettingsHashes());
+
+        // Results obtained with another confidence cannot be reused
+        settings.get("Spotlight").put("Confidence", "0.9");
+        TestProcess second = new TestProcess(true, Collections.singletonList(entry), manager);
+        assertNotEquals(second.getSettingsHashes()[0], first.getSettingsHashes()[0]);
+        assertNull(second.findPreviousExtraction());
+        second.performExtraction();
+        second.closeJournal();
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 6);
+    }
+
+    @Test
+    public void testResumeAfterCancel() throws Exception {
+        // Cancel the run as soon as the first row has been extracted
+        TestProcess first = new TestProcess(false, Collections.emptyList(), null) {
+            @Override
+            protected ExtractionResult[] performExtraction(String text, ExtractionResult[] previousResults) {
+                ExtractionResult[] results = super.performExtraction(text, previousResults);
+                cancel();
+                return results;
+            }
+        };
+        assertNull(first.performExtraction());
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 1);
+        assertEquals(ExtractionJournal.readSummary(ExtractionJournal.getFile(project.id, column.getName()))
+                .get("rows").asInt(), 1);
+
+        // Only the rows that were not extracted yet are sent when resuming
+        TestProcess second = new TestProcess(true, false, Collections.emptyList(), null);
+        CompactExtractionResults secondResults = second.performExtraction();
+        second.closeJournal();
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 3);
+        assertEquals(secondResults.getRowCount(), 4);
+        assertFalse(secondResults.hasError(3, 0));
+        assertEquals(second.getReport().getRowsResumed(), 1);
+        assertEquals(second.getReport().getRowsReused(), 0);
+    }
+
+    @Test
+    public void testResumeRetriesFailedRows() throws Exception {
+        // Journal a successful and a failed row, as an interrupted run would
+        TestProcess first = new TestProcess(false, Collections.emptyList(), null);
+        try (ExtractionJournal journal = new ExtractionJournal(ExtractionJournal.getFile(project.id, column.getName()),
+                project.id, column.getName(), new String[]{"Spotlight"}, first.getSettingsHashes(), false)) {
+            journal.append(0, ExtractionJournal.hashText("Lowell, MA"), new ExtractionResult[]{
+                    new ExtractionResult(new NamedEntity[]{new NamedEntity("Lowell")})});
+            journal.append(1, ExtractionJournal.hashText("Boston, MA"), new ExtractionResult[]{
+                    new ExtractionResult(new IOException("Service unavailable"))});
+        }
+
+        // The failed row and the missing row are sent again
+        TestProcess second = new TestProcess(true, false, Collections.emptyList(), null);
+        CompactExtractionResults secondResults = second.performExtraction();
+        second.closeJournal();
+        assertEquals(server.getRequestCount(StubNERServer.Format.SPOTLIGHT), 2);
+        assertEquals(secondResults.getNamedEntity(0, 0, 0).getExtractedText(), "Lowell");
+        assertFalse(secondResults.hasError(1, 0));
+        // Only rows whose journaled results were complete count as resumed
+        assertEquals(second.getReport().getRowsResumed(), 1);
+    }
+
+    @Test
+    public void testCountDistinctHashes() {
+        assertEquals(NERProcess.countDistinctHashes(new long[]{5, 0, -3, 5, 0, 7, -3}), 3);
+        assertEquals(NERProcess.countDistinctHashes(new long[]{0, 0}), 0);
+        assertEquals(NERProcess.countDistinctHashes(new long[0]), 0);
+    }
+
+    NEROperation createOperation(boolean incremental) throws Exception {
+        return new NEROperation(column, services, settings, NERChange.OutputMode.ROWS,
+                EngineConfig.reconstruct("{\"facets\":[],\"mode\":\"row-based\"}"), false, incremental);
+    }
+
+    /**
+     * Process with a fixed history, which loads changes through the given manager
+     */
+    class TestProcess extends NERProcess {
+        final List<HistoryEntry> pastEntries;
+        final HistoryEntryManager manager;
+
+        TestProcess(boolean incremental, List<HistoryEntry> pastEntries, HistoryEntryManager manager)
+                throws Exception {
+            this(false, incremental, pastEntries, manager);
+        }
+
+        TestProcess(boolean resume, boolean incremental, List<HistoryEntry> pastEntries, HistoryEntryManager manager)
+                throws Exception {
+            super(project, column, services, settings, NERChange.OutputMode.ROWS, createOperation(incremental),
+                    "Recognize named entities", EngineConfig.reconstruct("{\"facets\":[],\"mode\":\"row-based\"}"),
+                    resume, incremental);
+            this.pastEntries = pastEntries;
+            this.manager = manager;
+        }
+
+        @Override
+        protected List<HistoryEntry> getPastHistoryEntries() {
+            return pastEntries;
+        }
+
+        @Override
+        protected HistoryEntryManager getHistoryEntryManager() {
+            return manager;
+        }
+    }
+
+    /**
+     * History entry manager that loads a change from its saved form, as the project manager does on reopening
+     */
+    static class SavedChangeManager implements HistoryEntryManager {
+        final String savedChange;
+
+        SavedChangeManager(String savedChange) {
+            this.savedChange = savedChange;
+        }
+
+        @Override
+        public void loadChange(HistoryEntry historyEntry) {
+            try {
+                historyEntry.setChange(NERChange.load(new LineNumberReader(new StringReader(savedChange)), null));
+            } catch (Exception error) {
+                throw new RuntimeException(error);
+            }
+        }
+
+        @Override
+        public void saveChange(HistoryEntry historyEntry) {
+        }
+
+        @Override
+        public void save(HistoryEntry historyEntry, Writer writer, Properties options) {
+        }
+
+        @Override
+        public void delete(HistoryEntry historyEntry) {
+        }
+    }
+}
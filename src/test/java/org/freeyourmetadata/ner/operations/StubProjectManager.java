@@ -0,0 +1,114 @@
+package org.freeyourmetadata.ner.operations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.Properties;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+
+import com.google.refine.ProjectManager;
+import com.google.refine.ProjectMetadata;
+import com.google.refine.history.HistoryEntry;
+import com.google.refine.history.HistoryEntryManager;
+import com.google.refine.model.Project;
+
+/**
+ * Project manager without a workspace, which keeps projects and their changes in memory only,
+ * so that processes can add history entries outside of OpenRefine
+ */
+public class StubProjectManager extends ProjectManager {
+    private HistoryEntryManager historyEntryManager = new MemoryHistoryEntryManager();
+
+    /**
+     * Installs a stub as the project manager, unless one is installed already
+     *
+     * @return The installed stub
+     */
+    public static synchronized StubProjectManager install() {
+        if (!(singleton instanceof StubProjectManager))
+            singleton = new StubProjectManager();
+        return (StubProjectManager) singleton;
+    }
+
+    /**
+     * Registers a project, so that history entries can be added to it
+     *
+     * @param project The project
+     * @return This project manager
+     */
+    public StubProjectManager register(final Project project) {
+        registerProject(project, new ProjectMetadata());
+        return this;
+    }
+
+    /**
+     * Sets the manager that saves and loads the changes of history entries
+     *
+     * @param historyEntryManager The history entry manager
+     */
+    public void setHistoryEntryManager(final HistoryEntryManager historyEntryManager) {
+        this.historyEntryManager = historyEntryManager;
+    }
+
+    @Override
+    public HistoryEntryManager getHistoryEntryManager() {
+        return historyEntryManager;
+    }
+
+    @Override
+    public boolean loadProjectMetadata(final long projectID) {
+        return false;
+    }
+
+    @Override
+    public void importProject(final long projectID, final InputStream inputStream, final boolean gziped)
+            throws IOException {
+    }
+
+    @Override
+    public void exportProject(final long projectId, final TarArchiveOutputStream tos) throws IOException {
+    }
+
+    @Override
+    public void saveMetadata(final ProjectMetadata metadata, final long projectId) throws Exception {
+    }
+
+    @Override
+    public void saveProject(final Project project) throws IOException {
+    }
+
+    @Override
+    protected Project loadProject(final long id) {
+        return null;
+    }
+
+    @Override
+    protected void saveWorkspace() {
+    }
+
+    @Override
+    public void deleteProject(final long projectID) {
+    }
+
+    /**
+     * History entry manager that keeps changes in memory instead of saving them
+     */
+    static class MemoryHistoryEntryManager implements HistoryEntryManager {
+        @Override
+        public void loadChange(final HistoryEntry historyEntry) {
+        }
+
+        @Override
+        public void saveChange(final HistoryEntry historyEntry) {
+        }
+
+        @Override
+        public void save(final HistoryEntry historyEntry, final Writer writer, final Properties options) {
+        }
+
+        @Override
+        public void delete(final HistoryEntry historyEntry) {
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CascadeNERTest {
+
+    Map<String, NERService> services;
+    CascadeNER cascade;
+
+    @BeforeMethod
+    public void setUpServices() throws URISyntaxException {
+        services = new HashMap<>();
+        services.put("Cheap", new FixedService(new Disambiguation("Paris", new URI("http://example.org/cheap"), 0.3)));
+        services.put("Expensive", new FixedService(new Disambiguation("Paris", new URI("http://example.org/expensive"), 0.9)));
+        services.put("Failing", new FixedService(null));
+        cascade = new CascadeNER() {
+            @Override
+            protected NERService getService(String name) {
+                return services.get(name);
+            }
+        };
+        services.put("Cascade", cascade);
+        cascade.setServiceSetting("Services", "Cheap, Unknown, Cascade, Expensive");
+    }
+
+    @Test
+    public void testStageNames() {
+        List<String> stageNames = cascade.getStageNames();
+        assertEquals(stageNames.size(), 2);
+        assertEquals(stageNames.get(0), "Cheap");
+        assertEquals(stageNames.get(1), "Expensive");
+        assertTrue(cascade.isConfigured());
+    }
+
+    @Test
+    public void testFirstStageResolves() throws Exception {
+        NamedEntity[] entities = cascade.extractNamedEntities("Paris", Collections.singletonMap("Minimum score", "0.2"));
+        assertEquals(entities[0].getDisambiguations()[0].getUri().toString(), "http://example.org/cheap");
+        assertEquals(((FixedService) services.get("Expensive")).calls.get(), 0);
+        assertEquals(cascade.getResolvedCounts(), Collections.singletonMap("Cheap", 1L));
+    }
+
+    @Test
+    public void testNextStageResolves() throws Exception {
+        NamedEntity[] entities = cascade.extractNamedEntities("Paris", Collections.singletonMap("Minimum score", "0.5"));
+        assertEquals(entities[0].getDisambiguations()[0].getUri().toString(), "http://example.org/expensive");
+        assertEquals(((FixedService) services.get("Cheap")).calls.get(), 1);
+        assertEquals(cascade.getResolvedCounts(), Collections.singletonMap("Expensive", 1L));
+    }
+
+    @Test
+    public void testUnresolved() throws Exception {
+        NamedEntity[] entities = cascade.extractNamedEntities("Paris", Collections.singletonMap("Minimum score", "1"));
+        assertEquals(entities[0].getDisambiguations()[0].getUri().toString(), "http://example.org/expensive");
+        assertEquals(cascade.getResolvedCounts(), Collections.singletonMap("(unresolved)", 1L));
+    }
+
+    @Test
+    public void testFailingStage() throws Exception {
+        cascade.setServiceSetting("Services", "Failing, Expensive");
+        NamedEntity[] entities = cascade.extractNamedEntities("Paris", Collections.singletonMap("Minimum score", "0.5"));
+        assertEquals(entities.length, 1);
+
+        cascade.setServiceSetting("Services", "Failing");
+        try {
+            cascade.extractNamedEntities("Paris", Collections.emptyMap());
+            assertTrue(false);
+        } catch (Exception error) {
+            assertEquals(error.getMessage(), "Service unavailable");
+        }
+    }
+
+    @Test
+    public void testNotConfigured() {
+        cascade.setServiceSetting("Services", "Unknown");
+        assertFalse(cascade.isConfigured());
+    }
+
+    static class FixedService extends NERServiceBase {
+        final Disambiguation disambiguation;
+        final AtomicInteger calls = new AtomicInteger();
+
+        FixedService(Disambiguation disambiguation) {
+            super(null, null, new String[0], new String[0]);
+            this.disambiguation = disambiguation;
+        }
+
+        @Override
+        public NamedEntity[] extractNamedEntities(String text, Map<String, String> settings) throws Exception {
+            calls.incrementAndGet();
+            if (disambiguation == null)
+                throw new Exception("Service unavailable");
+            return new NamedEntity[]{new NamedEntity(text, new Disambiguation[]{disambiguation})};
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class CompactExtractionResultsTest {
+
+    NamedEntity massachusetts;
+    NamedEntity usa;
+    CompactExtractionResults SUT;
+
+    @BeforeClass
+    public void setUpResults() throws URISyntaxException {
+        massachusetts = new NamedEntity("MA", new Disambiguation[]{
+                new Disambiguation("Massachusetts", new URI("http://www.wikidata.org/entity/Q771"))
+        }, true, 54, 56);
+        usa = new NamedEntity("USA", new Disambiguation[]{
+                new Disambiguation("Q30", new URI("http://www.wikidata.org/entity/Q30"), 23.2),
+                new Disambiguation("Q43896634", new URI("http://www.wikidata.org/entity/Q43896634"), -1.5)
+        }, false);
+
+        SUT = CompactExtractionResults.fromArray(2, new ExtractionResult[][]{
+                {new ExtractionResult(new NamedEntity[]{massachusetts, usa}), new ExtractionResult(new Exception("failed"))},
+                {},
+                {new ExtractionResult(new NamedEntity[]{usa}), new ExtractionResult(new NamedEntity[0])},
+        });
+    }
+
+    @Test
+    public void testCounts() {
+        assertEquals(SUT.getRowCount(), 3);
+        assertEquals(SUT.getServiceCount(), 2);
+        assertEquals(SUT.getDistinctEntityCount(), 2);
+        assertEquals(SUT.getEntityCount(0, 0), 2);
+        assertEquals(SUT.getEntityCount(1, 0), 0);
+        assertEquals(SUT.getEntityCount(1, 1), 0);
+        assertEquals(SUT.getEntityCount(2, 0), 1);
+    }
+
+    @Test
+    public void testEntities() {
+        assertEquals(SUT.getNamedEntity(0, 0, 0), massachusetts);
+        assertEquals(SUT.getNamedEntity(0, 0, 0).getBeginOffset(), 54);
+        assertEquals(SUT.getNamedEntity(0, 0, 0).getEndOffset(), 56);
+        assertEquals(SUT.getNamedEntity(0, 0, 1), usa);
+        assertEquals(SUT.getNamedEntity(2, 0, 0), usa);
+        assertEquals(SUT.getEntityId(0, 0, 1), SUT.getEntityId(2, 0, 0));
+    }
+
+    @Test
+    public void testErrors() {
+        assertTrue(SUT.hasError(0, 1));
+        assertEquals(SUT.getExtractionError(0, 1).message, "failed");
+        assertFalse(SUT.hasError(0, 0));
+        assertFalse(SUT.hasError(1, 1));
+    }
+
+    @Test
+    public void testEmptyRows() {
+        CompactExtractionResults results = new CompactExtractionResults(2);
+        results.addEmptyRows(3);
+        results.addRow(new ExtractionResult[]{new ExtractionResult(new NamedEntity[]{usa}), new ExtractionResult(new Exception("failed"))});
+        results.addEmptyRows(2);
+        results.trim();
+
+        assertEquals(results.getRowCount(), 6);
+        assertEquals(results.getEntityCount(0, 0), 0);
+        assertEquals(results.getEntityCount(3, 0), 1);
+        assertEquals(results.getNamedEntity(3, 0, 0), usa);
+        assertTrue(results.hasError(3, 1));
+        assertFalse(results.hasError(4, 1));
+        assertEquals(results.getEntityCount(5, 1), 0);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void testMissingEntity() {
+        SUT.getNamedEntity(2, 0, 1);
+    }
+}
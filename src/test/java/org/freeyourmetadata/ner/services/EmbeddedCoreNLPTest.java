@@ -0,0 +1,98 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.testng.annotations.Test;
+
+public class EmbeddedCoreNLPTest {
+
+    String exampleText = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA";
+
+    @Test
+    public void testGetInstanceWithoutCoreNLP() {
+        // CoreNLP is not a dependency, so it is not on the test classpath
+        assertNull(EmbeddedCoreNLP.getInstance());
+    }
+
+    @Test(expectedExceptions = ClassNotFoundException.class)
+    public void testConstructWithoutCoreNLP() throws Exception {
+        new EmbeddedCoreNLP(getClass().getClassLoader());
+    }
+
+    @Test
+    public void testStanfordNLPFallsBackToServer() throws Exception {
+        try (StubNERServer server = new StubNERServer().start()) {
+            StanfordNLP service = new StanfordNLP();
+            service.setServiceSetting("NLP Service URL", server.getUri(StubNERServer.Format.CORENLP).toString());
+            assertEquals(service.getServiceSetting("Embedded pipeline"), "true");
+            assertNull(service.getEmbeddedPipelines());
+            assertTrue(service.isConfigured());
+
+            NamedEntity[] entities = service.extractNamedEntities(exampleText,
+                    NERServiceBase.getExtractionSettingDefaults(service));
+            assertTrue(entities.length > 0);
+            assertEquals(server.getRequestCount(StubNERServer.Format.CORENLP), 1);
+        }
+    }
+
+    @Test
+    public void testPipelineReuse() throws Exception {
+        CountingPipelines pipelines = new CountingPipelines();
+        Object defaultPipeline = pipelines.getPipeline("default", true, false);
+        assertSame(pipelines.getPipeline("default", true, false), defaultPipeline);
+        assertSame(pipelines.getPipeline(null, true, false), defaultPipeline);
+        assertSame(pipelines.getPipeline("", true, false), defaultPipeline);
+        assertSame(pipelines.getPipeline("DEFAULT", true, false), defaultPipeline);
+        assertEquals(pipelines.created.get(), 1);
+
+        // Every other language or setting needs its own pipeline
+        assertNotSame(pipelines.getPipeline("french", true, false), defaultPipeline);
+        assertNotSame(pipelines.getPipeline("default", false, false), defaultPipeline);
+        assertNotSame(pipelines.getPipeline("default", true, true), defaultPipeline);
+        assertSame(pipelines.getPipeline("French", true, false), pipelines.getPipeline("french", true, false));
+        assertEquals(pipelines.created.get(), 4);
+        assertEquals(pipelines.getPipelineCount(), 4);
+    }
+
+    @Test
+    public void testConcurrentPipelineCreation() throws Exception {
+        CountingPipelines pipelines = new CountingPipelines();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Future<?>[] requests = new Future<?>[32];
+            for (int i = 0; i < requests.length; i++)
+                requests[i] = executor.submit(() -> pipelines.getPipeline("german", true, false));
+            Object pipeline = requests[0].get();
+            for (Future<?> request : requests)
+                assertSame(request.get(), pipeline);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(pipelines.created.get(), 1);
+    }
+
+    /**
+     * Pipelines that count how many are created instead of loading CoreNLP models
+     */
+    static class CountingPipelines extends EmbeddedCoreNLP {
+        final AtomicInteger created = new AtomicInteger();
+
+        @Override
+        protected Object createPipeline(String language, boolean applyFineGrained, boolean applyNumericClassifiers)
+                throws InterruptedException {
+            created.incrementAndGet();
+            // Loading models takes a while, which gives concurrent requests a chance to overlap
+            Thread.sleep(10);
+            return new Object();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class GazetteerTest {
+
+    String gazetteer = "" +
+            "# surface form\tURI\tlabel\tscore\n" +
+            "Lowell\thttp://www.wikidata.org/entity/Q49162\tLowell, Massachusetts\n" +
+            "MA\thttp://www.wikidata.org/entity/Q771\tMassachusetts\t0.9\n" +
+            "MA\thttp://www.wikidata.org/entity/Q1456\tMorocco\t0.2\n" +
+            "USA\thttp://www.wikidata.org/entity/Q30\tUnited States of America\n" +
+            "John St\thttp://example.org/john-st\n" +
+            "John\thttp://example.org/john\n" +
+            "ohn\thttp://example.org/ohn\n" +
+            "incomplete line\n";
+
+    String exampleText = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA";
+
+    GazetteerAutomaton automaton;
+
+    @BeforeClass
+    public void setUpAutomaton() throws IOException {
+        automaton = Gazetteer.readGazetteer(new StringReader(gazetteer), false);
+    }
+
+    @Test
+    public void testCounts() {
+        assertEquals(automaton.getFormCount(), 6);
+    }
+
+    @Test
+    public void testFindMatches() {
+        assertEquals(automaton.findMatches(exampleText), new int[]{
+                26, 33, 3,
+                46, 52, 0,
+                54, 56, 1,
+                64, 67, 2,
+        });
+    }
+
+    @Test
+    public void testFindMatchesCaseInsensitive() {
+        assertEquals(automaton.findMatches("usa or Usa, not usability"), new int[]{0, 3, 2, 7, 10, 2});
+    }
+
+    @Test
+    public void testFindMatchesCaseSensitive() throws IOException {
+        GazetteerAutomaton caseSensitive = Gazetteer.readGazetteer(new StringReader(gazetteer), true);
+        assertEquals(caseSensitive.findMatches("usa or USA"), new int[]{7, 10, 2});
+    }
+
+    @Test
+    public void testNoMatches() {
+        assertEquals(automaton.findMatches("Nothing to see here"), new int[0]);
+        assertEquals(automaton.findMatches(""), new int[0]);
+    }
+
+    @Test
+    public void testOverlappingSuffixes() throws IOException {
+        GazetteerAutomaton suffixes = Gazetteer.readGazetteer(new StringReader(
+                "he\thttp://example.org/he\nshe\thttp://example.org/she\nhers\thttp://example.org/hers\n"), false);
+        assertEquals(suffixes.findMatches("she, hers, he"), new int[]{0, 3, 1, 5, 9, 2, 11, 13, 0});
+    }
+
+    @Test
+    public void testDisambiguations() throws URISyntaxException {
+        Disambiguation[] disambiguations = automaton.getDisambiguations(1, 0);
+        assertEquals(disambiguations, new Disambiguation[]{
+                new Disambiguation("Massachusetts", new URI("http://www.wikidata.org/entity/Q771"), 0.9),
+                new Disambiguation("Morocco", new URI("http://www.wikidata.org/entity/Q1456"), 0.2),
+        });
+        assertEquals(automaton.getDisambiguations(1, 0.5).length, 1);
+    }
+
+    @Test
+    public void testSaveAndMap() throws IOException {
+        File file = File.createTempFile("gazetteer", ".gazetteer");
+        file.deleteOnExit();
+        assertEquals(automaton.save(file), file);
+        assertTrue(GazetteerAutomaton.isCompiled(file));
+
+        GazetteerAutomaton mapped = GazetteerAutomaton.map(file);
+        assertEquals(mapped.getStateCount(), automaton.getStateCount());
+        assertEquals(mapped.getFormCount(), automaton.getFormCount());
+        assertEquals(mapped.getEntityCount(), 7);
+        assertFalse(mapped.isCaseSensitive());
+        assertEquals(mapped.findMatches(exampleText), automaton.findMatches(exampleText));
+        assertEquals(mapped.getDisambiguations(1, 0), automaton.getDisambiguations(1, 0));
+    }
+
+    @Test
+    public void testSaveWhileMapped() throws IOException {
+        File file = File.createTempFile("gazetteer", ".gazetteer");
+        file.deleteOnExit();
+        automaton.save(file);
+        GazetteerAutomaton mapped = GazetteerAutomaton.map(file);
+
+        // Saving over a mapped file either replaces it or uses a versioned name, leaving the mapping intact
+        GazetteerAutomaton other = new GazetteerAutomaton.Builder(true)
+                .add("Boston", "Boston", "http://www.wikidata.org/entity/Q100", 1).build();
+        File saved = other.save(file);
+        saved.deleteOnExit();
+        assertEquals(GazetteerAutomaton.map(saved).getFormCount(), 1);
+        assertEquals(mapped.findMatches(exampleText), automaton.findMatches(exampleText));
+        assertEquals(mapped.getDisambiguations(1, 0), automaton.getDisambiguations(1, 0));
+    }
+
+    @Test
+    public void testNotCompiled() throws IOException {
+        File file = File.createTempFile("gazetteer", ".tsv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), gazetteer.getBytes(StandardCharsets.UTF_8));
+        assertFalse(GazetteerAutomaton.isCompiled(file));
+
+        // Text can start with the legacy magic number, even in a file with the extension of compiled gazetteers
+        File text = File.createTempFile("gazetteer", ".gazetteer");
+        text.deleteOnExit();
+        Files.write(text.toPath(), ("NERG\thttp://example.org/nerg\n" + gazetteer).getBytes(StandardCharsets.UTF_8));
+        assertFalse(GazetteerAutomaton.isCompiled(text));
+    }
+
+    @Test
+    public void testLegacyMagic() throws IOException {
+        File file = File.createTempFile("gazetteer", ".gazetteer");
+        file.deleteOnExit();
+        automaton.save(file);
+        byte[] contents = Files.readAllBytes(file.toPath());
+        System.arraycopy("NERG".getBytes(StandardCharsets.US_ASCII), 0, contents, 0, 4);
+        Files.write(file.toPath(), contents);
+        assertTrue(GazetteerAutomaton.isCompiled(file));
+        assertEquals(GazetteerAutomaton.map(file).findMatches(exampleText), automaton.findMatches(exampleText));
+
+        // Without the extension, the legacy magic number could also be text
+        File other = File.createTempFile("gazetteer", ".tsv");
+        other.deleteOnExit();
+        Files.write(other.toPath(), contents);
+        assertFalse(GazetteerAutomaton.isCompiled(other));
+    }
+
+    @Test
+    public void testTextStartingWithMagic() throws Exception {
+        File file = File.createTempFile("gazetteer", ".gazetteer");
+        file.deleteOnExit();
+        Files.write(file.toPath(), ("NERG\thttp://example.org/nerg\n" + gazetteer).getBytes(StandardCharsets.UTF_8));
+        Gazetteer service = new Gazetteer() {
+            @Override
+            protected File getGazetteerFile() {
+                return file;
+            }
+        };
+        // The file is read as a tab-separated gazetteer
+        NamedEntity[] entities = service.extractNamedEntities("NERG in Lowell", Collections.emptyMap());
+        assertEquals(entities.length, 2);
+        assertEquals(entities[0].getDisambiguations()[0].getUri(), new URI("http://example.org/nerg"));
+    }
+
+    @Test
+    public void testRelativeScores() throws URISyntaxException {
+        GazetteerAutomaton relative = new GazetteerAutomaton.Builder(false).setRelativeScores(true)
+                .add("Paris", "Paris", "http://www.wikidata.org/entity/Q90", 1)
+                .add("Paris", "Paris", "http://www.wikidata.org/entity/Q90", 1)
+                .add("paris", "Paris", "http://www.wikidata.org/entity/Q90", 1)
+                .add("Paris", "Paris, Texas", "http://www.wikidata.org/entity/Q830149", 1)
+                .build();
+        assertEquals(relative.getFormCount(), 1);
+        assertEquals(relative.getDisambiguations(0, 0), new Disambiguation[]{
+                new Disambiguation("Paris", new URI("http://www.wikidata.org/entity/Q90"), 0.75),
+                new Disambiguation("Paris, Texas", new URI("http://www.wikidata.org/entity/Q830149"), 0.25),
+        });
+    }
+
+    @Test
+    public void testManyForms() {
+        // Enough transitions and candidates to grow the tables of the builder several times
+        GazetteerAutomaton.Builder builder = new GazetteerAutomaton.Builder(true);
+        for (int i = 0; i < 1000; i++) {
+            builder.add("Street " + i, "Street " + i, "http://example.org/street/" + i, 1);
+            builder.add("Street " + i, "Street", "http://example.org/street", 0.5);
+            builder.add("Street " + i, "Street", "http://example.org/street", 0.5);
+        }
+        GazetteerAutomaton many = builder.build();
+        assertEquals(many.getFormCount(), 1000);
+        assertEquals(many.getEntityCount(), 1001);
+        assertEquals(many.findMatches("Street 123 and Street 999"), new int[]{0, 10, 123, 15, 25, 999});
+        assertEquals(many.getDisambiguations(123, 0).length, 2);
+        assertEquals(many.getDisambiguations(123, 0)[0].getScore(), 1.0);
+    }
+
+    @Test
+    public void testExtractNamedEntities() throws Exception {
+        File file = File.createTempFile("gazetteer", ".tsv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), gazetteer.getBytes(StandardCharsets.UTF_8));
+        Gazetteer service = new Gazetteer() {
+            @Override
+            protected File getGazetteerFile() {
+                return file;
+            }
+        };
+        assertTrue(service.isConfigured());
+
+        NamedEntity[] entities = service.extractNamedEntities(exampleText, Collections.emptyMap());
+        assertEquals(entities.length, 4);
+        assertEquals(entities[2].getExtractedText(), "MA");
+        assertEquals(entities[2].getBeginOffset(), 54);
+        assertEquals(entities[2].getEndOffset(), 56);
+        assertEquals(entities[2].getDisambiguations().length, 2);
+        assertTrue(entities[2].isMatched());
+        assertEquals(entities[1].getDisambiguations()[0].getLabel(), "Lowell, Massachusetts");
+
+        entities = service.extractNamedEntities(exampleText, Collections.singletonMap("Minimum score", "1"));
+        assertEquals(entities.length, 3);
+        assertFalse(entities[2].getExtractedText().equals("MA"));
+        // Local extractions are recorded like requests
+        assertEquals(service.getMetrics().getLatency(ServiceMetrics.Stage.PARSE).getCount(), 2);
+    }
+}
@@ -2,12 +2,22 @@ package org.freeyourmetadata.ner.services;
 
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.riot.RDFLanguages;
+import org.apache.jena.riot.RDFParser;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
 
@@ -105,6 +115,15 @@ public class NIFServiceTest {
         Assert.assertEquals(nif, nifRequest);
     }
 
+    @Test
+    public void testGenerateNifRequestEscaping() {
+        String nif = NIFService.createNIFDocument("a \"quoted\"\tword\non C:\\ drive");
+
+        Assert.assertTrue(nif.endsWith(
+                "        nif:endIndex    \"28\"^^xsd:nonNegativeInteger ;\n" +
+                "        nif:isString    \"a \\\"quoted\\\"\\tword\\non C:\\\\ drive\" .\n"), nif);
+    }
+
     @Test
     public void testParseNifResponse() throws URISyntaxException {
         NamedEntity[] entities = NIFService.parseResponse(exampleText, nifResponse, 0);
@@ -119,6 +138,51 @@ public class NIFServiceTest {
         Assert.assertEquals(entities, namedEntitiesNoMatch);
     }
 
+    @Test
+    public void testParseNifResponseStream() throws URISyntaxException {
+        InputStream stream = new ByteArrayInputStream(nifResponse.getBytes(StandardCharsets.UTF_8));
+        NamedEntity[] entities = NIFService.parseResponse(exampleText, stream, RDFLanguages.TURTLE, 0);
+
+        Assert.assertEquals(entities, namedEntities);
+        Assert.assertEquals(entities[0].getBeginOffset(), 54);
+        Assert.assertEquals(entities[0].getEndOffset(), 56);
+    }
+
+    @Test
+    public void testParseNifResponseFormats() throws URISyntaxException {
+        Model model = RDFParser.fromString(nifResponse).lang(RDFLanguages.TURTLE).toModel();
+        for (Lang format : new Lang[]{RDFLanguages.NTRIPLES, RDFLanguages.JSONLD, RDFLanguages.RDFXML}) {
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            RDFDataMgr.write(response, model, format);
+            NamedEntity[] entities = NIFService.parseResponse(exampleText,
+                    new ByteArrayInputStream(response.toByteArray()), format, 0);
+
+            Assert.assertEqualsNoOrder(entities, namedEntities);
+        }
+    }
+
+    @Test
+    public void testNegotiatedFormat() throws Exception {
+        Model model = RDFParser.fromString(nifResponse).lang(RDFLanguages.TURTLE).toModel();
+        StringWriter nTriples = new StringWriter();
+        RDFDataMgr.write(nTriples, model, RDFLanguages.NTRIPLES);
+        try (MockWebServer server = new MockWebServer()) {
+            server.start();
+            String url = server.url("/endpoint").toString();
+            server.enqueue(new MockResponse().setBody(nTriples.toString())
+                    .setHeader("Content-Type", "application/n-triples; charset=utf-8"));
+            server.enqueue(new MockResponse().setBody(nTriples.toString())
+                    .setHeader("Content-Type", "application/n-triples"));
+
+            NIFService service = new NIFService(new URI(url));
+            Assert.assertEqualsNoOrder(service.extractNamedEntities(exampleText, Collections.emptyMap()), namedEntities);
+            Assert.assertEqualsNoOrder(service.extractNamedEntities(exampleText, Collections.emptyMap()), namedEntities);
+
+            Assert.assertTrue(server.takeRequest().getHeader("Accept").startsWith("application/n-triples,"));
+            Assert.assertEquals(server.takeRequest().getHeader("Accept"), "application/n-triples");
+        }
+    }
+
     @Test
     public void testEndToEnd() throws Exception {
         try (MockWebServer server = new MockWebServer()) {
@@ -2,6 +2,7 @@ package org.freeyourmetadata.ner.services;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
 
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -9,6 +10,7 @@ import java.net.URISyntaxException;
 import org.testng.annotations.Test;
 
 import com.google.refine.model.Cell;
+import com.google.refine.model.Recon;
 import com.google.refine.model.Recon.Judgment;
 
 public class NamedEntityTest {
@@ -47,4 +49,19 @@ public class NamedEntityTest {
         assertEquals(cell.recon.candidates.get(1).id, "http://foo.com/id5678");
     }
 
+    @Test
+    public void testToCellSharedRecon() throws URISyntaxException {
+        Disambiguation[] disambiguations = new Disambiguation[] {
+            new Disambiguation("a matching element", new URI("http://foo.com/id1234"))
+        };
+        NamedEntity SUT = new NamedEntity("some text", disambiguations);
+        Recon recon = SUT.toRecon();
+
+        Cell first = SUT.toCell(recon);
+        Cell second = SUT.toCell(recon);
+
+        assertEquals(first.value, "some text");
+        assertSame(first.recon, second.recon);
+        assertEquals(first.recon.match.id, "http://foo.com/id1234");
+    }
 }
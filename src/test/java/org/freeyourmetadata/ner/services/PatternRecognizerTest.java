@@ -0,0 +1,140 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.regex.PatternSyntaxException;
+
+import com.google.refine.model.Recon;
+import org.testng.annotations.Test;
+
+public class PatternRecognizerTest {
+
+    String exampleText = "Contact jane.doe@example.org (ORCID 0000-0002-1825-0097) about doi:10.1000/182 "
+            + "and ISBN 978-0-306-40615-7, published 2015-13-01 or 2015-02-28, see Q42.";
+
+    @Test
+    public void testFindMatches() {
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"word", "number", "code"},
+                new String[]{"[a-z]+", "\\d+(\\.\\d+)?", "[A-Z]{2}-\\d{3}"});
+        assertEquals(automaton.findMatches("abc 12.5 AB-123 x9 AB-12"), new int[]{
+                0, 3, 0,
+                4, 8, 1,
+                9, 15, 2,
+                22, 24, 1,
+        });
+        assertEquals(automaton.findMatches(""), new int[0]);
+    }
+
+    @Test
+    public void testFirstPatternWins() {
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"year", "number"},
+                new String[]{"(19|20)\\d\\d", "\\d+"});
+        assertEquals(automaton.findMatches("1999 2999 199"), new int[]{0, 4, 0, 5, 9, 1, 10, 13, 1});
+    }
+
+    @Test
+    public void testCharacterClasses() {
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"a"},
+                new String[]{"[^\\s,]+,[\\w-]*|x{2,}|\\.{3}"});
+        assertEquals(automaton.findMatches("foo,bar-1 xxx x ..."), new int[]{0, 9, 0, 10, 13, 0, 16, 19, 0});
+        assertEquals(automaton.getPatternCount(), 1);
+        assertTrue(automaton.getStateCount() > 1);
+    }
+
+    @Test
+    public void testLeftmostMatchEndsLater() {
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"b", "abc"}, new String[]{"b", "a b c"});
+        assertEquals(automaton.findMatches("a b c"), new int[]{0, 5, 1});
+        assertEquals(automaton.findMatches("a b d b"), new int[]{2, 3, 0, 6, 7, 0});
+    }
+
+    @Test(timeOut = 10000)
+    public void testLongTextWithoutMatches() {
+        // Runs from every word boundary follow each other through the same states
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"a"}, new String[]{"(a )*b"});
+        String text = String.join("", Collections.nCopies(200000, "a "));
+        assertEquals(automaton.findMatches(text), new int[0]);
+    }
+
+    @Test(timeOut = 10000)
+    public void testLongTextWithShortMatches() {
+        // Every match could continue into a longer one until the end of the text
+        PatternAutomaton automaton = new PatternAutomaton(new String[]{"a", "b"}, new String[]{"a", "a(-a)*-b"});
+        String text = String.join("", Collections.nCopies(50000, "a-"));
+        int[] matches = automaton.findMatches(text);
+        assertEquals(matches.length, 3 * 50000);
+        assertEquals(matches[3 * 49999], 2 * 49999);
+        assertEquals(matches[3 * 49999 + 1], 2 * 49999 + 1);
+    }
+
+    @Test(expectedExceptions = PatternSyntaxException.class)
+    public void testInvalidPattern() {
+        new PatternAutomaton(new String[]{"a"}, new String[]{"(a|b"});
+    }
+
+    @Test(expectedExceptions = PatternSyntaxException.class)
+    public void testAnchorsUnsupported() {
+        new PatternAutomaton(new String[]{"a"}, new String[]{"^a$"});
+    }
+
+    @Test
+    public void testExtractNamedEntities() throws Exception {
+        PatternRecognizer service = createService(new File("nonexistent-patterns.tsv"));
+        assertTrue(service.isConfigured());
+
+        NamedEntity[] entities = service.extractNamedEntities(exampleText, Collections.emptyMap());
+        assertEquals(entities.length, 6);
+        assertEquals(entities[0].getExtractedText(), "jane.doe@example.org");
+        assertEquals(entities[0].getDisambiguations()[0].getType(), "Email");
+        assertEquals(entities[1].getDisambiguations()[0],
+                new Disambiguation("0000-0002-1825-0097", new URI("https://orcid.org/0000-0002-1825-0097"), 1.0, "ORCID"));
+        assertEquals(entities[2].getExtractedText(), "10.1000/182");
+        assertEquals(entities[2].getBeginOffset(), 67);
+        assertEquals(entities[2].getDisambiguations()[0].getUri(), new URI("https://doi.org/10.1000/182"));
+        assertEquals(entities[3].getDisambiguations()[0].getUri(), new URI("urn:isbn:978-0-306-40615-7"));
+        assertEquals(entities[4].getExtractedText(), "2015-02-28");
+        assertEquals(entities[4].getDisambiguations()[0].getUri().toString(), "");
+        assertEquals(entities[5].getDisambiguations()[0].getUri(), new URI("http://www.wikidata.org/entity/Q42"));
+        assertTrue(entities[5].isMatched());
+    }
+
+    @Test
+    public void testCustomPatterns() throws Exception {
+        File file = File.createTempFile("patterns", ".tsv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), ("# custom patterns\n"
+                + "Wikidata item\tQ[1-9][0-9]{2,}\thttps://www.wikidata.org/wiki/{match}\n"
+                + "Ticket\tNER-[0-9]+\thttps://example.org/tickets/{match}\n"
+                + "Incomplete\n").getBytes(StandardCharsets.UTF_8));
+        PatternRecognizer service = createService(file);
+
+        NamedEntity[] entities = service.extractNamedEntities("Q42, Q1234 and NER-7", Collections.emptyMap());
+        assertEquals(entities.length, 2);
+        assertEquals(entities[0].getDisambiguations()[0].getUri(), new URI("https://www.wikidata.org/wiki/Q1234"));
+        assertEquals(entities[1].getDisambiguations()[0].getType(), "Ticket");
+    }
+
+    @Test
+    public void testTypedRecon() throws URISyntaxException {
+        NamedEntity entity = new NamedEntity("Q42", new Disambiguation[]{
+                new Disambiguation("Q42", new URI("http://www.wikidata.org/entity/Q42"), 1.0, "Wikidata item")});
+        Recon recon = entity.toRecon();
+        assertEquals(recon.candidates.get(0).types, new String[]{"Wikidata item"});
+    }
+
+    PatternRecognizer createService(File file) {
+        return new PatternRecognizer() {
+            @Override
+            protected File getPatternsFile() {
+                return file;
+            }
+        };
+    }
+}
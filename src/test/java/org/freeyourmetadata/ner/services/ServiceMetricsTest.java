@@ -0,0 +1,78 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.io.StringWriter;
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+public class ServiceMetricsTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++)
+            histogram.recordNanos(millis * 1_000_000L);
+
+        assertEquals(histogram.getCount(), 100);
+        assertEquals(histogram.getSumMicros(), 5_050_000);
+        assertEquals(histogram.getPercentileMicros(50), 50_000, 50_000 / 8);
+        assertEquals(histogram.getPercentileMicros(99), 99_000, 99_000 / 8);
+        assertTrue(histogram.getPercentileMicros(100) >= 100_000);
+    }
+
+    @Test
+    public void testBuckets() {
+        for (long micros : new long[]{0, 1, 15, 16, 17, 31, 32, 1000, 123_456_789}) {
+            int bucket = LatencyHistogram.getBucket(micros);
+            assertTrue(LatencyHistogram.getUpperBound(bucket) >= micros, Long.toString(micros));
+            assertTrue(bucket == 0 || LatencyHistogram.getUpperBound(bucket - 1) < micros, Long.toString(micros));
+        }
+    }
+
+    @Test
+    public void testPrometheus() throws Exception {
+        ServiceMetrics metrics = new ServiceMetrics();
+        metrics.recordLatency(ServiceMetrics.Stage.TOTAL, 2_000_000);
+        metrics.recordStatusCode(429);
+        metrics.recordError();
+        StringWriter output = new StringWriter();
+        ServiceMetrics.writePrometheus(Collections.singletonMap("My \"service\"", metrics), output);
+
+        String text = output.toString();
+        assertTrue(text.contains("# TYPE ner_request_duration_seconds summary\n"), text);
+        assertTrue(text.contains("ner_request_duration_seconds_count{service=\"My \\\"service\\\"\",stage=\"total\"} 1\n"), text);
+        assertTrue(text.contains("ner_responses_total{service=\"My \\\"service\\\"\",code=\"429\"} 1\n"), text);
+        assertTrue(text.contains("ner_errors_total{service=\"My \\\"service\\\"\"} 1\n"), text);
+    }
+
+    @Test
+    public void testNoMetrics() {
+        ServiceMetrics.NONE.recordLatency(ServiceMetrics.Stage.TOTAL, 2_000_000);
+        ServiceMetrics.NONE.recordStatusCode(200);
+        ServiceMetrics.NONE.recordError();
+        assertEquals(ServiceMetrics.NONE.getLatency(ServiceMetrics.Stage.TOTAL).getCount(), 0);
+        assertEquals(ServiceMetrics.NONE.getStatusCodeCounts().size(), 0);
+        assertEquals(ServiceMetrics.NONE.getErrorCount(), 0);
+    }
+
+    @Test
+    public void testRecordedRequests() throws Exception {
+        try (StubNERServer server = new StubNERServer(1).start()) {
+            for (StubNERServer.Format format : new StubNERServer.Format[]{
+                    StubNERServer.Format.SPOTLIGHT, StubNERServer.Format.NIF}) {
+                NERService service = server.createService(format);
+                service.extractNamedEntities("Lowell, MA, USA", NERServiceBase.getExtractionSettingDefaults(service));
+                ServiceMetrics metrics = service.getMetrics();
+
+                assertEquals(metrics.getLatency(ServiceMetrics.Stage.NETWORK).getCount(), 1, format.name());
+                assertEquals(metrics.getLatency(ServiceMetrics.Stage.PARSE).getCount(), 1, format.name());
+                assertEquals(metrics.getStatusCodeCounts(), Collections.singletonMap(200, 1L), format.name());
+                assertTrue(metrics.getBytesOut() > 0, format.name());
+                assertTrue(metrics.getBytesIn() > 0, format.name());
+            }
+        }
+    }
+}
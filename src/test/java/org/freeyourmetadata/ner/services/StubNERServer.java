@@ -0,0 +1,447 @@
+package org.freeyourmetadata.ner.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.apache.jena.rdf.model.Model;
+import org.apache.jena.rdf.model.ModelFactory;
+import org.apache.jena.rdf.model.NodeIterator;
+
+/**
+ * Local HTTP server that imitates the wire formats of DBpedia Spotlight, Dandelion, Stanford CoreNLP,
+ * and NIF services, so that services can be tested and load-tested without network access.
+ * Latency, error and rate-limiting rates, and the number of entities per response are configurable.
+ * Every capitalized word of a text is an entity, unless a fixed number of entities per response is set.
+ */
+public class StubNERServer implements Closeable {
+    /**
+     * The wire formats the server speaks, each at its own path
+     */
+    public enum Format {
+        SPOTLIGHT("/spotlight"), DANDELION("/dandelion"), CORENLP("/corenlp"), NIF("/nif");
+
+        private final String path;
+
+        Format(final String path) {
+            this.path = path;
+        }
+
+        /**
+         * Gets the path at which the server speaks this format
+         *
+         * @return The path
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+
+    /**
+     * Distribution of the response latency
+     */
+    public interface Latency {
+        /**
+         * Draws the latency of the next response
+         *
+         * @param random The random number generator of the server
+         * @return The latency in milliseconds
+         */
+        long nextMillis(Random random);
+
+        /**
+         * Creates a distribution that always has the same latency
+         *
+         * @param millis The latency in milliseconds
+         * @return The distribution
+         */
+        static Latency fixed(final long millis) {
+            return random -> millis;
+        }
+
+        /**
+         * Creates a distribution with uniformly distributed latencies
+         *
+         * @param minMillis The minimum latency in milliseconds
+         * @param maxMillis The maximum latency in milliseconds
+         * @return The distribution
+         */
+        static Latency uniform(final long minMillis, final long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis));
+        }
+
+        /**
+         * Creates a log-normal distribution, whose long tail resembles the latency of hosted services
+         *
+         * @param medianMillis The median latency in milliseconds
+         * @param sigma        The standard deviation of the logarithm of the latency
+         * @return The distribution
+         */
+        static Latency logNormal(final double medianMillis, final double sigma) {
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+
+    private final static JsonNodeFactory JSON = JsonNodeFactory.instance;
+    private final static String NIF = "http://persistence.uni-leipzig.org/nlp2rdf/ontologies/nif-core#";
+    private final static String ITSRDF = "http://www.w3.org/2005/11/its/rdf#";
+    private final static String XSD_NON_NEGATIVE_INTEGER = "^^<http://www.w3.org/2001/XMLSchema#nonNegativeInteger>";
+    private final static String XSD_DOUBLE = "^^<http://www.w3.org/2001/XMLSchema#double>";
+    private final static String DOCUMENT = "http://localhost/document";
+
+    private final MockWebServer server = new MockWebServer();
+    private final Random random;
+    private final AtomicLongArray requestCounts = new AtomicLongArray(Format.values().length);
+    private final AtomicLongArray errorCounts = new AtomicLongArray(Format.values().length);
+    private volatile Latency latency = Latency.fixed(0);
+    private volatile double errorRate;
+    private volatile double rateLimitRate;
+    private volatile int retryAfterSeconds = 1;
+    private volatile int entitiesPerResponse = -1;
+
+    /**
+     * Creates a new stub server with a random seed
+     */
+    public StubNERServer() {
+        this(new Random().nextLong());
+    }
+
+    /**
+     * Creates a new stub server whose latencies and failures are reproducible
+     *
+     * @param seed The seed of the random number generator
+     */
+    public StubNERServer(final long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets the distribution of the response latency
+     *
+     * @param latency The latency distribution
+     * @return This server
+     */
+    public StubNERServer setLatency(final Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of requests that fail with a server error
+     *
+     * @param errorRate The error rate between 0 and 1
+     * @return This server
+     */
+    public StubNERServer setErrorRate(final double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Sets the fraction of requests that are rejected with <tt>429 Too Many Requests</tt>
+     *
+     * @param rateLimitRate The rate between 0 and 1
+     * @param retryAfterSeconds The value of the <tt>Retry-After</tt> header
+     * @return This server
+     */
+    public StubNERServer setRateLimitRate(final double rateLimitRate, final int retryAfterSeconds) {
+        this.rateLimitRate = rateLimitRate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Sets the number of entities in every response, which determines the payload size
+     *
+     * @param entitiesPerResponse The number of entities, or -1 for one per capitalized word
+     * @return This server
+     */
+    public StubNERServer setEntitiesPerResponse(final int entitiesPerResponse) {
+        this.entitiesPerResponse = entitiesPerResponse;
+        return this;
+    }
+
+    /**
+     * Starts the server on a free local port
+     *
+     * @return This server
+     * @throws IOException if the server cannot be started
+     */
+    public StubNERServer start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(final RecordedRequest request) {
+                return respond(request);
+            }
+        });
+        server.start();
+        return this;
+    }
+
+    /**
+     * Gets the URL at which the server speaks the format
+     *
+     * @param format The format
+     * @return The URL
+     */
+    public URI getUri(final Format format) {
+        return URI.create(server.url(format.getPath()).toString());
+    }
+
+    /**
+     * Creates a service that is connected to this server
+     *
+     * @param format The format of the service
+     * @return The service
+     */
+    public NERService createService(final Format format) {
+        switch (format) {
+            case SPOTLIGHT:
+                return new DBpediaSpotlight(getUri(format));
+            case DANDELION:
+                final DataTXT dataTXT = new DataTXT(getUri(format));
+                dataTXT.setServiceSetting("Token", "stub");
+                return dataTXT;
+            case CORENLP:
+                final StanfordNLP stanfordNLP = new StanfordNLP();
+                stanfordNLP.setServiceSetting("NLP Service URL", getUri(format).toString());
+                stanfordNLP.setServiceSetting("Embedded pipeline", "false");
+                return stanfordNLP;
+            case NIF:
+                return new NIFService(getUri(format));
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    /**
+     * Gets the number of requests the server received in the format
+     *
+     * @param format The format
+     * @return The number of requests
+     */
+    public long getRequestCount(final Format format) {
+        return requestCounts.get(format.ordinal());
+    }
+
+    /**
+     * Gets the number of requests in the format that the server rejected or failed
+     *
+     * @param format The format
+     * @return The number of failed requests
+     */
+    public long getErrorCount(final Format format) {
+        return errorCounts.get(format.ordinal());
+    }
+
+    /**
+     * Stops the server
+     *
+     * @throws IOException if the server cannot be stopped
+     */
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    /**
+     * Creates the response to a request
+     *
+     * @param request The request
+     * @return The response
+     */
+    protected MockResponse respond(final RecordedRequest request) {
+        final String path = request.getPath() == null ? "" : request.getPath().split("\\?")[0];
+        Format format = null;
+        for (final Format candidate : Format.values())
+            if (candidate.getPath().equals(path))
+                format = candidate;
+        if (format == null)
+            return new MockResponse().setResponseCode(404);
+        requestCounts.incrementAndGet(format.ordinal());
+
+        // Draw the latency and failures under a lock, so a seed gives reproducible results
+        final long delay;
+        final double failure;
+        synchronized (random) {
+            delay = Math.max(0, latency.nextMillis(random));
+            failure = random.nextDouble();
+        }
+
+        final MockResponse response = new MockResponse().setHeadersDelay(delay, TimeUnit.MILLISECONDS);
+        if (failure < rateLimitRate) {
+            errorCounts.incrementAndGet(format.ordinal());
+            return response.setResponseCode(429).setHeader("Retry-After", retryAfterSeconds)
+                    .setHeader("Content-Type", "application/json")
+                    .setBody("{\"message\":\"Too many requests\"}");
+        }
+        if (failure < rateLimitRate + errorRate) {
+            errorCounts.incrementAndGet(format.ordinal());
+            return response.setResponseCode(500).setHeader("Content-Type", "application/json")
+                    .setBody("{\"message\":\"Internal server error\"}");
+        }
+
+        final String body = request.getBody().readUtf8();
+        final String text = getText(format, body);
+        return response.setHeader("Content-Type", format == Format.NIF ? "application/n-triples" : "application/json")
+                .setBody(createBody(format, text, entitiesPerResponse));
+    }
+
+    /**
+     * Extracts the text to annotate from a request body
+     *
+     * @param format The format of the request
+     * @param body   The request body
+     * @return The text
+     */
+    protected static String getText(final Format format, final String body) {
+        switch (format) {
+            case SPOTLIGHT:
+            case DANDELION:
+                // Form-encoded parameters
+                for (final String parameter : body.split("&")) {
+                    if (parameter.startsWith("text=")) {
+                        try {
+                            return URLDecoder.decode(parameter.substring(5), "UTF-8");
+                        } catch (UnsupportedEncodingException error) {
+                            throw new RuntimeException(error);
+                        }
+                    }
+                }
+                return "";
+            case NIF:
+                final Model model = ModelFactory.createDefaultModel();
+                model.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null, "TTL");
+                final NodeIterator strings = model.listObjectsOfProperty(NIFService.NIF_IS_STRING);
+                return strings.hasNext() ? strings.next().asLiteral().getString() : "";
+            default:
+                return body;
+        }
+    }
+
+    /**
+     * Creates a response body with entities in the text
+     *
+     * @param format   The format of the response
+     * @param text     The text
+     * @param entities The number of entities, or -1 for one per capitalized word
+     * @return The response body
+     */
+    protected static String createBody(final Format format, final String text, final int entities) {
+        final List<int[]> spots = findSpots(text, entities);
+        switch (format) {
+            case SPOTLIGHT: {
+                final ObjectNode response = JSON.objectNode().put("@text", text);
+                final ArrayNode resources = response.putArray("Resources");
+                for (final int[] spot : spots) {
+                    final String surfaceForm = text.substring(spot[0], spot[1]);
+                    resources.addObject()
+                            .put("@URI", "http://dbpedia.org/resource/" + surfaceForm)
+                            .put("@support", "100")
+                            .put("@types", "")
+                            .put("@surfaceForm", surfaceForm)
+                            .put("@offset", Integer.toString(spot[0]))
+                            .put("@similarityScore", "0.9");
+                }
+                return response.toString();
+            }
+            case DANDELION: {
+                final ObjectNode response = JSON.objectNode().put("lang", "en");
+                final ArrayNode annotations = response.putArray("annotations");
+                for (final int[] spot : spots) {
+                    final String surfaceForm = text.substring(spot[0], spot[1]);
+                    annotations.addObject()
+                            .put("start", spot[0])
+                            .put("end", spot[1])
+                            .put("spot", surfaceForm)
+                            .put("confidence", 0.8)
+                            .put("title", surfaceForm)
+                            .put("uri", "http://en.wikipedia.org/wiki/" + surfaceForm)
+                            .put("label", surfaceForm);
+                }
+                return response.toString();
+            }
+            case CORENLP: {
+                final ObjectNode response = JSON.objectNode();
+                final ArrayNode mentions = response.putArray("sentences").addObject()
+                        .put("index", 0).putArray("entitymentions");
+                for (final int[] spot : spots) {
+                    mentions.addObject()
+                            .put("characterOffsetBegin", spot[0])
+                            .put("characterOffsetEnd", spot[1])
+                            .put("text", text.substring(spot[0], spot[1]))
+                            .put("ner", "MISC");
+                }
+                return response.toString();
+            }
+            case NIF: {
+                final StringBuilder response = new StringBuilder();
+                for (int i = 0; i < spots.size(); i++) {
+                    final int[] spot = spots.get(i);
+                    final String surfaceForm = text.substring(spot[0], spot[1]);
+                    final String subject = "<" + DOCUMENT + "#annotation" + i + "> ";
+                    response.append(subject).append("<").append(NIF).append("anchorOf> \"")
+                            .append(surfaceForm).append("\" .\n");
+                    response.append(subject).append("<").append(NIF).append("beginIndex> \"")
+                            .append(spot[0]).append('"').append(XSD_NON_NEGATIVE_INTEGER).append(" .\n");
+                    response.append(subject).append("<").append(NIF).append("endIndex> \"")
+                            .append(spot[1]).append('"').append(XSD_NON_NEGATIVE_INTEGER).append(" .\n");
+                    response.append(subject).append("<").append(ITSRDF).append("taIdentRef> <http://dbpedia.org/resource/")
+                            .append(surfaceForm).append("> .\n");
+                    response.append(subject).append("<").append(ITSRDF).append("taConfidence> \"0.9\"")
+                            .append(XSD_DOUBLE).append(" .\n");
+                }
+                return response.toString();
+            }
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    /**
+     * Finds the words in the text that are entities
+     *
+     * @param text     The text
+     * @param entities The number of entities, or -1 for one per capitalized word
+     * @return The begin and end offsets of the entities
+     */
+    protected static List<int[]> findSpots(final String text, final int entities) {
+        final ArrayList<int[]> words = new ArrayList<>();
+        for (int begin = 0; begin < text.length(); ) {
+            if (!Character.isLetterOrDigit(text.charAt(begin))) {
+                begin++;
+                continue;
+            }
+            int end = begin;
+            while (end < text.length() && Character.isLetterOrDigit(text.charAt(end)))
+                end++;
+            if (entities >= 0 || Character.isUpperCase(text.charAt(begin)))
+                words.add(new int[]{begin, end});
+            begin = end;
+        }
+        if (entities < 0 || words.isEmpty())
+            return words;
+
+        // Repeat or truncate the words to obtain the requested payload size
+        final ArrayList<int[]> spots = new ArrayList<>(entities);
+        for (int i = 0; i < entities; i++)
+            spots.add(words.get(i % words.size()));
+        return spots;
+    }
+}
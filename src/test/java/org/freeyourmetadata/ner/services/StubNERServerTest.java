@@ -0,0 +1,88 @@
+package org.freeyourmetadata.ner.services;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class StubNERServerTest {
+
+    String exampleText = "Konarka Technologies, 116 John St., Suite 12, Lowell, MA 01852, USA";
+
+    StubNERServer server;
+
+    @BeforeMethod
+    public void startServer() throws Exception {
+        server = new StubNERServer(42).start();
+    }
+
+    @AfterMethod
+    public void stopServer() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testAllFormats() throws Exception {
+        for (StubNERServer.Format format : StubNERServer.Format.values()) {
+            NERService service = server.createService(format);
+            NamedEntity[] entities = service.extractNamedEntities(exampleText, NERServiceBase.getExtractionSettingDefaults(service));
+
+            assertEquals(entities.length, 8, format.name());
+            assertEquals(entities[0].getExtractedText(), "Konarka", format.name());
+            assertEquals(entities[7].getExtractedText(), "USA", format.name());
+            assertEquals(server.getRequestCount(format), 1);
+        }
+    }
+
+    @Test
+    public void testPayloadSize() throws Exception {
+        server.setEntitiesPerResponse(100);
+        NERService service = server.createService(StubNERServer.Format.SPOTLIGHT);
+        NamedEntity[] entities = service.extractNamedEntities(exampleText, NERServiceBase.getExtractionSettingDefaults(service));
+
+        assertEquals(entities.length, 100);
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        server.setRateLimitRate(1, 3);
+        NERService service = server.createService(StubNERServer.Format.DANDELION);
+        try {
+            service.extractNamedEntities(exampleText, NERServiceBase.getExtractionSettingDefaults(service));
+            fail("Expected a rate-limiting error");
+        } catch (Exception error) {
+            assertEquals(error.getMessage(), "Too many requests");
+        }
+        assertEquals(server.getErrorCount(StubNERServer.Format.DANDELION), 1);
+    }
+
+    @Test
+    public void testErrorRate() throws Exception {
+        server.setErrorRate(0.5);
+        NERService service = server.createService(StubNERServer.Format.CORENLP);
+        int failures = 0;
+        for (int i = 0; i < 100; i++) {
+            try {
+                service.extractNamedEntities(exampleText, NERServiceBase.getExtractionSettingDefaults(service));
+            } catch (Exception error) {
+                failures++;
+            }
+        }
+        assertEquals(server.getErrorCount(StubNERServer.Format.CORENLP), failures);
+        assertTrue(failures > 25 && failures < 75, Integer.toString(failures));
+    }
+
+    @Test
+    public void testLatency() throws Exception {
+        server.setLatency(StubNERServer.Latency.fixed(50));
+        NERService service = server.createService(StubNERServer.Format.NIF);
+        long start = System.nanoTime();
+        service.extractNamedEntities(exampleText, NERServiceBase.getExtractionSettingDefaults(service));
+
+        assertTrue(System.nanoTime() - start >= 50_000_000L);
+    }
+}